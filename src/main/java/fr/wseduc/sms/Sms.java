@@ -23,6 +23,7 @@ import fr.wseduc.webutils.Server;
 import fr.wseduc.webutils.StringValidation;
 import fr.wseduc.webutils.collections.SharedDataHelper;
 import fr.wseduc.webutils.http.Renders;
+import fr.wseduc.webutils.template.CompiledTemplate;
 import io.vertx.core.Future;
 import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
@@ -155,6 +156,14 @@ public class Sms {
 		}
 	}
 
+	/**
+	 * Compile a template once for a bulk send : the bodies rendered with
+	 * {@link CompiledTemplate#renderAll(Vertx, java.util.List)} are sent with {@link #send(String, String)}.
+	 */
+	public Future<CompiledTemplate> compileTemplate(HttpServerRequest request, String template) {
+		return render.compileTemplate(request, template, true);
+	}
+
 	private Future<String> processTemplate(HttpServerRequest request, String template, JsonObject params){
 		Promise<String> promise = Promise.promise();
 		render.processTemplate(request, template, params, body -> {
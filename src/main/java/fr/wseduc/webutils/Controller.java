@@ -19,7 +19,10 @@ package fr.wseduc.webutils;
 import fr.wseduc.webutils.http.Binding;
 import fr.wseduc.webutils.http.HttpMethod;
 import fr.wseduc.webutils.http.Renders;
+import fr.wseduc.webutils.http.RouteDescriptor;
 import fr.wseduc.webutils.http.TraceIdContextHandler;
+import fr.wseduc.webutils.metrics.IRouteMetricsRecorder;
+import fr.wseduc.webutils.metrics.RouteMetricsRecorder;
 import fr.wseduc.webutils.request.AccessLogger;
 import fr.wseduc.webutils.request.AccessLoggerFactory;
 import fr.wseduc.webutils.request.IAccessLogger;
@@ -44,6 +47,7 @@ import java.lang.invoke.MethodType;
 import java.util.*;
 import java.util.Map.Entry;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -61,6 +65,7 @@ public abstract class Controller extends Renders {
 	public static final String TRACE_ID = "X-Cloud-Trace-Context";
 	public static final String TRACE_MTTR = "Trace-MTTR";
 	private boolean logRestAccess = false;
+	private RouteMetricsRecorder.Configuration routeMetricsConfiguration;
 
 	public Controller(Vertx vertx, JsonObject config, RouteMatcher rm,
 			Map<String, SecuredAction> securedActions) {
@@ -86,6 +91,11 @@ public abstract class Controller extends Renders {
 		this.eb = Server.getEventBus(vertx);
 		if (config != null) {
 			logRestAccess = config.getBoolean("log-rest-access", false);
+			final JsonObject routeMetrics = config.getJsonObject("route-metrics", new JsonObject());
+			if (routeMetrics.getBoolean("enabled", false)) {
+				routeMetricsConfiguration = RouteMetricsRecorder.Configuration.fromJson(
+						config.getString("app-name", this.getClass().getSimpleName()), routeMetrics);
+			}
 		}
 		if (rm != null) {
 			loadRoutes();
@@ -112,6 +122,10 @@ public abstract class Controller extends Renders {
 						continue;
 					}
 					boolean regex = route.getBoolean("regex", false);
+					if( route.getBoolean("mfaProtected", false) ) {
+						String serviceMethod = this.getClass().getName() + "|" + method;
+						mfaProtectedMethods.add(serviceMethod);
+					}
 					switch (httpMethod) {
 						case "POST":
 							if (regex) {
@@ -145,10 +159,6 @@ public abstract class Controller extends Renders {
 							registerMethod(path, method, route.getBoolean("local", true));
 							break;
 					}
-					if( route.getBoolean("mfaProtected", false) ) {
-						String serviceMethod = this.getClass().getName() + "|" + method;
-						mfaProtectedMethods.add(serviceMethod);
-					}
 				}
 			} catch (IOException | NoSuchMethodException | IllegalAccessException e) {
 				log.error("Unable to load routes in controller " + this.getClass().getName(), e);
@@ -170,14 +180,15 @@ public abstract class Controller extends Renders {
 		try {
 			final MethodHandle mh = lookup.bind(this, method,
 					MethodType.methodType(void.class, HttpServerRequest.class));
-			final String qualifiedName = this.getClass().getName() + "|" + method;
+			final RouteDescriptor route = routeDescriptor(method, false);
+			final IRouteMetricsRecorder metrics = routeMetricsRecorder(route);
 			return new XSSHandler() {
 
 				@Override
 				public void filter(final HttpServerRequest request) {
 					accessLogger.log(request, v -> {
 						try {
-							doExecuteInvoke(mh, request, qualifiedName, false);
+							doExecuteInvoke(mh, request, route, metrics);
 						} catch (Throwable e) {
 							if (!(e instanceof IllegalStateException) ||
 									!"Response is closed".equals(e.getMessage())) {
@@ -205,13 +216,19 @@ public abstract class Controller extends Renders {
 		try {
 			final MethodHandle mh = lookup.bind(this, method,
 					MethodType.methodType(void.class, HttpServerRequest.class));
-			final String qualifiedName = this.getClass().getName() + "|" + method;
+			final RouteDescriptor route = routeDescriptor(method, true);
+			final IRouteMetricsRecorder metrics = routeMetricsRecorder(route);
 			return new SecurityHandler() {
 
+				@Override
+				protected void filterChainEnd(HttpServerRequest request, long durationInNanos, boolean granted) {
+					metrics.onFilterChainEnd(durationInNanos, granted);
+				}
+
 				@Override
 				public void filter(HttpServerRequest request) {
 					try {
-						doExecuteInvoke(mh, request, qualifiedName, true);
+						doExecuteInvoke(mh, request, route, metrics);
 					} catch (Throwable e) {
 						if (!(e instanceof IllegalStateException) ||
 								!"Response is closed".equals(e.getMessage())) {
@@ -234,44 +251,74 @@ public abstract class Controller extends Renders {
 		}
 	}
 
+	private RouteDescriptor routeDescriptor(String method, boolean secured) {
+		final String qualifiedName = this.getClass().getName() + "|" + method;
+		return new RouteDescriptor(qualifiedName, secured, actionType(qualifiedName),
+				mfaProtectedMethods.contains(qualifiedName));
+	}
+
+	private IRouteMetricsRecorder routeMetricsRecorder(RouteDescriptor route) {
+		if (routeMetricsConfiguration == null) {
+			return IRouteMetricsRecorder.noop;
+		}
+		try {
+			return new RouteMetricsRecorder(routeMetricsConfiguration, route.getQualifiedName());
+		} catch (IllegalStateException e) {
+			log.error("Unable to record metrics of route " + route.getQualifiedName(), e);
+			return IRouteMetricsRecorder.noop;
+		}
+	}
+
 	private void doExecuteInvoke(MethodHandle mh, HttpServerRequest request,
-								 String qualifiedName, boolean secured) throws Throwable {
+								 RouteDescriptor route, IRouteMetricsRecorder metrics) throws Throwable {
 		final Context ctx = Vertx.currentContext();
-		String traceId = TraceIdContextHandler.getTraceId(ctx, request);
-		//regex that transform full qualified class into short one:  o.e.a.controllers.AdminController for ex
-		// capture all package name except the last one and replace them by the first letter
-		String shortQualifiedName = qualifiedName.replaceAll("\\B\\w+(\\.[a-z])","$1");
+		final String traceId = TraceIdContextHandler.getTraceId(ctx, request);
 		if(logRestAccess) {
-			if (secured) {
-				log.info(String.format("[%s] Begin secured method : %s", traceId,  shortQualifiedName));
-			} else {
-				log.debug(String.format("[%s] Begin method : %s", traceId, shortQualifiedName));
-			}
+			logBegin(traceId, route);
 		}
-		request.response().putHeader(TRACE_ID, traceId);
-
-		// if call later and the http response implementation doesn't manage multiple end handler it will be
-		//erased, not a big deal
-		if(logRestAccess) {
-			request.response().endHandler(h -> {
-				StopWatch watch = TraceIdContextHandler.getTraceTime(ctx);
-				String mttr = "";
-				if (watch != null) {
-					watch.stop();
-					mttr = String.valueOf(watch.getTime(TimeUnit.MILLISECONDS));
-					Vertx.currentContext().putLocal(TRACE_MTTR, mttr);
-				}
-				if (secured) {
-					log.info(String.format("[%s] End of secured method : %s", traceId, shortQualifiedName));
-				} else {
-					log.debug(String.format("[%s] End of method : %s", traceId, shortQualifiedName));
+		if (logRestAccess || metrics.isEnabled()) {
+			final long start = System.nanoTime();
+			metrics.onHandlerStart();
+			// the end handler is left to the filters and the handlers, which commonly set it. The end is recorded once,
+			// when the body is ended or when the response is closed before
+			final AtomicBoolean ended = new AtomicBoolean();
+			final Handler<Void> end = v -> {
+				if (ended.compareAndSet(false, true)) {
+					metrics.onHandlerEnd(System.nanoTime() - start, request.response().getStatusCode());
+					if (logRestAccess) {
+						logEnd(ctx, traceId, route);
+					}
 				}
-			});
+			};
+			request.response().bodyEndHandler(end);
+			request.response().closeHandler(end);
 		}
+		request.response().putHeader(TRACE_ID, traceId);
 		//invoke the target method on the controller
 		mh.invokeExact(request);
 	}
 
+	private void logBegin(String traceId, RouteDescriptor route) {
+		if (route.isSecured()) {
+			log.info("[" + traceId + "] Begin secured method : " + route.getShortName());
+		} else if (log.isDebugEnabled()) {
+			log.debug("[" + traceId + "] Begin method : " + route.getShortName());
+		}
+	}
+
+	private void logEnd(Context ctx, String traceId, RouteDescriptor route) {
+		StopWatch watch = TraceIdContextHandler.getTraceTime(ctx);
+		if (watch != null) {
+			watch.stop();
+			Vertx.currentContext().putLocal(TRACE_MTTR, String.valueOf(watch.getTime(TimeUnit.MILLISECONDS)));
+		}
+		if (route.isSecured()) {
+			log.info("[" + traceId + "] End of secured method : " + route.getShortName());
+		} else if (log.isDebugEnabled()) {
+			log.debug("[" + traceId + "] End of method : " + route.getShortName());
+		}
+	}
+
 	public void registerMethod(String address, String method, boolean local)
 			throws NoSuchMethodException, IllegalAccessException {
 		final MethodHandle mh = lookup.bind(this, method,
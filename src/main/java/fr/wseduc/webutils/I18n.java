@@ -17,12 +17,18 @@
 package fr.wseduc.webutils;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import fr.wseduc.webutils.data.FileResolver;
 import fr.wseduc.webutils.http.Renders;
+import fr.wseduc.webutils.http.response.EncodedJson;
 import fr.wseduc.webutils.security.SecureHttpServerRequest;
 import io.vertx.core.Vertx;
 import io.vertx.core.http.HttpServerRequest;
@@ -39,8 +45,10 @@ public class I18n {
 	private final static Locale defaultLocale = Locale.ENGLISH;
 	private final static Locale defaultLocale2 = Locale.FRENCH;
 	public final static String DEFAULT_DOMAIN = "default-domain";
-	private Map<String, Map<Locale, JsonObject>> messagesByDomains = new HashMap<>();
-	private Map<String, Map<Locale, JsonObject>> messagesByThemes = new HashMap<>();
+	private static final int LOCALES_CACHE_SIZE = 256;
+	private static final Map<String, Locale> locales = new ConcurrentHashMap<>();
+	private static final EncodedJson EMPTY_BUNDLE = new EncodedJson(new JsonObject());
+	private volatile Catalog catalog = new Catalog(Collections.emptyMap(), Collections.emptyMap());
 
 	public I18n(){}
 
@@ -52,21 +60,21 @@ public class I18n {
 		return I18nHolder.instance;
 	}
 
-	public void init(Vertx vertx) {
+	public synchronized void init(Vertx vertx) {
 		try {
 			if (vertx.fileSystem().existsBlocking(messagesDir)) {
-				Map<Locale, JsonObject> messages = messagesByDomains.get(DEFAULT_DOMAIN);
+				Messages messages = catalog.domains.get(DEFAULT_DOMAIN);
 				if (messages == null) {
-					messages = new HashMap<>();
-					messagesByDomains.put(DEFAULT_DOMAIN, messages);
+					messages = Messages.EMPTY;
 				}
 				for(String path : vertx.fileSystem().readDirBlocking(messagesDir)) {
 					if (vertx.fileSystem().propsBlocking(path).isRegularFile()) {
 						Locale l = Locale.forLanguageTag(new File(path).getName().split("\\.")[0]);
 						JsonObject jo = new JsonObject(vertx.fileSystem().readFileBlocking(path).toString());
-						messages.put(l,jo);
+						messages = messages.put(l, jo);
 					}
 				}
+				catalog = catalog.withDomain(DEFAULT_DOMAIN, messages);
 			} else {
 				log.warn("I18n directory " + messagesDir + " doesn't exist.");
 			}
@@ -88,46 +96,20 @@ public class I18n {
 		return translate(key, domain, null, locale, args);
 	}
 		
+	/**
+	 * The theme bundle gets precedence over the domain bundle, the domain bundle is a fallback.
+	 */
 	public String translate(String key, String domain, String theme, Locale locale, String... args) {
 		if (key == null) return "";
-		Map<Locale, JsonObject> messages = getMessagesMap(theme != null ? theme : domain, theme != null); // Theme gets precedence over domain, domain is a fallback
-
-		if (messages == null) {
-			return theme != null ? translate(key, domain, null, locale, args) : key;
+		final Catalog c = catalog;
+		Message message = null;
+		if (theme != null) {
+			message = c.theme(theme).get(key, locale);
 		}
-		JsonObject bundle = messages.get(locale) != null ? messages.get(locale) : messages.get(defaultLocale);
-		if (bundle == null) {
-			return theme != null ? translate(key, domain, null, locale, args) : key;
+		if (message == null) {
+			message = c.domain(domain).get(key, locale);
 		}
-		String text = bundle.getString(key);
-		if(text != null)
-		{
-			if (args.length > 0) {
-				try {
-					for (int i = 0; i < args.length; i++) {
-						text = text.replaceAll("\\{" + i + "\\}", args[i]);
-					}
-				} catch (RuntimeException e) {
-					log.error("Error replacing i18n variable", e);
-				}
-			}
-		}
-		else
-			text = theme != null ? translate(key, domain, null, locale, args) : key;
-		return text;
-	}
-
-	private Map<Locale, JsonObject> getMessagesMap(String domain) {
-		return getMessagesMap(domain, false);
-	}
-
-	private Map<Locale, JsonObject> getMessagesMap(String domain, Boolean byTheme) {
-		final Map<String, Map<Locale, JsonObject>> map = byTheme ? messagesByThemes : messagesByDomains;
-		Map<Locale, JsonObject> messages = map.get(domain);
-		if (messages == null) {
-			messages = messagesByDomains.get(DEFAULT_DOMAIN);
-		}
-		return messages;
+		return message != null ? message.format(args) : key;
 	}
 
 	@Deprecated
@@ -137,44 +119,63 @@ public class I18n {
 
 	@Deprecated
 	public JsonObject load(String acceptLanguage, String domain) {
-		Map<Locale, JsonObject> messages = getMessagesMap(domain);
-		if (messages == null) {
+		final Messages messages = catalog.domain(domain);
+		if (messages == Messages.EMPTY) {
 			return new JsonObject();
 		}
 		Locale l = getLocale(acceptLanguage);
-		JsonObject bundle = messages.get(l) != null ? messages.get(l) : messages.get(defaultLocale);
+		JsonObject bundle = messages.raw.get(l) != null ? messages.raw.get(l) : messages.raw.get(defaultLocale);
 		if (bundle == null) {
-			bundle = messages.get(defaultLocale2);
+			bundle = messages.raw.get(defaultLocale2);
 		}
 		return bundle;
 	}
 
 	public JsonObject load(HttpServerRequest request) {
-		final String domain = Renders.getHost(request);
-		final String acceptLanguage = I18n.acceptLanguage(request);
-		String themeName = I18n.getTheme(request);
-
-		Map<Locale, JsonObject> messages = themeName != null ? getMessagesMap(themeName, true) : getMessagesMap(domain);
-		if (messages == null) {
+		final Messages messages = requestMessages(request);
+		if (messages == Messages.EMPTY) {
 			return new JsonObject();
 		}
-		Locale l = getLocale(acceptLanguage);
-		JsonObject bundle = messages.get(l) != null ? messages.get(l) : messages.get(defaultLocale);
-		if (bundle == null) {
-			bundle = messages.get(defaultLocale);
+		return messages.raw.get(messages.locale(getLocale(acceptLanguage(request))));
+	}
+
+	/**
+	 * Same bundle as {@link #load(HttpServerRequest)}, encoded once by bundle until it is reloaded.
+	 * @return The encoded bundle, or null if the locale and the fallback locale have no bundle.
+	 */
+	public EncodedJson loadEncoded(HttpServerRequest request) {
+		final Messages messages = requestMessages(request);
+		if (messages == Messages.EMPTY) {
+			return EMPTY_BUNDLE;
 		}
-		return bundle;
+		return messages.encoded(getLocale(acceptLanguage(request)));
+	}
+
+	private Messages requestMessages(HttpServerRequest request) {
+		final String themeName = I18n.getTheme(request);
+		return themeName != null ? catalog.theme(themeName) : catalog.domain(Renders.getHost(request));
 	}
 
 	/* Dummy implementation. Just use the first langage option ...
 	 * Header example : "Accept-Language:fr,en-us;q=0.8,fr-fr;q=0.5,en;q=0.3"
+	 * The locales of the first 256 distinct headers are cached.
 	 */
 	public static Locale getLocale(String acceptLanguage) {
 		if (acceptLanguage == null) {
 			acceptLanguage = "fr";
 		}
-		String[] langs = acceptLanguage.split(",");
-		return Locale.forLanguageTag(langs[0].split("-")[0]);
+		Locale locale = locales.get(acceptLanguage);
+		if (locale == null) {
+			int end = 0;
+			while (end < acceptLanguage.length() && acceptLanguage.charAt(end) != ',' && acceptLanguage.charAt(end) != '-') {
+				end++;
+			}
+			locale = Locale.forLanguageTag(acceptLanguage.substring(0, end));
+			if (locales.size() < LOCALES_CACHE_SIZE) {
+				locales.put(acceptLanguage, locale);
+			}
+		}
+		return locale;
 	}
 
 	public static String acceptLanguage(HttpServerRequest request) {
@@ -244,35 +245,26 @@ public class I18n {
 		add(domain, locale, keys, false);
 	}
 
-	public void add(String domain, Locale locale, JsonObject keys, Boolean byTheme) {
-		Map<Locale, JsonObject> messages = byTheme ?
-				messagesByThemes.getOrDefault(domain, messagesByDomains.get(domain)) : messagesByDomains.get(domain);
+	public synchronized void add(String domain, Locale locale, JsonObject keys, Boolean byTheme) {
+		final Catalog c = catalog;
+		Messages messages = byTheme ? c.themes.get(domain) : null;
+		boolean theme = messages != null;
 		if (messages == null) {
-			HashMap<Locale, JsonObject> defaultMessages = (HashMap<Locale, JsonObject>)
-					messagesByDomains.get(DEFAULT_DOMAIN);
-			if (defaultMessages == null) return;
-			messages = new HashMap<>();
-			for(Locale l : defaultMessages.keySet()){
-				messages.put(l, defaultMessages.get(l).copy());
-			}
-			final Map<String, Map<Locale, JsonObject>> map = byTheme ? messagesByThemes : messagesByDomains;
-			map.put(domain, messages);
+			messages = c.domains.get(domain);
 		}
-		JsonObject m = messages.get(locale);
-		if (m == null) {
-			messages.put(locale, keys);
-		} else {
-			m.mergeIn(keys);
+		if (messages == null) {
+			messages = c.domains.get(DEFAULT_DOMAIN);
+			if (messages == null) return;
+			theme = byTheme;
 		}
+		messages = messages.merge(locale, keys);
+		catalog = theme ? c.withTheme(domain, messages) : c.withDomain(domain, messages);
 	}
 
 	public JsonArray getLanguages(String domain) {
-		final Map<Locale, JsonObject> messages = getMessagesMap(domain);
 		final JsonArray languages = new JsonArray();
-		if (messages != null) {
-			for (Locale l : messages.keySet()) {
-				languages.add(l.getLanguage());
-			}
+		for (Locale l : catalog.domain(domain).raw.keySet()) {
+			languages.add(l.getLanguage());
 		}
 		return languages;
 	}
@@ -285,7 +277,7 @@ public class I18n {
 	 * @param domain Domain name to initialize (will use DEFAULT_DOMAIN if null)
 	 * @return The I18n instance for method chaining
 	 */
-	public I18n initializeMessages(Map<Locale, JsonObject> messages, String domain) {
+	public synchronized I18n initializeMessages(Map<Locale, JsonObject> messages, String domain) {
 		if (messages == null) {
 			log.warn("Attempted to initialize null messages map");
 			return this;
@@ -294,12 +286,14 @@ public class I18n {
 		final String targetDomain = (domain == null || domain.isEmpty()) ? DEFAULT_DOMAIN : domain;
 		log.info("Directly initializing {} translations for domain: {}", messages.size(), targetDomain);
 		
-		// Create a defensive copy to avoid external modification
-		final Map<Locale, JsonObject> messagesCopy = new HashMap<>();
-		messagesCopy.putAll(messages);
-		
+		// Compile a defensive copy to avoid external modification
+		Messages compiled = Messages.EMPTY;
+		for (Map.Entry<Locale, JsonObject> entry : messages.entrySet()) {
+			compiled = compiled.put(entry.getKey(), entry.getValue());
+		}
+
 		// Replace existing messages for the domain
-		messagesByDomains.put(targetDomain, messagesCopy);
+		catalog = catalog.withDomain(targetDomain, compiled);
 		
 		return this;
 	}
@@ -315,4 +309,168 @@ public class I18n {
 		return initializeMessages(messages, DEFAULT_DOMAIN);
 	}
 
+	/**
+	 * Immutable snapshot of all the bundles, replaced as a whole when a bundle is added or reloaded.
+	 */
+	private static final class Catalog {
+		private final Map<String, Messages> domains;
+		private final Map<String, Messages> themes;
+
+		private Catalog(Map<String, Messages> domains, Map<String, Messages> themes) {
+			this.domains = domains;
+			this.themes = themes;
+		}
+
+		private Messages domain(String domain) {
+			final Messages messages = domains.get(domain);
+			return messages != null ? messages : defaults();
+		}
+
+		private Messages theme(String theme) {
+			final Messages messages = themes.get(theme);
+			return messages != null ? messages : defaults();
+		}
+
+		private Messages defaults() {
+			final Messages messages = domains.get(DEFAULT_DOMAIN);
+			return messages != null ? messages : Messages.EMPTY;
+		}
+
+		private Catalog withDomain(String domain, Messages messages) {
+			final Map<String, Messages> m = new HashMap<>(domains);
+			m.put(domain, messages);
+			return new Catalog(m, themes);
+		}
+
+		private Catalog withTheme(String theme, Messages messages) {
+			final Map<String, Messages> m = new HashMap<>(themes);
+			m.put(theme, messages);
+			return new Catalog(domains, m);
+		}
+	}
+
+	/**
+	 * Bundles of a domain or a theme by locale, the english bundle being the fallback of missing locales.
+	 */
+	private static final class Messages {
+		private static final Messages EMPTY = new Messages(Collections.emptyMap(), Collections.emptyMap());
+
+		private final Map<Locale, JsonObject> raw;
+		private final Map<Locale, Map<String, Message>> bundles;
+		private final ConcurrentMap<Locale, EncodedJson> encoded = new ConcurrentHashMap<>();
+
+		private Messages(Map<Locale, JsonObject> raw, Map<Locale, Map<String, Message>> bundles) {
+			this.raw = raw;
+			this.bundles = bundles;
+		}
+
+		private Message get(String key, Locale locale) {
+			Map<String, Message> bundle = bundles.get(locale);
+			if (bundle == null) {
+				bundle = bundles.get(defaultLocale);
+			}
+			return bundle != null ? bundle.get(key) : null;
+		}
+
+		private Locale locale(Locale locale) {
+			return raw.containsKey(locale) ? locale : defaultLocale;
+		}
+
+		private EncodedJson encoded(Locale locale) {
+			final Locale l = locale(locale);
+			final JsonObject json = raw.get(l);
+			return json != null ? encoded.computeIfAbsent(l, k -> new EncodedJson(json)) : null;
+		}
+
+		private Messages put(Locale locale, JsonObject keys) {
+			return with(locale, keys, new HashMap<>(keys.size() * 4 / 3 + 1));
+		}
+
+		private Messages merge(Locale locale, JsonObject keys) {
+			final JsonObject current = raw.get(locale);
+			if (current == null) {
+				return put(locale, keys);
+			}
+			return with(locale, current.copy().mergeIn(keys), new HashMap<>(bundles.get(locale)));
+		}
+
+		private Messages with(Locale locale, JsonObject json, Map<String, Message> bundle) {
+			for (Map.Entry<String, Object> entry : json) {
+				if (entry.getValue() instanceof String) {
+					bundle.put(entry.getKey(), Message.compile((String) entry.getValue()));
+				}
+			}
+			final Map<Locale, JsonObject> r = new HashMap<>(raw);
+			r.put(locale, json);
+			final Map<Locale, Map<String, Message>> b = new HashMap<>(bundles);
+			b.put(locale, bundle);
+			return new Messages(r, b);
+		}
+	}
+
+	/**
+	 * Message split on its {0}, {1}... placeholders, so the arguments are substituted without any regular expression.
+	 */
+	private static final class Message {
+		private final String text;
+		private final String[] literals;
+		private final int[] indexes;
+
+		private Message(String text, String[] literals, int[] indexes) {
+			this.text = text;
+			this.literals = literals;
+			this.indexes = indexes;
+		}
+
+		private static Message compile(String text) {
+			List<String> literals = null;
+			List<Integer> indexes = null;
+			int start = 0;
+			int open = text.indexOf('{');
+			while (open >= 0) {
+				int end = open + 1;
+				while (end < text.length() && end - open <= 9 && Character.isDigit(text.charAt(end))) {
+					end++;
+				}
+				if (end > open + 1 && end < text.length() && text.charAt(end) == '}' &&
+						(end == open + 2 || text.charAt(open + 1) != '0')) {
+					if (literals == null) {
+						literals = new ArrayList<>();
+						indexes = new ArrayList<>();
+					}
+					literals.add(text.substring(start, open));
+					indexes.add(Integer.parseInt(text.substring(open + 1, end)));
+					start = end + 1;
+				}
+				open = text.indexOf('{', open + 1);
+			}
+			if (literals == null) {
+				return new Message(text, null, null);
+			}
+			literals.add(text.substring(start));
+			final int[] idx = new int[indexes.size()];
+			for (int i = 0; i < idx.length; i++) {
+				idx[i] = indexes.get(i);
+			}
+			return new Message(text, literals.toArray(new String[0]), idx);
+		}
+
+		private String format(String[] args) {
+			if (indexes == null || args == null || args.length == 0) {
+				return text;
+			}
+			final StringBuilder sb = new StringBuilder(text.length() + 16 * indexes.length);
+			for (int i = 0; i < indexes.length; i++) {
+				sb.append(literals[i]);
+				final int index = indexes[i];
+				if (index < args.length && args[index] != null) {
+					sb.append(args[index]);
+				} else {
+					sb.append('{').append(index).append('}');
+				}
+			}
+			return sb.append(literals[indexes.length]).toString();
+		}
+	}
+
 }
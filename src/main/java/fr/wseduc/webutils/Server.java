@@ -27,15 +27,19 @@ import fr.wseduc.webutils.http.BaseController;
 import fr.wseduc.webutils.http.Binding;
 import fr.wseduc.webutils.http.Renders;
 import fr.wseduc.webutils.http.StaticResource;
+import fr.wseduc.webutils.http.StaticResourceCache;
 import fr.wseduc.webutils.logging.Tracer;
 import fr.wseduc.webutils.logging.TracerFactory;
 import fr.wseduc.webutils.metrics.EventBusProbe;
 import fr.wseduc.webutils.metrics.HealthCheckProbe;
 import fr.wseduc.webutils.metrics.HealthCheckProbeResult;
+import fr.wseduc.webutils.request.AccessLogWriter;
 import fr.wseduc.webutils.request.CookieHelper;
+import fr.wseduc.webutils.request.RequestUtils;
 import fr.wseduc.webutils.request.filter.Filter;
 import fr.wseduc.webutils.request.filter.SecurityHandler;
 import fr.wseduc.webutils.security.SecuredAction;
+import fr.wseduc.webutils.security.XSSUtils;
 import io.vertx.core.*;
 import io.vertx.core.eventbus.EventBus;
 import io.vertx.core.http.HttpServer;
@@ -63,7 +67,7 @@ public abstract class Server extends AbstractVerticle {
 	protected Map<String, SecuredAction> securedActions;
 	protected Set<Binding> securedUriBinding = new HashSet<>();
 	protected Set<Binding> mfaProtectedBinding = new HashSet<>();
-	private LocalMap<String, String> staticRessources;
+	private LocalMap<String, Long> staticRessources;
 	private boolean dev;
 	private HttpServer server;
   private final List<HealthCheckProbe> probes = new ArrayList<>();
@@ -82,6 +86,7 @@ public abstract class Server extends AbstractVerticle {
 			i18n.init(vertx);
 			final SharedDataHelper sharedDataHelper = SharedDataHelper.getInstance();
 			sharedDataHelper.init(vertx);
+			sharedDataHelper.configureNearCache(config.getJsonObject("shared-data-near-cache"));
       initializeProbes()
       .onSuccess(e -> {
         sharedDataHelper.<String, String>getLocalMulti("server", "signKey", "sameSiteValue", "httpServerOptions")
@@ -145,8 +150,19 @@ public abstract class Server extends AbstractVerticle {
   public void init(Promise<Void> startPromise, Map<String,String> serverConfig) {
 		CookieHelper.getInstance().init(
 				serverConfig.get("signKey"), serverConfig.get("sameSiteValue"), log);
-		staticRessources = vertx.sharedData().getLocalMap("staticRessources"); // TODO JBER
+		final JsonArray unfilteredHeaders = config.getJsonArray("xss-unfiltered-headers");
+		if (unfilteredHeaders != null) {
+			XSSUtils.setUnfilteredHeaders(unfilteredHeaders.stream()
+					.filter(String.class::isInstance).map(String.class::cast).collect(Collectors.toList()));
+		}
+		if (config.containsKey("max-json-body-size")) {
+			RequestUtils.setMaxBodySize(config.getLong("max-json-body-size"));
+		}
+		AccessLogWriter.configure(config.getJsonObject("access-log"));
+		staticRessources = vertx.sharedData().getLocalMap("staticRessourcesLastModified");
 		dev = "dev".equals(config.getString("mode"));
+		final StaticResourceCache staticResourceCache = StaticResourceCache.getInstance();
+		staticResourceCache.configure(config.getJsonObject("static-cache"), dev);
 
 		log.info("Verticle: " + this.getClass().getSimpleName() + " starts on port: " + config.getInteger("port"));
 
@@ -155,20 +171,22 @@ public abstract class Server extends AbstractVerticle {
 		// Serve public static resource like img, css, js. By convention in /public directory
 		rm.getWithRegEx(prefix.replaceAll("\\/", "\\/") + "\\/public\\/.+", request -> {
 			final String path = absolutePath(request.path().substring(prefix.length() + 1));
-			if (dev) {
+			if (staticResourceCache.isEnabled()) {
+				staticResourceCache.serve(vertx, request, path, dev);
+			} else if (dev) {
 				request.response().sendFile(path, ar -> {
 					if (ar.failed() && !request.response().ended()) {
 						Renders.notFound(request);
 					}
 				});
 			} else {
-				if (staticRessources.get(request.uri()) != null) {
-					StaticResource.serveRessource(request,
-							path, staticRessources.get(request.uri()), dev);
+				final Long cachedLastModified = staticRessources.get(request.uri());
+				if (cachedLastModified != null) {
+					StaticResource.serveRessource(request, path, cachedLastModified, dev);
 				} else {
 					vertx.fileSystem().props(path, af -> {
 						if (af.succeeded()) {
-							String lastModified = StaticResource.formatDate(af.result().lastModifiedTime());
+							final long lastModified = af.result().lastModifiedTime();
 							staticRessources.put(request.uri(), lastModified);
 							StaticResource.serveRessource(request, path, lastModified, dev);
 						} else {
@@ -301,7 +319,7 @@ public abstract class Server extends AbstractVerticle {
 
 	protected void i18nMessages(HttpServerRequest request) {
 
-		Controller.renderJson(request, i18n.load(request));
+		Controller.renderJson(request, i18n.loadEncoded(request));
 	}
 
 	/**
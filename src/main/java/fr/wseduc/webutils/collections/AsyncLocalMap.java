@@ -16,208 +16,429 @@
 
 package fr.wseduc.webutils.collections;
 
-import fr.wseduc.webutils.DefaultAsyncResult;
 import io.vertx.core.*;
+import io.vertx.core.json.JsonObject;
 import io.vertx.core.shareddata.AsyncMap;
 import io.vertx.core.shareddata.LocalMap;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
 
 import static fr.wseduc.webutils.DefaultAsyncResult.handleAsyncResult;
 
+/**
+ * Async view of a local map. The entries put with a ttl get a deadline : they are expired by get once their
+ * deadline is passed, and removed by a single periodic sweep, running only while deadlines are pending.
+ * The deadlines are kept in a hashed timing wheel of ticks, so a sweep only visits the entries due.
+ * As with timers, an expired entry is removed only if its value has not been replaced since.
+ * The map can be bounded, the least recently used entries being evicted.
+ */
 public class AsyncLocalMap<K, V> implements AsyncMap<K, V> {
 
+	private static final long DEFAULT_SWEEP_PERIOD = 100L;
+
 	private Vertx vertx;
 	private LocalMap<K, V> localMap;
+	private final int maxSize;
+	private final long sweepPeriod;
+	private final ConcurrentMap<K, Deadline<V>> deadlines = new ConcurrentHashMap<>();
+	private final ConcurrentMap<Long, List<K>> wheel = new ConcurrentHashMap<>();
+	private final LinkedHashMap<K, Boolean> lru;
+	private final LongAdder expirations = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private long sweeper = -1L;
+	private long lastTick;
 
 	public AsyncLocalMap(LocalMap<K, V> localMap) {
 		this(localMap, null);
 	}
 
 	public AsyncLocalMap(LocalMap<K, V> localMap, Vertx vertx) {
+		this(localMap, vertx, -1);
+	}
+
+	/**
+	 * @param maxSize maximum number of entries put through this map, the least recently used being evicted,
+	 *                negative for no limit
+	 */
+	public AsyncLocalMap(LocalMap<K, V> localMap, Vertx vertx, int maxSize) {
+		this(localMap, vertx, maxSize, DEFAULT_SWEEP_PERIOD);
+	}
+
+	/**
+	 * @param sweepPeriod period in ms of the removal of the expired entries, which may be kept until
+	 *                    the next sweep when they are not read
+	 */
+	public AsyncLocalMap(LocalMap<K, V> localMap, Vertx vertx, int maxSize, long sweepPeriod) {
 		this.localMap = localMap;
 		this.vertx = vertx;
+		this.maxSize = maxSize;
+		this.sweepPeriod = sweepPeriod > 0 ? sweepPeriod : DEFAULT_SWEEP_PERIOD;
+		this.lru = maxSize >= 0 ? new LinkedHashMap<>(16, 0.75f, true) : null;
+		this.lastTick = System.currentTimeMillis() / this.sweepPeriod;
+	}
+
+	/**
+	 * @return "entries" : number of entries of the local map, "expirations" : number of entries removed
+	 * after their ttl, "evictions" : number of entries evicted to keep the map under its maximum size
+	 */
+	public JsonObject stats() {
+		return new JsonObject()
+				.put("entries", localMap.size())
+				.put("expirations", expirations.sum())
+				.put("evictions", evictions.sum());
+	}
+
+	// ================================================= EXPIRY ==============================================
+
+	private static final class Deadline<V> {
+		private final V value;
+		private final long time;
+
+		private Deadline(V value, long time) {
+			this.value = value;
+			this.time = time;
+		}
+	}
+
+	private void expireAfter(K k, V v, long ttl) {
+		final long time = System.currentTimeMillis() + ttl;
+		deadlines.put(k, new Deadline<>(v, time));
+		synchronized (this) {
+			// a slot already swept would never be visited again
+			final long tick = Math.max((time + sweepPeriod - 1) / sweepPeriod, lastTick + 1);
+			wheel.compute(tick, (t, keys) -> {
+				final List<K> l = keys != null ? keys : new ArrayList<>();
+				l.add(k);
+				return l;
+			});
+		}
+		startSweeper();
+	}
+
+	private void noExpiry(K k) {
+		deadlines.remove(k);
+	}
+
+	/**
+	 * Remove the entry if its deadline is passed.
+	 * @return true if the entry has been expired
+	 */
+	private boolean expire(K k, long now) {
+		final Deadline<V> deadline = deadlines.get(k);
+		if (deadline == null || deadline.time > now) {
+			return false;
+		}
+		deadlines.remove(k, deadline);
+		if (localMap.removeIfPresent(k, deadline.value)) {
+			expirations.increment();
+			forget(k);
+			return true;
+		}
+		return false;
 	}
 
+	/**
+	 * Checked under the lock held by the sweep cancelling the timer, so a deadline added while the sweeper
+	 * is stopping restarts it.
+	 */
+	private void startSweeper() {
+		if (vertx != null) {
+			synchronized (this) {
+				if (sweeper < 0) {
+					sweeper = vertx.setPeriodic(sweepPeriod, id -> sweep());
+				}
+			}
+		}
+	}
+
+	private void sweep() {
+		final long now = System.currentTimeMillis();
+		final long tick = now / sweepPeriod;
+		final long from;
+		synchronized (this) {
+			from = lastTick;
+			lastTick = tick;
+		}
+		if (tick - from > wheel.size()) {
+			for (Long t : new ArrayList<>(wheel.keySet())) {
+				if (t <= tick) {
+					sweep(t, now);
+				}
+			}
+		} else {
+			for (long t = from + 1; t <= tick; t++) {
+				sweep(t, now);
+			}
+		}
+		if (deadlines.isEmpty()) {
+			synchronized (this) {
+				if (deadlines.isEmpty() && sweeper >= 0) {
+					vertx.cancelTimer(sweeper);
+					sweeper = -1L;
+				}
+			}
+		}
+	}
+
+	private void sweep(long tick, long now) {
+		final List<K> keys = wheel.remove(tick);
+		if (keys != null) {
+			for (K k : keys) {
+				expire(k, now);
+			}
+		}
+	}
+
+	// ================================================= LRU ==============================================
+
+	private void touch(K k, boolean put) {
+		if (lru == null) {
+			return;
+		}
+		final List<K> evicted;
+		synchronized (lru) {
+			if (put) {
+				lru.put(k, Boolean.TRUE);
+			} else {
+				lru.get(k);
+			}
+			if (lru.size() <= maxSize) {
+				return;
+			}
+			evicted = new ArrayList<>(lru.size() - maxSize);
+			final Iterator<K> it = lru.keySet().iterator();
+			while (lru.size() > maxSize && it.hasNext()) {
+				evicted.add(it.next());
+				it.remove();
+			}
+		}
+		for (K e : evicted) {
+			deadlines.remove(e);
+			localMap.remove(e);
+			evictions.increment();
+		}
+	}
+
+	private void forget(K k) {
+		if (lru != null) {
+			synchronized (lru) {
+				lru.remove(k);
+			}
+		}
+	}
+
+	// ================================================= ASYNC MAP ==============================================
+
 	@Override
 	public void get(K k, Handler<AsyncResult<V>> resultHandler) {
-		handleAsyncResult(localMap.get(k), resultHandler);
+		handleAsyncResult(get0(k), resultHandler);
 	}
 
 	@Override
 	public Future<@io.vertx.codegen.annotations.Nullable V> get(K k) {
-		return Future.succeededFuture(localMap.get(k));
+		return Future.succeededFuture(get0(k));
+	}
+
+	private V get0(K k) {
+		if (expire(k, System.currentTimeMillis())) {
+			return null;
+		}
+		final V v = localMap.get(k);
+		if (v != null) {
+			touch(k, false);
+		}
+		return v;
 	}
 
 	@Override
 	public void put(K k, V v, Handler<AsyncResult<Void>> completionHandler) {
-		localMap.put(k, v);
+		put(k, v);
 		handleAsyncResult(null, completionHandler);
 	}
 
 	@Override
 	public Future<Void> put(K k, V v) {
 		localMap.put(k, v);
+		noExpiry(k);
+		touch(k, true);
 		return Future.succeededFuture();
 	}
 
 	@Override
 	public void put(K k, V v, long ttl, Handler<AsyncResult<Void>> completionHandler) {
-		localMap.put(k, v);
+		put(k, v, ttl);
 		handleAsyncResult(null, completionHandler);
-		if (vertx != null) {
-			vertx.setTimer(ttl, event -> localMap.removeIfPresent(k, v));
-		}
 	}
 
 	@Override
 	public Future<Void> put(K k, V v, long ttl) {
 		localMap.put(k, v);
-		if (vertx != null) {
-			vertx.setTimer(ttl, event -> localMap.removeIfPresent(k, v));
-		}
+		expireAfter(k, v, ttl);
+		touch(k, true);
 		return Future.succeededFuture();
 	}
 
 	@Override
 	public void putIfAbsent(K k, V v, Handler<AsyncResult<V>> completionHandler) {
-		handleAsyncResult(localMap.putIfAbsent(k, v), completionHandler);
+		handleAsyncResult(putIfAbsent0(k, v, -1L), completionHandler);
 	}
 
 	@Override
 	public Future<@io.vertx.codegen.annotations.Nullable V> putIfAbsent(K k, V v) {
-		final Promise<V> promise = Promise.promise();
-		putIfAbsent(k, v, e -> {
-			if(e.succeeded()) {
-				promise.complete(e.result());
-			} else {
-				promise.fail(e.cause());
-			}
-		});
-		return promise.future();
+		return Future.succeededFuture(putIfAbsent0(k, v, -1L));
 	}
 
 	@Override
 	public void putIfAbsent(K k, V v, long ttl, Handler<AsyncResult<V>> completionHandler) {
-		handleAsyncResult(localMap.putIfAbsent(k, v), completionHandler);
-		if (vertx != null) {
-			vertx.setTimer(ttl, event -> localMap.removeIfPresent(k, v));
-		}
+		handleAsyncResult(putIfAbsent0(k, v, ttl), completionHandler);
 	}
 
 	@Override
 	public Future<@io.vertx.codegen.annotations.Nullable V> putIfAbsent(K k, V v, long ttl) {
-		final Promise<V> promise = Promise.promise();
-		putIfAbsent(k, v, ttl, e -> {
-			if(e.succeeded()) {
-				promise.complete(e.result());
-			} else {
-				promise.fail(e.cause());
+		return Future.succeededFuture(putIfAbsent0(k, v, ttl));
+	}
+
+	private V putIfAbsent0(K k, V v, long ttl) {
+		expire(k, System.currentTimeMillis());
+		final V previous = localMap.putIfAbsent(k, v);
+		if (previous == null) {
+			if (ttl >= 0) {
+				expireAfter(k, v, ttl);
 			}
-		});
-		return promise.future();
+			touch(k, true);
+		}
+		return previous;
 	}
 
 	@Override
 	public void remove(K k, Handler<AsyncResult<V>> resultHandler) {
-		handleAsyncResult(localMap.remove(k), resultHandler);
+		handleAsyncResult(remove0(k), resultHandler);
 	}
 
 	@Override
 	public Future<@io.vertx.codegen.annotations.Nullable V> remove(K k) {
-		final Promise<V> promise = Promise.promise();
-		remove(k, e -> {
-			if(e.succeeded()) {
-				promise.complete(e.result());
-			} else {
-				promise.fail(e.cause());
-			}
-		});
-		return promise.future();
+		return Future.succeededFuture(remove0(k));
+	}
+
+	private V remove0(K k) {
+		final V removed = localMap.remove(k);
+		noExpiry(k);
+		forget(k);
+		return removed;
 	}
 
 	@Override
 	public void removeIfPresent(K k, V v, Handler<AsyncResult<Boolean>> resultHandler) {
-		handleAsyncResult(localMap.removeIfPresent(k, v), resultHandler);
+		handleAsyncResult(removeIfPresent0(k, v), resultHandler);
 	}
 
 	@Override
 	public Future<Boolean> removeIfPresent(K k, V v) {
-		final Promise<Boolean> promise = Promise.promise();
-		removeIfPresent(k, v, e -> {
-			if(e.succeeded()) {
-				promise.complete(e.result());
-			} else {
-				promise.fail(e.cause());
-			}
-		});
-		return promise.future();
+		return Future.succeededFuture(removeIfPresent0(k, v));
+	}
+
+	private boolean removeIfPresent0(K k, V v) {
+		final boolean removed = localMap.removeIfPresent(k, v);
+		if (removed) {
+			noExpiry(k);
+			forget(k);
+		}
+		return removed;
 	}
 
 	@Override
 	public void replace(K k, V v, Handler<AsyncResult<V>> resultHandler) {
-		handleAsyncResult(localMap.replace(k, v), resultHandler);
+		handleAsyncResult(replace0(k, v, -1L), resultHandler);
 	}
 
 	@Override
 	public Future<@io.vertx.codegen.annotations.Nullable V> replace(K k, V v) {
-		return Future.succeededFuture(localMap.replace(k, v));
+		return Future.succeededFuture(replace0(k, v, -1L));
 	}
 
 	@Override
 	public void replace(K k, V v, long ttl, Handler<AsyncResult<@io.vertx.codegen.annotations.Nullable V>> asyncResultHandler) {
-		localMap.replace(k, v);
-		if (vertx != null) {
-			vertx.setTimer(ttl, event -> localMap.removeIfPresent(k, v));
-		}
+		handleAsyncResult(replace0(k, v, ttl), asyncResultHandler);
 	}
 
 	@Override
 	public Future<@io.vertx.codegen.annotations.Nullable V> replace(K k, V v, long ttl) {
+		return Future.succeededFuture(replace0(k, v, ttl));
+	}
+
+	private V replace0(K k, V v, long ttl) {
+		expire(k, System.currentTimeMillis());
 		final V replaced = localMap.replace(k, v);
-		if (vertx != null) {
-			vertx.setTimer(ttl, event -> localMap.removeIfPresent(k, v));
+		if (replaced != null) {
+			if (ttl >= 0) {
+				expireAfter(k, v, ttl);
+			} else {
+				noExpiry(k);
+			}
+			touch(k, true);
 		}
-		return Future.succeededFuture(replaced);
+		return replaced;
 	}
 
 	@Override
 	public void replaceIfPresent(K k, V oldValue, V newValue, Handler<AsyncResult<Boolean>> resultHandler) {
-		handleAsyncResult(localMap.replaceIfPresent(k, oldValue, newValue), resultHandler);
+		handleAsyncResult(replaceIfPresent0(k, oldValue, newValue, -1L), resultHandler);
 	}
 
 	@Override
 	public Future<Boolean> replaceIfPresent(K k, V oldValue, V newValue) {
-		return Future.succeededFuture(localMap.replaceIfPresent(k, oldValue, newValue));
+		return Future.succeededFuture(replaceIfPresent0(k, oldValue, newValue, -1L));
 	}
 
 	@Override
 	public void replaceIfPresent(K k, V oldValue, V newValue, long ttl, Handler<AsyncResult<Boolean>> resultHandler) {
-		replaceIfPresent(k, oldValue, newValue, ttl)
-		.onComplete(e -> resultHandler.handle(new DefaultAsyncResult<>(e.succeeded())));
+		handleAsyncResult(replaceIfPresent0(k, oldValue, newValue, ttl), resultHandler);
 	}
 
 	@Override
 	public Future<Boolean> replaceIfPresent(K k, V oldValue, V newValue, long ttl) {
-		return replaceIfPresent(k, oldValue, newValue).onComplete(e -> {
-			if(e.succeeded()) {
-				vertx.setTimer(ttl, event -> localMap.removeIfPresent(k, newValue));
+		return Future.succeededFuture(replaceIfPresent0(k, oldValue, newValue, ttl));
+	}
+
+	private boolean replaceIfPresent0(K k, V oldValue, V newValue, long ttl) {
+		expire(k, System.currentTimeMillis());
+		final boolean replaced = localMap.replaceIfPresent(k, oldValue, newValue);
+		if (replaced) {
+			if (ttl >= 0) {
+				expireAfter(k, newValue, ttl);
+			} else {
+				noExpiry(k);
 			}
-		});
+			touch(k, true);
+		}
+		return replaced;
 	}
 
 	@Override
 	public void clear(Handler<AsyncResult<Void>> resultHandler) {
-		localMap.clear();
+		clear();
 		handleAsyncResult(null, resultHandler);
 	}
 
 	@Override
 	public Future<Void> clear() {
 		localMap.clear();
+		deadlines.clear();
+		wheel.clear();
+		if (lru != null) {
+			synchronized (lru) {
+				lru.clear();
+			}
+		}
 		return Future.succeededFuture();
 	}
 
@@ -0,0 +1,145 @@
+/*
+ * Copyright © WebServices pour l'Éducation, 2014
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package fr.wseduc.webutils.collections;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+
+/**
+ * Thread safe cache of values expiring after a time to live, optionally bounded, like {@link ConcurrentTTLSet}.
+ * The entries are queued in insertion order : the expired ones are removed from the head of the queue,
+ * and when the map is full the oldest ones are evicted, so new entries are always cached.
+ * Expired entries are never returned by get, even before they are removed.
+ */
+public class ConcurrentTTLMap<K, V> {
+
+	private final ConcurrentHashMap<K, Entry<V>> map = new ConcurrentHashMap<>();
+	private final Queue<Node<K, V>> queue = new ConcurrentLinkedQueue<>();
+	private final AtomicBoolean cleaning = new AtomicBoolean();
+	private volatile long nextCleanUp;
+	private final long ttl;
+	private final int maxSize;
+
+	/**
+	 * @param ttl default time to live of the entries in ms
+	 * @param maxSize maximum number of entries, negative for an unbounded map
+	 */
+	public ConcurrentTTLMap(long ttl, int maxSize) {
+		this.ttl = ttl;
+		this.maxSize = maxSize;
+	}
+
+	public V get(K key) {
+		final Entry<V> entry = map.get(key);
+		if (entry == null) {
+			return null;
+		}
+		if (entry.expires <= System.currentTimeMillis()) {
+			map.remove(key, entry);
+			return null;
+		}
+		return entry.value;
+	}
+
+	public void put(K key, V value) {
+		put(key, value, ttl);
+	}
+
+	/**
+	 * @param ttl time to live of this entry in ms
+	 */
+	public void put(K key, V value, long ttl) {
+		final long now = System.currentTimeMillis();
+		final Entry<V> entry = new Entry<>(value, now + ttl);
+		map.put(key, entry);
+		queue.offer(new Node<>(key, entry));
+		cleanUp(now);
+	}
+
+	public V remove(K key) {
+		final Entry<V> entry = map.remove(key);
+		return entry != null ? entry.value : null;
+	}
+
+	/**
+	 * Remove the entries whose value matches the predicate.
+	 */
+	public void removeIf(Predicate<V> predicate) {
+		map.values().removeIf(e -> predicate.test(e.value));
+	}
+
+	public int size() {
+		cleanUp(System.currentTimeMillis());
+		return map.size();
+	}
+
+	public void clear() {
+		map.clear();
+		queue.clear();
+	}
+
+	/**
+	 * Remove the expired entries from the head of the queue, and the oldest ones while the map is over its maximum size.
+	 */
+	private void cleanUp(long now) {
+		if ((now < nextCleanUp && (maxSize < 0 || map.size() <= maxSize)) || !cleaning.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			Node<K, V> head;
+			while ((head = queue.peek()) != null) {
+				if (map.get(head.key) != head.entry) {
+					// removed or replaced since
+					queue.poll();
+				} else if (head.entry.expires <= now || (maxSize >= 0 && map.size() > maxSize)) {
+					queue.poll();
+					map.remove(head.key, head.entry);
+				} else {
+					break;
+				}
+			}
+			nextCleanUp = head != null ? head.entry.expires : now + ttl;
+		} finally {
+			cleaning.set(false);
+		}
+	}
+
+	private static final class Entry<V> {
+		private final V value;
+		private final long expires;
+
+		private Entry(V value, long expires) {
+			this.value = value;
+			this.expires = expires;
+		}
+	}
+
+	private static final class Node<K, V> {
+		private final K key;
+		private final Entry<V> entry;
+
+		private Node(K key, Entry<V> entry) {
+			this.key = key;
+			this.entry = entry;
+		}
+	}
+
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright © WebServices pour l'Éducation, 2014
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package fr.wseduc.webutils.collections;
+
+import io.vertx.core.Vertx;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Thread safe {@link TTLSet}, optionally bounded. As all the elements have the same time to live, the order of
+ * insertion is the order of expiry : the elements are queued when they are added, and the expired ones are
+ * removed from the head of the queue on each add, without scanning nor copying the set.
+ * Expired elements are never seen by contains, size or the iterator, even before they are removed.
+ * When the set is bounded, the oldest elements are evicted to keep it under its maximum size.
+ */
+public class ConcurrentTTLSet<T> extends AbstractSet<T> {
+
+	private final ConcurrentHashMap<T, Long> map = new ConcurrentHashMap<>();
+	private final Queue<Expiry<T>> queue = new ConcurrentLinkedQueue<>();
+	private final AtomicBoolean cleaning = new AtomicBoolean();
+	private volatile long nextCleanUp;
+	private final long ttl;
+	private final int maxSize;
+
+	public ConcurrentTTLSet(long ttl) {
+		this(ttl, -1);
+	}
+
+	/**
+	 * @param ttl time to live of the elements in ms
+	 * @param maxSize maximum number of elements, negative for an unbounded set
+	 */
+	public ConcurrentTTLSet(long ttl, int maxSize) {
+		this.ttl = ttl;
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Also remove the expired elements periodically, for sets which may stop receiving elements.
+	 */
+	public ConcurrentTTLSet(long ttl, int maxSize, Vertx vertx, long clearPeriod) {
+		this(ttl, maxSize);
+		if (vertx != null && clearPeriod > 0L) {
+			vertx.setPeriodic(clearPeriod, id -> purge());
+		}
+	}
+
+	private boolean expired(long time, long now) {
+		return now > time + ttl;
+	}
+
+	/**
+	 * Remove the expired elements, and the oldest ones while the set is over its maximum size.
+	 */
+	public void purge() {
+		cleanUp(System.currentTimeMillis());
+	}
+
+	private void cleanUp(long now) {
+		if ((now < nextCleanUp && (maxSize < 0 || map.size() <= maxSize)) || !cleaning.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			Expiry<T> head;
+			while ((head = queue.peek()) != null) {
+				if (expired(head.time, now) || (maxSize >= 0 && map.size() > maxSize)) {
+					queue.poll();
+					map.remove(head.element, head.time);
+				} else {
+					break;
+				}
+			}
+			// nothing can expire before the current head
+			nextCleanUp = (head != null ? head.time : now) + ttl + 1;
+		} finally {
+			cleaning.set(false);
+		}
+	}
+
+	@Override
+	public boolean add(T t) {
+		final long now = System.currentTimeMillis();
+		final Long time = now;
+		for (;;) {
+			final Long previous = map.putIfAbsent(t, time);
+			if (previous == null) {
+				break;
+			}
+			if (!expired(previous, now)) {
+				return false;
+			}
+			if (map.replace(t, previous, time)) {
+				break;
+			}
+		}
+		queue.offer(new Expiry<>(t, now));
+		cleanUp(now);
+		return true;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		final Long time = map.get(o);
+		if (time == null) {
+			return false;
+		}
+		if (expired(time, System.currentTimeMillis())) {
+			map.remove(o, time);
+			return false;
+		}
+		return true;
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		return map.remove(o) != null;
+	}
+
+	@Override
+	public int size() {
+		purge();
+		return map.size();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	@Override
+	public void clear() {
+		map.clear();
+		queue.clear();
+	}
+
+	@Override
+	public boolean retainAll(Collection<?> c) {
+		return map.keySet().retainAll(c);
+	}
+
+	@Override
+	public boolean removeAll(Collection<?> c) {
+		boolean changed = false;
+		for (Object o : c) {
+			changed |= remove(o);
+		}
+		return changed;
+	}
+
+	/**
+	 * Weakly consistent iterator over the elements not expired, supporting remove.
+	 */
+	@Override
+	public Iterator<T> iterator() {
+		final Iterator<Map.Entry<T, Long>> entries = map.entrySet().iterator();
+		final long now = System.currentTimeMillis();
+		return new Iterator<T>() {
+			private T next;
+			private T last;
+
+			@Override
+			public boolean hasNext() {
+				while (next == null && entries.hasNext()) {
+					final Map.Entry<T, Long> e = entries.next();
+					if (!expired(e.getValue(), now)) {
+						next = e.getKey();
+					}
+				}
+				return next != null;
+			}
+
+			@Override
+			public T next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				last = next;
+				next = null;
+				return last;
+			}
+
+			@Override
+			public void remove() {
+				if (last == null) {
+					throw new IllegalStateException();
+				}
+				map.remove(last);
+				last = null;
+			}
+		};
+	}
+
+	private static final class Expiry<T> {
+		private final T element;
+		private final long time;
+
+		private Expiry(T element, long time) {
+			this.element = element;
+			this.time = time;
+		}
+	}
+
+}
@@ -1,23 +1,41 @@
 package fr.wseduc.webutils.collections;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
-import io.vertx.core.CompositeFuture;
 import io.vertx.core.Future;
 import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
 import io.vertx.core.shareddata.AsyncMap;
 import io.vertx.core.shareddata.Lock;
 
+/**
+ * Access to the shared maps. The resolved async maps are kept, and the values of the maps configured with
+ * {@link #configureNearCache(JsonObject)} are cached locally for a time to live of the map.
+ * Values written through {@link #put(String, Object, Object)} or {@link #invalidate(String, Object[])}
+ * are invalidated on all the nodes through the event bus.
+ */
 public class SharedDataHelper {
 
+    public static final String INVALIDATION_ADDRESS = "wse.shared.data.invalidate";
     private static final Logger log = LoggerFactory.getLogger(SharedDataHelper.class);
+    private static final int NEAR_CACHE_MAX_SIZE = 10000;
     private Vertx vertx;
+    private final ConcurrentMap<String, AsyncMap<Object, Object>> asyncMaps = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AsyncMap<Object, Object>> localAsyncMaps = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, NearCache> nearCaches = new ConcurrentHashMap<>();
 
     private SharedDataHelper(){}
 
@@ -29,10 +47,50 @@ public class SharedDataHelper {
 		return SharedDataHolder.instance;
 	}
 
-	public void init(Vertx vertx) {
+	public synchronized void init(Vertx vertx) {
+		if (this.vertx == vertx) {
+			return;
+		}
 		this.vertx = vertx;
+		asyncMaps.clear();
+		localAsyncMaps.clear();
+		for (NearCache cache : nearCaches.values()) {
+			cache.clear();
+		}
+		vertx.eventBus().<JsonObject>consumer(INVALIDATION_ADDRESS, message -> {
+			final JsonObject body = message.body();
+			final NearCache cache = body != null ? nearCaches.get(body.getString("map", "")) : null;
+			if (cache != null) {
+				final JsonArray keys = body.getJsonArray("keys");
+				if (keys == null) {
+					cache.clear();
+				} else {
+					for (Object key : keys) {
+						cache.remove(key);
+					}
+				}
+			}
+		});
 	}
 
+    /**
+     * @param config time to live in ms of the values cached locally, by map name.
+     *               The values of the other maps are not cached.
+     */
+    public void configureNearCache(JsonObject config) {
+        if (config == null) {
+            return;
+        }
+        for (String mapName : config.fieldNames()) {
+            final long ttl = config.getLong(mapName, 0L);
+            if (ttl > 0) {
+                nearCaches.put(mapName, new NearCache(ttl));
+            } else {
+                nearCaches.remove(mapName);
+            }
+        }
+    }
+
     public Future<Lock> getLock(final String lockName, final long timeout) {
         return this.vertx.sharedData().getLockWithTimeout(lockName, timeout);
     }
@@ -47,22 +105,31 @@ public class SharedDataHelper {
     }
 
     public <K, V> Future<AsyncMap<K, V>> getLocalAsyncMap(String mapName) {
-        final Promise<AsyncMap<K, V>> promise = Promise.promise();
-        vertx.sharedData().<K, V>getLocalAsyncMap(mapName, ar -> {
-            if (ar.succeeded()) {
-                promise.complete(ar.result());
-            } else {
-                promise.fail(ar.cause());
-            }
-        });
-        return promise.future();
+        return asyncMap(mapName, true);
     }
 
     public <K, V> Future<AsyncMap<K, V>> getAsyncMap(String mapName) {
+        return asyncMap(mapName, false);
+    }
+
+    /**
+     * The resolved maps are kept rather than their futures, so the callers are not called back on the context
+     * of the first caller.
+     */
+    @SuppressWarnings("unchecked")
+    private <K, V> Future<AsyncMap<K, V>> asyncMap(String mapName, boolean local) {
+        final ConcurrentMap<String, AsyncMap<Object, Object>> maps = local ? localAsyncMaps : asyncMaps;
+        final AsyncMap<Object, Object> map = maps.get(mapName);
+        if (map != null) {
+            return Future.succeededFuture((AsyncMap<K, V>) (AsyncMap<?, ?>) map);
+        }
         final Promise<AsyncMap<K, V>> promise = Promise.promise();
-        vertx.sharedData().<K, V>getAsyncMap(mapName, ar -> {
+        final Future<AsyncMap<Object, Object>> future = local ?
+                vertx.sharedData().getLocalAsyncMap(mapName) : vertx.sharedData().getAsyncMap(mapName);
+        future.onComplete(ar -> {
             if (ar.succeeded()) {
-                promise.complete(ar.result());
+                maps.putIfAbsent(mapName, ar.result());
+                promise.complete((AsyncMap<K, V>) (AsyncMap<?, ?>) ar.result());
             } else {
                 promise.fail(ar.cause());
             }
@@ -71,27 +138,26 @@ public class SharedDataHelper {
     }
 
     public <K, V> Future<V> get(String mapName, K key) {
-        final Promise<V> promise = Promise.promise();
-        vertx.sharedData().<K, V>getAsyncMap(mapName, ar -> {
-            if (ar.succeeded()) {
-                getValue(key, promise, ar.result());
-            } else {
-                promise.fail(ar.cause());
-            }
-        });
-        return promise.future();
+        return get(mapName, key, false);
     }
 
     public <K, V> Future<V> getLocal(String mapName, K key) {
-        final Promise<V> promise = Promise.promise();
-        vertx.sharedData().<K, V>getLocalAsyncMap(mapName, ar -> {
-            if (ar.succeeded()) {
-                getValue(key, promise, ar.result());
-            } else {
-                promise.fail(ar.cause());
-            }
-        });
-        return promise.future();
+        return get(mapName, key, true);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <K, V> Future<V> get(String mapName, K key, boolean local) {
+        final NearCache cache = nearCaches.get(mapName);
+        if (cache == null) {
+            return this.<K, V>asyncMap(mapName, local).compose(map -> getValue(key, map));
+        }
+        final Object cached = cache.get(local, key);
+        if (cached != null) {
+            return Future.succeededFuture((V) cached);
+        }
+        final long generation = cache.generation();
+        return this.<K, V>asyncMap(mapName, local).compose(map -> getValue(key, map))
+                .onSuccess(value -> cache.put(local, key, value, generation));
     }
 
     private <K, V> Future<V> getValue(K key, final Promise<V> promise, AsyncMap<K, V> asyncMap) {
@@ -114,49 +180,155 @@ public class SharedDataHelper {
     }
 
     public <K, V> Future<Map<K, V>> getMulti(String mapName, K... keys) {
-        final Promise<Map<K, V>> promise = Promise.promise();
-        vertx.sharedData().<K, V>getAsyncMap(mapName, ar -> {
-            if (ar.succeeded()) {
-                final List<Future> futures = new ArrayList<>();
-                for (K key: keys) {
-                    futures.add(getValue(key, ar.result()));
-                }
-                CompositeFuture.all(futures).onSuccess(cf -> {
-                    final Map<K, V> res = new HashMap<>();
-                    int i = 0;
-                    for (K key: keys) {
-                        res.put(key, (V) futures.get(i++).result());
-                    }
-                    promise.complete(res);
-                }).onFailure(ex -> promise.fail(ex));
+        return getMulti(mapName, false, keys);
+    }
+
+    public <K, V> Future<Map<K, V>> getLocalMulti(String mapName, K... keys) {
+        return getMulti(mapName, true, keys);
+    }
+
+    /**
+     * The map is resolved once and only the distinct keys missing from the near cache are read from it.
+     */
+    @SuppressWarnings("unchecked")
+    private <K, V> Future<Map<K, V>> getMulti(String mapName, boolean local, K[] keys) {
+        final NearCache cache = nearCaches.get(mapName);
+        final Map<K, V> res = new HashMap<>();
+        final Set<K> missing = new LinkedHashSet<>();
+        for (K key : keys) {
+            final Object cached = cache != null ? cache.get(local, key) : null;
+            if (cached != null) {
+                res.put(key, (V) cached);
             } else {
-                promise.fail(ar.cause());
+                missing.add(key);
+            }
+        }
+        if (missing.isEmpty()) {
+            return Future.succeededFuture(res);
+        }
+        final long generation = cache != null ? cache.generation() : 0L;
+        return this.<K, V>asyncMap(mapName, local).compose(map -> {
+            final List<K> missingKeys = new ArrayList<>(missing);
+            final List<Future<V>> futures = new ArrayList<>(missingKeys.size());
+            for (K key : missingKeys) {
+                futures.add(getValue(key, map));
             }
+            return Future.all(futures).map(cf -> {
+                for (int i = 0; i < missingKeys.size(); i++) {
+                    final V value = futures.get(i).result();
+                    res.put(missingKeys.get(i), value);
+                    if (cache != null) {
+                        cache.put(local, missingKeys.get(i), value, generation);
+                    }
+                }
+                return res;
+            });
         });
-        return promise.future();
     }
 
-    public <K, V> Future<Map<K, V>> getLocalMulti(String mapName, K... keys) {
-        final Promise<Map<K, V>> promise = Promise.promise();
-        vertx.sharedData().<K, V>getLocalAsyncMap(mapName, ar -> {
-            if (ar.succeeded()) {
-                final List<Future> futures = new ArrayList<>();
-                for (K key: keys) {
-                    futures.add(getValue(key, ar.result()));
+    /**
+     * Put a value in a shared map and invalidate it in the near caches of all the nodes.
+     */
+    public <K, V> Future<Void> put(String mapName, K key, V value) {
+        return this.<K, V>getAsyncMap(mapName).compose(map -> map.put(key, value))
+                .onSuccess(v -> invalidate(mapName, key));
+    }
+
+    /**
+     * Put a value in a local map and invalidate it in the near caches.
+     */
+    public <K, V> Future<Void> putLocal(String mapName, K key, V value) {
+        return this.<K, V>getLocalAsyncMap(mapName).compose(map -> map.put(key, value))
+                .onSuccess(v -> invalidate(mapName, key));
+    }
+
+    /**
+     * Invalidate values of the near caches of all the nodes, to be called after a map has been modified directly.
+     * @param keys keys of the modified values, which must be JSON values like strings,
+     *             or none to invalidate all the values of the map
+     */
+    public void invalidate(String mapName, Object... keys) {
+        final NearCache cache = nearCaches.get(mapName);
+        final JsonObject message = new JsonObject().put("map", mapName);
+        if (keys == null || keys.length == 0) {
+            if (cache != null) {
+                cache.clear();
+            }
+        } else {
+            if (cache != null) {
+                for (Object key : keys) {
+                    cache.remove(key);
                 }
-                CompositeFuture.all(futures).onSuccess(cf -> {
-                    final Map<K, V> res = new HashMap<>();
-                    int i = 0;
-                    for (K key: keys) {
-                        res.put(key, (V) futures.get(i++).result());
-                    }
-                    promise.complete(res);
-                }).onFailure(ex -> promise.fail(ex));
-            } else {
-                promise.fail(ar.cause());
             }
-        });
-        return promise.future();
+            message.put("keys", new JsonArray(Arrays.asList(keys)));
+        }
+        if (vertx != null) {
+            vertx.eventBus().publish(INVALIDATION_ADDRESS, message);
+        }
+    }
+
+    /**
+     * Values of a map cached locally, apart for the local and the cluster map of the same name.
+     * An invalidation increments the generation, so the values read from the map before it are not cached.
+     */
+    private static final class NearCache {
+        private final ConcurrentTTLMap<Object, Object> localEntries;
+        private final ConcurrentTTLMap<Object, Object> clusterEntries;
+        private final AtomicLong generation = new AtomicLong();
+
+        private NearCache(long ttl) {
+            this.localEntries = new ConcurrentTTLMap<>(ttl, NEAR_CACHE_MAX_SIZE);
+            this.clusterEntries = new ConcurrentTTLMap<>(ttl, NEAR_CACHE_MAX_SIZE);
+        }
+
+        private ConcurrentTTLMap<Object, Object> entries(boolean local) {
+            return local ? localEntries : clusterEntries;
+        }
+
+        private long generation() {
+            return generation.get();
+        }
+
+        private Object get(boolean local, Object key) {
+            return copy(entries(local).get(key));
+        }
+
+        /**
+         * The JSON values are copied when they are cached and read, as they were by the maps,
+         * so callers cannot change the cached values.
+         */
+        private static Object copy(Object value) {
+            if (value instanceof JsonObject) {
+                return ((JsonObject) value).copy();
+            }
+            if (value instanceof JsonArray) {
+                return ((JsonArray) value).copy();
+            }
+            return value;
+        }
+
+        private void put(boolean local, Object key, Object value, long generation) {
+            if (value == null || generation != this.generation.get()) {
+                return;
+            }
+            final ConcurrentTTLMap<Object, Object> entries = entries(local);
+            entries.put(key, copy(value));
+            if (generation != this.generation.get()) {
+                entries.remove(key);
+            }
+        }
+
+        private void remove(Object key) {
+            generation.incrementAndGet();
+            localEntries.remove(key);
+            clusterEntries.remove(key);
+        }
+
+        private void clear() {
+            generation.incrementAndGet();
+            localEntries.clear();
+            clusterEntries.clear();
+        }
     }
 
 }
@@ -21,6 +21,10 @@ import io.vertx.core.Vertx;
 
 import java.util.*;
 
+/**
+ * Set of elements expiring after a time to live, not thread safe. Use {@link ConcurrentTTLSet} for sets shared
+ * between threads or large sets.
+ */
 public class TTLSet<T> implements Set<T> {
 
 	private final HashMap<T, Long> map = new HashMap<>();
@@ -36,18 +40,22 @@ public class TTLSet<T> implements Set<T> {
 			vertx.setPeriodic(clearPeriod, new Handler<Long>() {
 				@Override
 				public void handle(Long aLong) {
-					final long now = System.currentTimeMillis();
-					final Map<T, Long> copyMap = (Map<T, Long>) map.clone();
-					for (Map.Entry<T, Long> e: copyMap.entrySet()) {
-						if (now > (e.getValue() + ttl)) {
-							map.remove(e.getKey());
-						}
-					}
+					purge();
 				}
 			});
 		}
 	}
 
+	void purge() {
+		final long now = System.currentTimeMillis();
+		final Map<T, Long> copyMap = (Map<T, Long>) map.clone();
+		for (Map.Entry<T, Long> e: copyMap.entrySet()) {
+			if (now > (e.getValue() + ttl)) {
+				map.remove(e.getKey());
+			}
+		}
+	}
+
 	@Override
 	public int size() {
 		return map.size();
@@ -21,7 +21,9 @@ import java.util.List;
 
 import fr.wseduc.webutils.I18n;
 import fr.wseduc.webutils.collections.SharedDataHelper;
+import fr.wseduc.webutils.template.CompiledTemplate;
 import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
 import io.vertx.core.eventbus.Message;
@@ -186,6 +188,14 @@ public abstract class NotificationHelper implements SendEmail {
 		}
 	}
 
+	/**
+	 * Compile a mail template once for a bulk send : the bodies rendered with
+	 * {@link CompiledTemplate#renderAll(Vertx, List)} are sent with a null templateParams.
+	 */
+	public Future<CompiledTemplate> compileTemplate(HttpServerRequest request, String templateBody) {
+		return render.compileTemplate(request, templateBody, true);
+	}
+
 	protected abstract void sendEmail(JsonObject json, Handler<AsyncResult<Message<JsonObject>>> handler);
 
 	public String getSenderEmail() {
@@ -33,4 +33,29 @@ public class ETag {
 		return false;
 	}
 
+	/**
+	 * Weak comparison of the If-None-Match header, which can hold a list of entity tags or "*", with the given ETags.
+	 */
+	public static boolean matches(HttpServerRequest request, String... etags) {
+		final String inm = request.headers().get("If-None-Match");
+		if (inm == null) {
+			return false;
+		}
+		for (String tag : inm.split(",")) {
+			tag = tag.trim();
+			if (tag.startsWith("W/")) {
+				tag = tag.substring(2);
+			}
+			if ("*".equals(tag)) {
+				return true;
+			}
+			for (String etag : etags) {
+				if (tag.equals(etag)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
 }
@@ -20,18 +20,24 @@ import java.io.*;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+import com.samskivert.mustache.Mustache;
+import fr.wseduc.webutils.http.response.BufferWriter;
+import fr.wseduc.webutils.http.response.EncodedJson;
+import fr.wseduc.webutils.template.CompiledTemplate;
 import fr.wseduc.webutils.template.TemplateProcessor;
 import fr.wseduc.webutils.template.FileTemplateProcessor;
+import fr.wseduc.webutils.template.TemplateCache;
 import fr.wseduc.webutils.template.lambdas.FormatBirthDateLambda;
-import fr.wseduc.webutils.template.lambdas.I18nLambda;
-import fr.wseduc.webutils.template.lambdas.InfraLambda;
-import fr.wseduc.webutils.template.lambdas.LocaleDateLambda;
 import fr.wseduc.webutils.template.lambdas.ModsLambda;
-import fr.wseduc.webutils.template.lambdas.StaticLambda;
+import fr.wseduc.webutils.template.lambdas.TemplateLambdas;
 import io.netty.handler.codec.http.HttpResponseStatus;
+import io.vertx.core.Future;
 import io.vertx.core.Handler;
+import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
 import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.http.HttpServerResponse;
@@ -58,6 +64,7 @@ public class Renders {
 	protected String staticHost;
 	protected FileTemplateProcessor templateProcessor;
 	protected static final List<String> allowedHosts = new ArrayList<>();
+	private final boolean legacyRequestLambdas = overridesSetLambdaTemplateRequest(getClass());
 
 	public Renders(Vertx vertx, JsonObject config) {
 		this.config = config;
@@ -66,9 +73,7 @@ public class Renders {
 		}
 		this.vertx = vertx;
 		if (vertx != null) {
-			this.templateProcessor = new FileTemplateProcessor(vertx, "view/", false);
-			this.templateProcessor.setLambda("formatBirthDate", new FormatBirthDateLambda());
-			this.templateProcessor.setLambda("modVersion", new ModsLambda(vertx));
+			createTemplateProcessor();
 		}
 	}
 
@@ -85,25 +90,73 @@ public class Renders {
 				.onFailure(ex -> log.error("Error getting static-host conf", ex));
 
 		if (templateProcessor == null && vertx != null) {
-			this.templateProcessor = new FileTemplateProcessor(vertx, "view/", false);
-			this.templateProcessor.setLambda("formatBirthDate", new FormatBirthDateLambda());
-			this.templateProcessor.setLambda("modVersion", new ModsLambda(vertx));
+			createTemplateProcessor();
 		}
 	}
 
+	private void createTemplateProcessor() {
+		final JsonObject templateCache = config != null ? config.getJsonObject("template-cache") : null;
+		final boolean useCache = templateCache != null && templateCache.getBoolean("enabled", false);
+		if (useCache) {
+			TemplateCache.getInstance().configure(templateCache);
+		}
+		if (config != null) {
+			TemplateLambdas.getInstance().configure(config.getJsonObject("template-lambdas"));
+		}
+		this.templateProcessor = new FileTemplateProcessor(vertx, "view/", useCache);
+		this.templateProcessor.setLambda("formatBirthDate", new FormatBirthDateLambda());
+		this.templateProcessor.setLambda("modVersion", new ModsLambda(vertx));
+	}
+
+	/**
+	 * Still called before each rendering when a subclass overrides it : the lambdas it sets in the processor
+	 * are then used instead of the request lambdas.
+	 * @deprecated the lambdas are shared by all the requests rendered by this instance,
+	 * override {@link #templateRequestLambdas(HttpServerRequest)} to get lambdas scoped to the request.
+	 */
+	@Deprecated
 	protected void setLambdaTemplateRequest(final HttpServerRequest request)
+	{
+		for (Map.Entry<String, Mustache.Lambda> lambda : templateRequestLambdas(request).entrySet()) {
+			this.templateProcessor.setLambda(lambda.getKey(), lambda.getValue());
+		}
+	}
+
+	/**
+	 * The lambdas are shared by the requests with the same language, hosts and theme, the returned map can be modified.
+	 */
+	protected Map<String, Mustache.Lambda> templateRequestLambdas(final HttpServerRequest request)
 	{
 		String host = Renders.getHost(request);
 		if(host == null) // This can happen for forged requests
 			host = "";
 		String sttcHost = this.staticHost != null ? this.staticHost : host;
-		this.templateProcessor.setLambda("i18n",
-			new I18nLambda(I18n.acceptLanguage(request), host, I18n.getTheme(request)));
-		this.templateProcessor.setLambda("static",
-			new StaticLambda(config.getBoolean("ssl", sttcHost.startsWith("https")), sttcHost, this.pathPrefix + "/public"));
-		this.templateProcessor.setLambda("infra",
-			new InfraLambda(config.getBoolean("ssl", sttcHost.startsWith("https")), sttcHost, "/infra/public", request.headers().get("X-Forwarded-For") == null));
-		this.templateProcessor.setLambda("datetime", new LocaleDateLambda(I18n.acceptLanguage(request)));
+		final String acceptLanguage = I18n.acceptLanguage(request);
+		final boolean ssl = config.getBoolean("ssl", sttcHost.startsWith("https"));
+		return new HashMap<>(TemplateLambdas.getInstance().get(acceptLanguage, host, I18n.getTheme(request), ssl,
+				sttcHost, this.pathPrefix + "/public", request.headers().get("X-Forwarded-For") == null));
+	}
+
+	private Map<String, Mustache.Lambda> requestLambdas(final HttpServerRequest request)
+	{
+		if (legacyRequestLambdas) {
+			setLambdaTemplateRequest(request);
+			return null;
+		}
+		return templateRequestLambdas(request);
+	}
+
+	private static boolean overridesSetLambdaTemplateRequest(Class<?> clazz)
+	{
+		for (Class<?> c = clazz; c != null && c != Renders.class; c = c.getSuperclass()) {
+			try {
+				c.getDeclaredMethod("setLambdaTemplateRequest", HttpServerRequest.class);
+				return true;
+			} catch (NoSuchMethodException e) {
+				// not overridden by this class
+			}
+		}
+		return false;
 	}
 
 	public void renderView(HttpServerRequest request) {
@@ -134,11 +187,11 @@ public class Renders {
 						executeHandlersHookRender(request, new Handler<Void>() {
 							@Override
 							public void handle(Void v) {
-								request.response().end(writer.toString());
+								end(request.response(), writer);
 							}
 						});
 					} else {
-						request.response().end(writer.toString());
+						end(request.response(), writer);
 					}
 				} else {
 					renderError(request);
@@ -147,6 +200,14 @@ public class Renders {
 		});
 	}
 
+	private static void end(HttpServerResponse response, Writer writer) {
+		if (writer instanceof BufferWriter) {
+			((BufferWriter) writer).end(response);
+		} else {
+			response.end(writer.toString());
+		}
+	}
+
 	@SuppressWarnings("unchecked")
 	private void executeHandlersHookRender(final HttpServerRequest request, Handler<Void> endHandler) {
 		final Handler<Void>[] handlers = new Handler[hookRenderProcess.size() + 1];
@@ -165,21 +226,67 @@ public class Renders {
 
 	public void processTemplate(HttpServerRequest request, String template, JsonObject params, final Handler<String> handler)
 	{
-		this.setLambdaTemplateRequest(request);
-		this.templateProcessor.escapeHTML(true).processTemplate(this.genTemplateName(template, request), params, handler);
+		processTemplate(request, params, template, true, handler);
 	}
 
+	/**
+	 * Render the template into a {@link BufferWriter}, which is streamed to the response by renderView.
+	 */
 	public void processTemplate(final HttpServerRequest request, JsonObject p, String resourceName, Reader r, final Handler<Writer> handler)
 	{
-		this.setLambdaTemplateRequest(request);
+		processTemplate(request, p, resourceName, r, new BufferWriter(), handler);
+	}
+
+	/**
+	 * Render the template into the given writer, or into a new StringWriter if it is null.
+	 */
+	public void processTemplate(final HttpServerRequest request, JsonObject p, String resourceName, Reader r, final Writer out, final Handler<Writer> handler)
+	{
 		this.templateProcessor.escapeHTML(true);
-		this.templateProcessor.processTemplate(this.genTemplateName(resourceName, request), p, r, handler);
+		this.templateProcessor.processTemplate(this.genTemplateName(resourceName, request), p, r,
+				requestLambdas(request), out, handler);
 	}
 
 	public void processTemplate(final HttpServerRequest request, JsonObject p, String resourceName, boolean escapeHTML, final Handler<String> handler)
 	{
-		this.setLambdaTemplateRequest(request);
-		this.templateProcessor.escapeHTML(escapeHTML).processTemplate(this.genTemplateName(resourceName, request), p, handler);
+		this.templateProcessor.compileTemplate(this.genTemplateName(resourceName, request), escapeHTML,
+				requestLambdas(request), new Handler<CompiledTemplate>() {
+			@Override
+			public void handle(CompiledTemplate t) {
+				String body = null;
+				if (t != null) {
+					try {
+						body = t.render(p);
+					} catch (Exception e) {
+						log.error(e.getMessage(), e);
+					}
+				}
+				handler.handle(body);
+			}
+		});
+	}
+
+	/**
+	 * Load and compile a template once, to render many parameter sets with
+	 * {@link CompiledTemplate#renderAll(Vertx, List)}. Without request, only the lambdas of the processor are available.
+	 */
+	public Future<CompiledTemplate> compileTemplate(final HttpServerRequest request, String resourceName, boolean escapeHTML)
+	{
+		final Promise<CompiledTemplate> promise = Promise.promise();
+		try {
+			this.templateProcessor.compileTemplate(this.genTemplateName(resourceName, request), escapeHTML,
+					request != null ? requestLambdas(request) : null, t -> {
+				if (t != null) {
+					promise.tryComplete(t);
+				} else {
+					promise.tryFail("template.error");
+				}
+			});
+		} catch (RuntimeException e) {
+			log.error("Error compiling template " + resourceName, e);
+			promise.tryFail(e);
+		}
+		return promise.future();
 	}
 
 	private String genTemplateName(final String resourceName, final HttpServerRequest request)
@@ -337,6 +444,53 @@ public class Renders {
 		request.response().end(jo.encode());
 	}
 
+	/**
+	 * Send a JSON document encoded beforehand, gzipped if the client accepts it.
+	 * The client revalidates it with its ETag and gets a 304 while it has not changed.
+	 */
+	public static void renderJson(HttpServerRequest request, EncodedJson json) {
+		final HttpServerResponse response = request.response();
+		response.putHeader("content-type", "application/json");
+		response.putHeader("Cache-Control", "no-cache, must-revalidate");
+		response.putHeader("Expires", "-1");
+		if (json == null) {
+			response.end();
+			return;
+		}
+		response.putHeader("Vary", "Accept-Encoding");
+		if (ETag.matches(request, json.etag(), json.gzippedEtag())) {
+			response.putHeader("ETag", acceptsGzip(request) ? json.gzippedEtag() : json.etag());
+			response.setStatusCode(304).setStatusMessage("Not Modified").end();
+		} else if (acceptsGzip(request)) {
+			response.putHeader("ETag", json.gzippedEtag());
+			response.putHeader("Content-Encoding", "gzip");
+			response.end(json.gzipped());
+		} else {
+			response.putHeader("ETag", json.etag());
+			response.end(json.buffer());
+		}
+	}
+
+	private static boolean acceptsGzip(HttpServerRequest request) {
+		final String acceptEncoding = request.headers().get("Accept-Encoding");
+		if (acceptEncoding == null) {
+			return false;
+		}
+		for (String coding : acceptEncoding.split(",")) {
+			final String[] parts = coding.split(";");
+			final String name = parts[0].trim();
+			if ("gzip".equalsIgnoreCase(name) || "*".equals(name)) {
+				final String q = parts.length > 1 ? parts[1].trim() : "";
+				try {
+					return !q.startsWith("q=") || Double.parseDouble(q.substring(2)) > 0;
+				} catch (NumberFormatException e) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
 	public static void redirect(HttpServerRequest request, String location) {
 		redirect(request, getScheme(request) + "://" + getHost(request), location);
 	}
@@ -0,0 +1,62 @@
+/*
+ * Copyright © WebServices pour l'Éducation, 2014
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fr.wseduc.webutils.http;
+
+import fr.wseduc.webutils.security.ActionType;
+
+/**
+ * Immutable metadata of a controller route, computed once when the route is bound.
+ */
+public final class RouteDescriptor {
+
+	private final String qualifiedName;
+	private final String shortName;
+	private final boolean secured;
+	private final ActionType actionType;
+	private final boolean mfaProtected;
+
+	public RouteDescriptor(String qualifiedName, boolean secured, ActionType actionType, boolean mfaProtected) {
+		this.qualifiedName = qualifiedName;
+		//regex that transform full qualified class into short one:  o.e.a.controllers.AdminController for ex
+		// capture all package name except the last one and replace them by the first letter
+		this.shortName = qualifiedName.replaceAll("\\B\\w+(\\.[a-z])","$1");
+		this.secured = secured;
+		this.actionType = actionType;
+		this.mfaProtected = mfaProtected;
+	}
+
+	public String getQualifiedName() {
+		return qualifiedName;
+	}
+
+	public String getShortName() {
+		return shortName;
+	}
+
+	public boolean isSecured() {
+		return secured;
+	}
+
+	public ActionType getActionType() {
+		return actionType;
+	}
+
+	public boolean isMfaProtected() {
+		return mfaProtected;
+	}
+
+}
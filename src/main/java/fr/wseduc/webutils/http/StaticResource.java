@@ -16,44 +16,57 @@
 
 package fr.wseduc.webutils.http;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.Date;
 import java.util.Locale;
-import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.http.HttpServerResponse;
 
+/**
+ * HTTP dates are handled as epoch millis, truncated to the second. The formatter is immutable and the headers
+ * of the first 4096 distinct dates are cached by second. An If-Modified-Since header equal to the Last-Modified
+ * sent is checked without parsing.
+ */
 public class StaticResource {
 
-	private static final SimpleDateFormat format =
-			new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.UK);
-	static {
-		format.setTimeZone(TimeZone.getTimeZone("GMT"));
-	}
+	private static final DateTimeFormatter format =
+			DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US).withZone(ZoneOffset.UTC);
+	private static final int DATES_CACHE_SIZE = 4096;
+	private static final ConcurrentMap<Long, String> dates = new ConcurrentHashMap<>();
 
 	public static void addLastModifiedHeader(HttpServerResponse response, Date resourceLastModified) {
-		response.headers().add("Last-Modified", format.format(resourceLastModified));
+		addLastModifiedHeader(response, resourceLastModified.getTime());
+	}
+
+	public static void addLastModifiedHeader(HttpServerResponse response, long resourceLastModified) {
+		response.headers().add("Last-Modified", formatDate(resourceLastModified));
 	}
 
 	public static void addLastModifiedHeader(HttpServerResponse response, String resourceLastModified) {
 		response.headers().add("Last-Modified", resourceLastModified);
 	}
 
-	public static boolean checkLastModified(HttpServerRequest request, String resourceLastModified) {
-		String ims = request.headers().get("If-Modified-Since");
-		if (ims != null && resourceLastModified != null) {
-			try {
-				Date imsDate = format.parse(ims);
-				Date rlm = format.parse(resourceLastModified);
-				return imsDate != null && rlm != null &&
-						imsDate.getTime() >= rlm.getTime();
-			} catch (ParseException | NumberFormatException e) {
-				return false;
-			}
+	public static boolean checkLastModified(HttpServerRequest request, long resourceLastModified) {
+		final String ims = request.headers().get("If-Modified-Since");
+		if (ims == null || resourceLastModified < 0) {
+			return false;
+		}
+		if (ims.equals(formatDate(resourceLastModified))) {
+			return true;
 		}
-		return false;
+		final long imsDate = parseDate(ims);
+		return imsDate >= 0 && imsDate >= resourceLastModified / 1000 * 1000;
+	}
+
+	public static boolean checkLastModified(HttpServerRequest request, String resourceLastModified) {
+		return resourceLastModified != null && checkLastModified(request, parseDate(resourceLastModified));
 	}
 
 	public static void serveRessource(HttpServerRequest request, String ressourcePath,
@@ -63,10 +76,17 @@ public class StaticResource {
 
 	public static void serveRessource(HttpServerRequest request, String ressourcePath,
 			String resourceLastModified, boolean dev) {
+		serveRessource(request, ressourcePath, resourceLastModified != null ? parseDate(resourceLastModified) : -1L, dev);
+	}
+
+	public static void serveRessource(HttpServerRequest request, String ressourcePath,
+			long resourceLastModified, boolean dev) {
 		if (dev) {
 			request.response().headers().add("Cache-Control", "max-age=0, no-cache, must-revalidate");
 		}
-		addLastModifiedHeader(request.response(), resourceLastModified);
+		if (resourceLastModified >= 0) {
+			addLastModifiedHeader(request.response(), resourceLastModified);
+		}
 		if (checkLastModified(request, resourceLastModified)) {
 			request.response().setStatusCode(304).end();
 		} else {
@@ -79,11 +99,30 @@ public class StaticResource {
 	}
 
 	public static String formatDate(long lastModified) {
-		return formatDate(new Date(lastModified));
+		final long seconds = Math.floorDiv(lastModified, 1000L);
+		String date = dates.get(seconds);
+		if (date == null) {
+			date = format.format(Instant.ofEpochSecond(seconds));
+			if (dates.size() < DATES_CACHE_SIZE) {
+				dates.put(seconds, date);
+			}
+		}
+		return date;
 	}
 
 	public static String formatDate(Date lastModified) {
-		return format.format(lastModified);
+		return formatDate(lastModified.getTime());
+	}
+
+	/**
+	 * @return the epoch millis of an HTTP date, or -1 if it is invalid
+	 */
+	public static long parseDate(String date) {
+		try {
+			return ZonedDateTime.parse(date, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+		} catch (DateTimeParseException e) {
+			return -1L;
+		}
 	}
 
 }
@@ -0,0 +1,405 @@
+/*
+ * Copyright © WebServices pour l'Éducation, 2014
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fr.wseduc.webutils.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.GZIPOutputStream;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.file.FileProps;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.http.impl.MimeMapping;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+/**
+ * Static resources shared by all the verticle instances. The small files are held in heap buffers, in a LRU bounded
+ * by their total size, with a gzip variant for the compressible types and the brotli variant of a ".br" file built
+ * beside the resource. They are served with a strong ETag computed from their content, and honor If-None-Match and
+ * single byte Range requests. The larger files are still sent with sendFile.
+ * When a check interval is configured, the modification time of a cached file is checked at most once per interval.
+ */
+public final class StaticResourceCache {
+
+	private static final Logger log = LoggerFactory.getLogger(StaticResourceCache.class);
+	private static final StaticResourceCache instance = new StaticResourceCache();
+	private static final long[] UNSATISFIABLE = new long[0];
+	private static final long METADATA_COST = 256L;
+
+	private volatile boolean enabled = false;
+	private volatile long maxSize = 32L * 1024 * 1024;
+	private volatile long maxEntrySize = 512L * 1024;
+	private volatile long checkInterval = -1L;
+	private long size;
+	private final Map<String, Resource> entries = new LinkedHashMap<>(64, 0.75f, true);
+	private final ConcurrentMap<String, Future<Resource>> loading = new ConcurrentHashMap<>();
+
+	private StaticResourceCache() {
+	}
+
+	public static StaticResourceCache getInstance() {
+		return instance;
+	}
+
+	/**
+	 * @param config "enabled" (default false), "max-size" : maximum total size in bytes of the cached resources (default 32 MB),
+	 *               "max-entry-size" : size in bytes above which a file is sent with sendFile (default 512 kB),
+	 *               "check-interval" : minimum delay in ms between two modification checks of a file,
+	 *               0 to check on every access, negative to never check (default 1000 in dev mode, never otherwise)
+	 */
+	public void configure(JsonObject config, boolean dev) {
+		final JsonObject c = config != null ? config : new JsonObject();
+		this.enabled = c.getBoolean("enabled", false);
+		this.maxSize = c.getLong("max-size", 32L * 1024 * 1024);
+		this.maxEntrySize = c.getLong("max-entry-size", 512L * 1024);
+		this.checkInterval = c.getLong("check-interval", dev ? 1000L : -1L);
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+			size = 0;
+		}
+	}
+
+	public void serve(Vertx vertx, HttpServerRequest request, String path, boolean dev) {
+		final Resource resource;
+		synchronized (entries) {
+			resource = entries.get(path);
+		}
+		final long interval = this.checkInterval;
+		if (resource == null) {
+			load(vertx, path, r -> send(request, path, r, dev));
+		} else if (interval < 0 || System.currentTimeMillis() - resource.checked < interval) {
+			send(request, path, resource, dev);
+		} else {
+			vertx.fileSystem().props(path).onComplete(ar -> {
+				if (ar.succeeded() && ar.result().lastModifiedTime() == resource.lastModified &&
+						ar.result().size() == resource.size) {
+					resource.checked = System.currentTimeMillis();
+					send(request, path, resource, dev);
+				} else {
+					remove(path, resource);
+					load(vertx, path, r -> send(request, path, r, dev));
+				}
+			});
+		}
+	}
+
+	private void load(Vertx vertx, String path, Handler<Resource> handler) {
+		final Context context = vertx.getOrCreateContext();
+		final Promise<Resource> promise = Promise.promise();
+		final Future<Resource> pending = loading.putIfAbsent(path, promise.future());
+		if (pending != null) {
+			pending.onComplete(ar -> dispatch(context, handler, ar.result()));
+			return;
+		}
+		vertx.fileSystem().props(path).compose(props -> {
+			if (!props.isRegularFile()) {
+				return Future.succeededFuture((Resource) null);
+			}
+			final String contentType = MimeMapping.getMimeTypeForFilename(path);
+			if (props.size() > maxEntrySize) {
+				return Future.succeededFuture(new Resource(props, contentType, null, null, null, null));
+			}
+			final Future<Buffer> brotli = vertx.fileSystem().props(path + ".br")
+					.compose(br -> br.lastModifiedTime() >= props.lastModifiedTime() ?
+							vertx.fileSystem().readFile(path + ".br") : Future.succeededFuture((Buffer) null))
+					.otherwise((Buffer) null);
+			return vertx.fileSystem().readFile(path).compose(content -> brotli.compose(br ->
+					vertx.executeBlocking(() -> build(props, contentType, content, br), false)));
+		}).onComplete(ar -> {
+			loading.remove(path);
+			final Resource resource = ar.succeeded() ? ar.result() : null;
+			if (resource != null) {
+				put(path, resource);
+			}
+			promise.complete(resource);
+			handler.handle(resource);
+		});
+	}
+
+	private static Resource build(FileProps props, String contentType, Buffer content, Buffer br) throws IOException {
+		final byte[] bytes = content.getBytes();
+		final String hash;
+		try {
+			final byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+			hash = Base64.getUrlEncoder().withoutPadding().encodeToString(digest).substring(0, 22);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		byte[] gzip = null;
+		if (isCompressible(contentType) && bytes.length > 0) {
+			final ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 3 + 32);
+			try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+				gz.write(bytes);
+			}
+			if (out.size() < bytes.length) {
+				gzip = out.toByteArray();
+			}
+		}
+		return new Resource(props, contentType, hash, Buffer.buffer(bytes),
+				gzip != null ? Buffer.buffer(gzip) : null, br);
+	}
+
+	private static boolean isCompressible(String contentType) {
+		return contentType != null && (contentType.startsWith("text/") || contentType.contains("javascript") ||
+				contentType.contains("json") || contentType.contains("xml"));
+	}
+
+	private void dispatch(Context context, Handler<Resource> handler, Resource resource) {
+		if (Vertx.currentContext() == context) {
+			handler.handle(resource);
+		} else {
+			context.runOnContext(v -> handler.handle(resource));
+		}
+	}
+
+	private void put(String path, Resource resource) {
+		if (resource.cost > maxSize) {
+			return;
+		}
+		synchronized (entries) {
+			final Resource old = entries.put(path, resource);
+			if (old != null) {
+				size -= old.cost;
+			}
+			size += resource.cost;
+			final Iterator<Resource> it = entries.values().iterator();
+			while (size > maxSize && it.hasNext()) {
+				size -= it.next().cost;
+				it.remove();
+			}
+		}
+	}
+
+	private void remove(String path, Resource resource) {
+		synchronized (entries) {
+			if (entries.get(path) == resource) {
+				entries.remove(path);
+				size -= resource.cost;
+			}
+		}
+	}
+
+	private static void send(HttpServerRequest request, String path, Resource resource, boolean dev) {
+		final HttpServerResponse response = request.response();
+		if (dev) {
+			response.headers().add("Cache-Control", "max-age=0, no-cache, must-revalidate");
+		}
+		if (resource == null) {
+			response.sendFile(path, ar -> {
+				if (ar.failed() && !response.ended()) {
+					Renders.notFound(request);
+				}
+			});
+			return;
+		}
+		response.headers().set("Last-Modified", resource.lastModifiedHeader).set("Accept-Ranges", "bytes");
+		final String rangeHeader = request.headers().get("Range");
+		if (resource.identity == null) {
+			if (StaticResource.checkLastModified(request, resource.lastModified)) {
+				response.setStatusCode(304).end();
+				return;
+			}
+			final long[] range = range(rangeHeader, resource.size);
+			if (range == UNSATISFIABLE) {
+				unsatisfiable(response, resource);
+			} else if (range != null) {
+				response.setStatusCode(206)
+						.putHeader("Content-Range", "bytes " + range[0] + "-" + range[1] + "/" + resource.size)
+						.sendFile(path, range[0], range[1] - range[0] + 1);
+			} else {
+				response.sendFile(path, ar -> {
+					if (ar.failed() && !response.ended()) {
+						Renders.notFound(request);
+					}
+				});
+			}
+			return;
+		}
+		final String encoding = rangeHeader != null ? null : encoding(request.headers().get("Accept-Encoding"), resource);
+		final String etag = "\"" + resource.hash + (encoding == null ? "" : "-" + encoding) + "\"";
+		if (resource.gzip != null || resource.br != null) {
+			response.headers().set("Vary", "Accept-Encoding");
+		}
+		response.headers().set("ETag", etag);
+		final String ifNoneMatch = request.headers().get("If-None-Match");
+		if (ifNoneMatch != null ? matches(ifNoneMatch, etag) :
+				StaticResource.checkLastModified(request, resource.lastModified)) {
+			response.setStatusCode(304).end();
+			return;
+		}
+		if (resource.contentType != null) {
+			response.headers().set("Content-Type", resource.contentType);
+		}
+		final String ifRange = request.headers().get("If-Range");
+		final long[] range = ifRange == null || ifRange.equals(etag) ? range(rangeHeader, resource.size) : null;
+		if (range == UNSATISFIABLE) {
+			unsatisfiable(response, resource);
+		} else if (range != null) {
+			response.setStatusCode(206)
+					.putHeader("Content-Range", "bytes " + range[0] + "-" + range[1] + "/" + resource.size)
+					.end(resource.identity.slice((int) range[0], (int) range[1] + 1));
+		} else if ("br".equals(encoding)) {
+			response.putHeader("Content-Encoding", "br").end(resource.br);
+		} else if ("gzip".equals(encoding)) {
+			response.putHeader("Content-Encoding", "gzip").end(resource.gzip);
+		} else {
+			response.end(resource.identity);
+		}
+	}
+
+	private static void unsatisfiable(HttpServerResponse response, Resource resource) {
+		response.setStatusCode(416).putHeader("Content-Range", "bytes */" + resource.size).end();
+	}
+
+	/**
+	 * @return the first and last positions of a single byte range, null to ignore the header
+	 * (missing, invalid or multiple ranges), or UNSATISFIABLE
+	 */
+	static long[] range(String header, long size) {
+		if (header == null || !header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+			return null;
+		}
+		final String spec = header.substring(6).trim();
+		final int dash = spec.indexOf('-');
+		if (dash < 0) {
+			return null;
+		}
+		try {
+			final long start;
+			final long end;
+			if (dash == 0) {
+				final long suffix = Long.parseLong(spec.substring(1));
+				if (suffix <= 0 || size == 0) {
+					return UNSATISFIABLE;
+				}
+				start = Math.max(0, size - suffix);
+				end = size - 1;
+			} else {
+				start = Long.parseLong(spec.substring(0, dash));
+				end = dash == spec.length() - 1 ? size - 1 : Math.min(Long.parseLong(spec.substring(dash + 1)), size - 1);
+				if (start >= size) {
+					return UNSATISFIABLE;
+				}
+				if (end < start) {
+					return null;
+				}
+			}
+			return new long[]{start, end};
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	static String encoding(String acceptEncoding, Resource resource) {
+		if (acceptEncoding == null) {
+			return null;
+		}
+		if (resource.br != null && accepts(acceptEncoding, "br")) {
+			return "br";
+		}
+		if (resource.gzip != null && accepts(acceptEncoding, "gzip")) {
+			return "gzip";
+		}
+		return null;
+	}
+
+	private static boolean accepts(String acceptEncoding, String coding) {
+		for (String part : acceptEncoding.split(",")) {
+			final int semi = part.indexOf(';');
+			final String name = (semi < 0 ? part : part.substring(0, semi)).trim();
+			if (name.equalsIgnoreCase(coding)) {
+				if (semi < 0) {
+					return true;
+				}
+				final String param = part.substring(semi + 1).trim();
+				try {
+					return !param.startsWith("q=") || Double.parseDouble(param.substring(2)) > 0;
+				} catch (NumberFormatException e) {
+					return false;
+				}
+			}
+		}
+		return false;
+	}
+
+	static boolean matches(String ifNoneMatch, String etag) {
+		if ("*".equals(ifNoneMatch.trim())) {
+			return true;
+		}
+		for (String tag : ifNoneMatch.split(",")) {
+			tag = tag.trim();
+			if (tag.startsWith("W/")) {
+				tag = tag.substring(2);
+			}
+			if (tag.equals(etag)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	static final class Resource {
+		private final long lastModified;
+		private final long size;
+		private final String lastModifiedHeader;
+		private final String contentType;
+		private final String hash;
+		private final Buffer identity;
+		private final Buffer gzip;
+		private final Buffer br;
+		private final long cost;
+		private volatile long checked;
+
+		private Resource(FileProps props, String contentType, String hash, Buffer identity, Buffer gzip, Buffer br) {
+			this.lastModified = props.lastModifiedTime();
+			this.size = props.size();
+			this.lastModifiedHeader = StaticResource.formatDate(lastModified);
+			this.contentType = contentType;
+			this.hash = hash;
+			this.identity = identity;
+			this.gzip = gzip;
+			this.br = br;
+			this.cost = METADATA_COST + (identity != null ? identity.length() : 0) +
+					(gzip != null ? gzip.length() : 0) + (br != null ? br.length() : 0);
+			this.checked = System.currentTimeMillis();
+		}
+	}
+
+}
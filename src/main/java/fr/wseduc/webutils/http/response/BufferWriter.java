@@ -0,0 +1,161 @@
+package fr.wseduc.webutils.http.response;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerResponse;
+
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writer encoding characters in UTF-8 directly into fixed size chunks of bytes, which are then written
+ * to an HTTP response without being copied into a String first.
+ * Chunks are written while the response write queue is not full and resumed on drain.
+ */
+public class BufferWriter extends Writer {
+
+	private static final int DEFAULT_CHUNK_SIZE = 8192;
+	private final List<Buffer> chunks = new ArrayList<>();
+	private final byte[] chunk;
+	private int position;
+	private int length;
+	private char highSurrogate;
+
+	public BufferWriter() {
+		this(DEFAULT_CHUNK_SIZE);
+	}
+
+	public BufferWriter(int chunkSize) {
+		this.chunk = new byte[chunkSize];
+	}
+
+	@Override
+	public void write(int c) {
+		writeChar((char) c);
+	}
+
+	@Override
+	public void write(char[] cbuf, int off, int len) {
+		for (int i = off; i < off + len; i++) {
+			writeChar(cbuf[i]);
+		}
+	}
+
+	@Override
+	public void write(String str) {
+		write(str, 0, str.length());
+	}
+
+	@Override
+	public void write(String str, int off, int len) {
+		for (int i = off; i < off + len; i++) {
+			writeChar(str.charAt(i));
+		}
+	}
+
+	private void writeChar(char c) {
+		if (highSurrogate != 0) {
+			final char high = highSurrogate;
+			highSurrogate = 0;
+			if (Character.isLowSurrogate(c)) {
+				final int cp = Character.toCodePoint(high, c);
+				put((byte) (0xf0 | (cp >> 18)));
+				put((byte) (0x80 | ((cp >> 12) & 0x3f)));
+				put((byte) (0x80 | ((cp >> 6) & 0x3f)));
+				put((byte) (0x80 | (cp & 0x3f)));
+				return;
+			}
+			// unpaired surrogate, replaced like String.getBytes does
+			put((byte) '?');
+		}
+		if (c < 0x80) {
+			put((byte) c);
+		} else if (c < 0x800) {
+			put((byte) (0xc0 | (c >> 6)));
+			put((byte) (0x80 | (c & 0x3f)));
+		} else if (Character.isHighSurrogate(c)) {
+			highSurrogate = c;
+		} else if (Character.isLowSurrogate(c)) {
+			put((byte) '?');
+		} else {
+			put((byte) (0xe0 | (c >> 12)));
+			put((byte) (0x80 | ((c >> 6) & 0x3f)));
+			put((byte) (0x80 | (c & 0x3f)));
+		}
+	}
+
+	private void put(byte b) {
+		if (position == chunk.length) {
+			chunks.add(Buffer.buffer(position).appendBytes(chunk, 0, position));
+			position = 0;
+		}
+		chunk[position++] = b;
+		length++;
+	}
+
+	@Override
+	public void flush() {
+	}
+
+	@Override
+	public void close() {
+		if (highSurrogate != 0) {
+			highSurrogate = 0;
+			put((byte) '?');
+		}
+	}
+
+	/**
+	 * @return number of bytes written
+	 */
+	public int length() {
+		return length;
+	}
+
+	/**
+	 * Write the content to the response and end it. The content length header is set as the size is known.
+	 * @param response the response to end
+	 */
+	public void end(HttpServerResponse response) {
+		close();
+		if (position > 0) {
+			chunks.add(Buffer.buffer(position).appendBytes(chunk, 0, position));
+			position = 0;
+		}
+		response.putHeader("Content-Length", String.valueOf(length));
+		write(response, 0);
+	}
+
+	private void write(HttpServerResponse response, int index) {
+		for (int i = index; i < chunks.size(); i++) {
+			if (response.closed()) {
+				return;
+			}
+			if (i == chunks.size() - 1) {
+				response.end(chunks.get(i));
+				return;
+			}
+			if (response.writeQueueFull()) {
+				final int next = i;
+				response.drainHandler(v -> write(response, next));
+				return;
+			}
+			response.write(chunks.get(i));
+		}
+		response.end();
+	}
+
+	@Override
+	public String toString() {
+		final byte[] bytes = new byte[length];
+		int offset = 0;
+		for (Buffer buffer : chunks) {
+			buffer.getBytes(bytes, offset);
+			offset += buffer.length();
+		}
+		System.arraycopy(chunk, 0, bytes, offset, position);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+}
@@ -0,0 +1,73 @@
+package fr.wseduc.webutils.http.response;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * JSON document encoded once, with its gzipped bytes and a strong ETag computed from its content,
+ * to be sent many times without being serialized again.
+ */
+public final class EncodedJson {
+
+	private final Buffer buffer;
+	private final Buffer gzipped;
+	private final String etag;
+	private final String gzippedEtag;
+
+	public EncodedJson(JsonObject json) {
+		final byte[] bytes = json.toBuffer().getBytes();
+		this.buffer = Buffer.buffer(bytes);
+		this.gzipped = Buffer.buffer(gzip(bytes));
+		final String digest = digest(bytes);
+		this.etag = "\"" + digest + "\"";
+		this.gzippedEtag = "\"" + digest + "-gzip\"";
+	}
+
+	public Buffer buffer() {
+		return buffer;
+	}
+
+	public Buffer gzipped() {
+		return gzipped;
+	}
+
+	public String etag() {
+		return etag;
+	}
+
+	/**
+	 * The gzipped bytes are another representation, with their own strong ETag.
+	 */
+	public String gzippedEtag() {
+		return gzippedEtag;
+	}
+
+	private static byte[] gzip(byte[] bytes) {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4 + 64);
+		try (GZIPOutputStream gzip = new GZIPOutputStream(out) {{ def.setLevel(Deflater.BEST_COMPRESSION); }}) {
+			gzip.write(bytes);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return out.toByteArray();
+	}
+
+	private static String digest(byte[] bytes) {
+		try {
+			final byte[] hash = MessageDigest.getInstance("SHA-256").digest(bytes);
+			return Base64.getUrlEncoder().withoutPadding().encodeToString(hash).substring(0, 22);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
@@ -0,0 +1,91 @@
+package fr.wseduc.webutils.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.micrometer.backends.BackendRegistries;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static fr.wseduc.webutils.metrics.MetricsUtils.getSla;
+import static fr.wseduc.webutils.metrics.MetricsUtils.setTimerSla;
+import static java.util.Collections.emptyList;
+
+/**
+ * Micrometer recorder of the Basic authentication filter.
+ * The hit ratio of the credentials cache is given by the hit and miss counters.
+ */
+public class BasicAuthMetricsRecorder implements IBasicAuthMetricsRecorder {
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Timer grantedValidationTimes;
+    private final Timer deniedValidationTimes;
+
+    public BasicAuthMetricsRecorder(final Configuration configuration) {
+        final MeterRegistry registry = BackendRegistries.getDefaultNow();
+        if(registry == null) {
+            throw new IllegalStateException("micrometer.registries.empty");
+        }
+        hits = cacheCounter(registry, configuration, "hit");
+        misses = cacheCounter(registry, configuration, "miss");
+        grantedValidationTimes = validationTimer(registry, configuration, "granted");
+        deniedValidationTimes = validationTimer(registry, configuration, "denied");
+    }
+
+    private static Counter cacheCounter(final MeterRegistry registry, final Configuration configuration, final String result) {
+        return Counter.builder("http.basic.cache")
+                .tag("app", configuration.appName)
+                .tag("result", result)
+                .description("lookups of Basic credentials in the credentials cache")
+                .register(registry);
+    }
+
+    private static Timer validationTimer(final MeterRegistry registry, final Configuration configuration, final String outcome) {
+        return setTimerSla(
+                Timer.builder("http.basic.validation.time")
+                .tag("app", configuration.appName)
+                .tag("outcome", outcome)
+                .description("time spent by the backend to validate Basic credentials"),
+                configuration.sla, 1000
+        ).register(registry);
+    }
+
+    @Override
+    public void onCacheHit() {
+        hits.increment();
+    }
+
+    @Override
+    public void onCacheMiss() {
+        misses.increment();
+    }
+
+    @Override
+    public void onValidation(final long durationInNanos, final boolean granted) {
+        (granted ? grantedValidationTimes : deniedValidationTimes).record(durationInNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public static class Configuration {
+        final String appName;
+        final List<Duration> sla;
+
+        private Configuration(final String appName, final List<Duration> sla) {
+            this.appName = appName;
+            this.sla = sla;
+        }
+
+        public static Configuration fromJson(final String appName, final JsonObject conf) {
+            final List<Duration> sla;
+            if(conf == null) {
+                sla = emptyList();
+            } else {
+                sla = getSla("sla", conf);
+            }
+            return new Configuration(appName, sla);
+        }
+    }
+}
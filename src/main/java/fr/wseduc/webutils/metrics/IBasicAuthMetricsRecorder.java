@@ -0,0 +1,55 @@
+package fr.wseduc.webutils.metrics;
+
+/**
+ * Records the verifications of Basic authentication credentials.
+ */
+public interface IBasicAuthMetricsRecorder {
+    /**
+     * Called when the scope of the credentials was found in the credentials cache.
+     */
+    void onCacheHit();
+
+    /**
+     * Called when the credentials were not found in the credentials cache.
+     */
+    void onCacheMiss();
+
+    /**
+     * Called when the backend has validated or refused the credentials.
+     * @param durationInNanos Time spent by the backend validation
+     * @param granted true if the credentials have a scope
+     */
+    void onValidation(final long durationInNanos, final boolean granted);
+
+    /**
+     * @return false if the calls to this recorder are ignored
+     */
+    default boolean isEnabled() {
+        return true;
+    }
+
+    static final NoopBasicAuthMetricsRecorder noop = new NoopBasicAuthMetricsRecorder();
+
+    static class NoopBasicAuthMetricsRecorder implements IBasicAuthMetricsRecorder {
+
+        @Override
+        public void onCacheHit() {
+
+        }
+
+        @Override
+        public void onCacheMiss() {
+
+        }
+
+        @Override
+        public void onValidation(final long durationInNanos, final boolean granted) {
+
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+    }
+}
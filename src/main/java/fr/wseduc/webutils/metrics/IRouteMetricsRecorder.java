@@ -0,0 +1,57 @@
+package fr.wseduc.webutils.metrics;
+
+/**
+ * Records the timings of a controller route.
+ */
+public interface IRouteMetricsRecorder {
+    /**
+     * Called when the security filters chain has granted or denied the access to the route.
+     * @param durationInNanos Time spent in the filters chain
+     * @param granted true if the access was granted
+     */
+    void onFilterChainEnd(final long durationInNanos, final boolean granted);
+
+    /**
+     * Called when the route handler is invoked.
+     */
+    void onHandlerStart();
+
+    /**
+     * Called when the response of the route has ended.
+     * @param durationInNanos Time elapsed since the route handler was invoked
+     * @param statusCode Status code of the response
+     */
+    void onHandlerEnd(final long durationInNanos, final int statusCode);
+
+    /**
+     * @return false if the calls to this recorder are ignored
+     */
+    default boolean isEnabled() {
+        return true;
+    }
+
+    static final NoopRouteMetricsRecorder noop = new NoopRouteMetricsRecorder();
+
+    static class NoopRouteMetricsRecorder implements IRouteMetricsRecorder {
+
+        @Override
+        public void onFilterChainEnd(final long durationInNanos, final boolean granted) {
+
+        }
+
+        @Override
+        public void onHandlerStart() {
+
+        }
+
+        @Override
+        public void onHandlerEnd(final long durationInNanos, final int statusCode) {
+
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+    }
+}
@@ -45,4 +45,19 @@ public class MetricsUtils {
         }
         return timerBuilder;
     }
+
+    /**
+     * @param statusCode HTTP status code
+     * @return The class of the status code (2xx, 4xx, ...) to use as a low cardinality tag.
+     */
+    public static String statusClass(final int statusCode) {
+        switch (statusCode / 100) {
+            case 1: return "1xx";
+            case 2: return "2xx";
+            case 3: return "3xx";
+            case 4: return "4xx";
+            case 5: return "5xx";
+            default: return "unknown";
+        }
+    }
 }
@@ -0,0 +1,123 @@
+package fr.wseduc.webutils.metrics;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.micrometer.backends.BackendRegistries;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static fr.wseduc.webutils.metrics.MetricsUtils.getSla;
+import static fr.wseduc.webutils.metrics.MetricsUtils.setTimerSla;
+import static fr.wseduc.webutils.metrics.MetricsUtils.statusClass;
+import static java.util.Collections.emptyList;
+
+/**
+ * Micrometer recorder of a controller route, identified by the service method of its binding.
+ * Timers are split between the time spent in the security filters chain and the time spent by the handler,
+ * the latter being tagged with the status class of the response.
+ */
+public class RouteMetricsRecorder implements IRouteMetricsRecorder {
+
+    /**
+     * In-flight counters by application and route, shared by the recorders of the controller instances
+     * so the gauge of a route is registered once and counts the requests of all the instances.
+     */
+    private static final ConcurrentMap<String, AtomicInteger> inFlights = new ConcurrentHashMap<>();
+    private final MeterRegistry registry;
+    private final Configuration configuration;
+    private final String[] tags;
+    private final Timer grantedFilterChainTimes;
+    private final Timer deniedFilterChainTimes;
+    private final Timer[] handlerTimes = new Timer[6];
+    private final AtomicInteger inFlight;
+
+    public RouteMetricsRecorder(final Configuration configuration, final String serviceMethod) {
+        this.registry = BackendRegistries.getDefaultNow();
+        if(registry == null) {
+            throw new IllegalStateException("micrometer.registries.empty");
+        }
+        this.configuration = configuration;
+        this.tags = new String[]{"app", configuration.appName, "route", serviceMethod};
+        grantedFilterChainTimes = filterChainTimer("granted");
+        deniedFilterChainTimes = filterChainTimer("denied");
+        inFlight = inFlights.computeIfAbsent(configuration.appName + ":" + serviceMethod, k -> {
+            final AtomicInteger counter = new AtomicInteger();
+            Gauge.builder("http.route.inflight", counter, AtomicInteger::get)
+                    .tags(tags)
+                    .description("number of requests being handled by the route")
+                    .register(registry);
+            return counter;
+        });
+    }
+
+    private Timer filterChainTimer(final String outcome) {
+        return setTimerSla(
+                Timer.builder("http.route.filters.time")
+                .tags(tags)
+                .tag("outcome", outcome)
+                .description("time spent in the security filters chain of the route"),
+                configuration.sla, 1000
+        ).register(registry);
+    }
+
+    private Timer handlerTimer(final int statusCode) {
+        final int statusClass = statusCode / 100;
+        final int idx = statusClass >= 1 && statusClass <= 5 ? statusClass : 0;
+        Timer timer = handlerTimes[idx];
+        if (timer == null) {
+            // registering an existing meter returns it so concurrent initializations are harmless
+            timer = setTimerSla(
+                    Timer.builder("http.route.handler.time")
+                    .tags(tags)
+                    .tag("status", statusClass(statusCode))
+                    .description("time from the route handler invocation to the end of the response"),
+                    configuration.sla, 10000
+            ).register(registry);
+            handlerTimes[idx] = timer;
+        }
+        return timer;
+    }
+
+    @Override
+    public void onFilterChainEnd(final long durationInNanos, final boolean granted) {
+        (granted ? grantedFilterChainTimes : deniedFilterChainTimes).record(durationInNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void onHandlerStart() {
+        inFlight.incrementAndGet();
+    }
+
+    @Override
+    public void onHandlerEnd(final long durationInNanos, final int statusCode) {
+        inFlight.decrementAndGet();
+        handlerTimer(statusCode).record(durationInNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public static class Configuration {
+        final String appName;
+        final List<Duration> sla;
+
+        private Configuration(final String appName, final List<Duration> sla) {
+            this.appName = appName;
+            this.sla = sla;
+        }
+
+        public static Configuration fromJson(final String appName, final JsonObject conf) {
+            final List<Duration> sla;
+            if(conf == null) {
+                sla = emptyList();
+            } else {
+                sla = getSla("sla", conf);
+            }
+            return new Configuration(appName, sla);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright © WebServices pour l'Éducation, 2014
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package fr.wseduc.webutils.request;
+
+import fr.wseduc.webutils.http.Renders;
+import fr.wseduc.webutils.security.SecureHttpServerRequest;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.json.JsonObject;
+
+import java.time.Instant;
+
+import static fr.wseduc.webutils.request.RequestUtils.getTokenHeader;
+import static fr.wseduc.webutils.request.RequestUtils.getUserAgent;
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+/**
+ * Values of an access log line, captured on the event loop and formatted later by the {@link AccessLogWriter}.
+ */
+final class AccessLogRecord {
+
+	final AccessLogger logger;
+	final Instant timestamp;
+	final String ip;
+	final String method;
+	final String path;
+	final String query;
+	final String userAgent;
+	final boolean secured;
+	final String userId;
+	final String sessionId;
+	final String tokenId;
+
+	AccessLogRecord(AccessLogger logger, HttpServerRequest request) {
+		this.logger = logger;
+		this.timestamp = Instant.now();
+		this.ip = Renders.getIp(request);
+		this.method = request.method().name();
+		this.path = request.path();
+		this.query = request.query();
+		this.userAgent = getUserAgent(request);
+		this.secured = request instanceof SecureHttpServerRequest;
+		if (secured) {
+			final JsonObject session = ((SecureHttpServerRequest) request).getSession();
+			final String externalId = session != null ? session.getString("externalId") : null;
+			this.userId = isBlank(externalId) ? IAccessLogger.UNAUTHENTICATED_USER_ID : externalId;
+			final String oneSessionId = CookieHelper.getInstance().getSigned("oneSessionId", request);
+			this.sessionId = isBlank(oneSessionId) ? IAccessLogger.NO_SESSION_COOKIE : oneSessionId;
+			this.tokenId = getTokenHeader(request).orElse(IAccessLogger.NO_TOKEN_ID);
+		} else {
+			this.userId = null;
+			this.sessionId = null;
+			this.tokenId = null;
+		}
+	}
+
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright © WebServices pour l'Éducation, 2014
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package fr.wseduc.webutils.request;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes the access logs out of the event loops. The records captured by the loggers are put in a lock free
+ * ring buffer, and a background thread formats and writes them by batches.
+ * When the buffer is full, records are dropped and counted, or the caller waits for free space if the
+ * overflow policy is "block".
+ */
+public final class AccessLogWriter implements Runnable {
+
+	private static final Logger log = LoggerFactory.getLogger(AccessLogWriter.class);
+	private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+	private static final long DROP_REPORT_INTERVAL = 10000L;
+
+	private static volatile int queueSize = 8192;
+	private static volatile int batchSize = 256;
+	private static volatile boolean block = false;
+	private static volatile AccessLogWriter instance;
+
+	private final Ring ring;
+	private final int batch;
+	private final boolean blocking;
+	private final LongAdder dropped = new LongAdder();
+	private final Thread thread;
+	private volatile boolean sleeping;
+	private long reportedDropped;
+	private long lastDropReport;
+
+	private AccessLogWriter(int queueSize, int batchSize, boolean block) {
+		this.ring = new Ring(queueSize);
+		this.batch = batchSize;
+		this.blocking = block;
+		this.thread = new Thread(this, "access-log-writer");
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	/**
+	 * Must be called before the first access log is written.
+	 * @param config "queue-size" : capacity of the buffer, rounded up to a power of two (default 8192),
+	 *               "batch-size" : maximum number of records written before checking the dropped records (default 256),
+	 *               "overflow" : "drop" to drop the records when the buffer is full (default),
+	 *               "block" to wait for free space
+	 */
+	public static synchronized void configure(JsonObject config) {
+		if (config == null) {
+			return;
+		}
+		if (instance != null) {
+			log.warn("Access log writer already started, configuration ignored");
+			return;
+		}
+		queueSize = config.getInteger("queue-size", 8192);
+		batchSize = config.getInteger("batch-size", 256);
+		block = "block".equals(config.getString("overflow", "drop"));
+	}
+
+	public static AccessLogWriter getInstance() {
+		AccessLogWriter writer = instance;
+		if (writer == null) {
+			synchronized (AccessLogWriter.class) {
+				writer = instance;
+				if (writer == null) {
+					writer = new AccessLogWriter(queueSize, batchSize, block);
+					instance = writer;
+				}
+			}
+		}
+		return writer;
+	}
+
+	/**
+	 * @return number of records dropped because the buffer was full
+	 */
+	public long getDropped() {
+		return dropped.sum();
+	}
+
+	void write(AccessLogRecord record) {
+		if (!ring.offer(record)) {
+			if (!blocking) {
+				dropped.increment();
+				return;
+			}
+			do {
+				LockSupport.unpark(thread);
+				LockSupport.parkNanos(100_000L);
+			} while (!ring.offer(record));
+		}
+		if (sleeping) {
+			LockSupport.unpark(thread);
+		}
+	}
+
+	@Override
+	public void run() {
+		final StringBuilder sb = new StringBuilder(256);
+		for (;;) {
+			int n = 0;
+			AccessLogRecord record;
+			while (n < batch && (record = ring.poll()) != null) {
+				sb.setLength(0);
+				try {
+					record.logger.write(record, sb);
+				} catch (RuntimeException e) {
+					log.error("Error writing access log", e);
+				}
+				n++;
+			}
+			reportDropped();
+			if (n == 0) {
+				sleeping = true;
+				if (ring.isEmpty()) {
+					LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+				}
+				sleeping = false;
+			}
+		}
+	}
+
+	private void reportDropped() {
+		final long d = dropped.sum();
+		if (d != reportedDropped) {
+			final long now = System.currentTimeMillis();
+			if (now - lastDropReport >= DROP_REPORT_INTERVAL) {
+				log.warn("Access log buffer full : " + (d - reportedDropped) + " records dropped");
+				reportedDropped = d;
+				lastDropReport = now;
+			}
+		}
+	}
+
+	/**
+	 * Bounded multiple producers and single consumer queue. Each slot has a sequence telling
+	 * whether it is free for the producer of a position or filled for the consumer.
+	 */
+	private static final class Ring {
+
+		private final int mask;
+		private final AtomicReferenceArray<AccessLogRecord> slots;
+		private final AtomicLongArray sequences;
+		private final AtomicLong tail = new AtomicLong();
+		private long head;
+
+		private Ring(int size) {
+			int capacity = 2;
+			while (capacity < size) {
+				capacity <<= 1;
+			}
+			this.mask = capacity - 1;
+			this.slots = new AtomicReferenceArray<>(capacity);
+			this.sequences = new AtomicLongArray(capacity);
+			for (int i = 0; i < capacity; i++) {
+				sequences.set(i, i);
+			}
+		}
+
+		private boolean offer(AccessLogRecord record) {
+			long t = tail.get();
+			for (;;) {
+				final int i = (int) t & mask;
+				final long available = sequences.get(i) - t;
+				if (available == 0) {
+					if (tail.compareAndSet(t, t + 1)) {
+						slots.lazySet(i, record);
+						sequences.set(i, t + 1);
+						return true;
+					}
+					t = tail.get();
+				} else if (available < 0) {
+					return false;
+				} else {
+					t = tail.get();
+				}
+			}
+		}
+
+		private AccessLogRecord poll() {
+			final int i = (int) head & mask;
+			if (sequences.get(i) != head + 1) {
+				return null;
+			}
+			final AccessLogRecord record = slots.get(i);
+			slots.lazySet(i, null);
+			sequences.set(i, head + mask + 1);
+			head++;
+			return record;
+		}
+
+		private boolean isEmpty() {
+			return sequences.get((int) head & mask) != head + 1;
+		}
+	}
+
+}
@@ -31,6 +31,8 @@ public class AccessLogger implements IAccessLogger{
 	protected static final io.vertx.core.logging.Logger log = LoggerFactory.getLogger(AccessLogger.class);
 
 
+	private final boolean customFormat = overridesFormatLog(getClass());
+
 	/**
 	 * Log the following line if the user is <strong>not</strong> authenticated :
 	 * <pre>“ip” “verb uri” “user-agent”</pre>
@@ -38,14 +40,61 @@ public class AccessLogger implements IAccessLogger{
 	 * Log the following line if the user is authenticated :
 	 * <pre>“ip” “verb uri” “user-agent” - userId sessionId tokenId</pre>
 	 *
+	 * The values are captured here and the line is formatted and written by the {@link AccessLogWriter}.
+	 *
 	 * @param request Incoming user request
 	 * @param handler Downstream process ({@code null} will always be supplied
 	 */
 	public void log(HttpServerRequest request, Handler<Void> handler) {
-		log.trace(formatLog(request, null));
+		if (isEnabled()) {
+			if (customFormat) {
+				write(formatLog(request, null));
+			} else {
+				AccessLogWriter.getInstance().write(new AccessLogRecord(this, request));
+			}
+		}
 		handler.handle(null);
 	}
 
+	boolean isEnabled() {
+		return log.isTraceEnabled();
+	}
+
+	void write(String line) {
+		log.trace(line);
+	}
+
+	void write(AccessLogRecord record, StringBuilder sb) {
+		format(record, sb);
+		write(sb.toString());
+	}
+
+	void format(AccessLogRecord record, StringBuilder sb) {
+		sb.append('"').append(record.ip).append("\" \"").append(record.method).append(' ').append(record.path);
+		if (record.query != null) {
+			sb.append('?').append(record.query);
+		}
+		sb.append("\" \"").append(record.userAgent).append('"');
+		if (record.secured) {
+			sb.append(" - ").append(record.userId).append(' ').append(record.sessionId).append(' ').append(record.tokenId);
+		}
+	}
+
+	/**
+	 * Subclasses formatting the lines with their own formatLog are logged synchronously.
+	 */
+	private static boolean overridesFormatLog(Class<?> clazz) {
+		for (Class<?> c = clazz; c != AccessLogger.class && c != AccessLoggerJson.class; c = c.getSuperclass()) {
+			try {
+				c.getDeclaredMethod("formatLog", HttpServerRequest.class, String.class);
+				return true;
+			} catch (NoSuchMethodException e) {
+				// not overridden by this class
+			}
+		}
+		return false;
+	}
+
 	protected String formatLog(final HttpServerRequest request, final String userId) {
 		return String.format("\"%s\" \"%s %s%s\" \"%s\"%s",
 				Renders.getIp(request), request.method(),
@@ -16,13 +16,14 @@
 
 package fr.wseduc.webutils.request;
 
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
 import fr.wseduc.webutils.http.Renders;
 import fr.wseduc.webutils.security.SecureHttpServerRequest;
-import io.vertx.core.Handler;
 import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.json.JsonObject;
 
 import java.time.Instant;
+import java.util.logging.Level;
 
 import static fr.wseduc.webutils.request.RequestUtils.getTokenHeader;
 import static fr.wseduc.webutils.request.RequestUtils.getUserAgent;
@@ -32,19 +33,47 @@ public class AccessLoggerJson extends AccessLogger {
 
   protected static final java.util.logging.Logger log = java.util.logging.Logger.getLogger("ACCESS");
 
-	/**
-	 * Log the following line if the user is <strong>not</strong> authenticated :
-	 * <pre>“ip” “verb uri” “user-agent”</pre>
-	 *
-	 * Log the following line if the user is authenticated :
-	 * <pre>“ip” “verb uri” “user-agent” - userId sessionId tokenId</pre>
-	 *
-	 * @param request Incoming user request
-	 * @param handler Downstream process ({@code null} will always be supplied
-	 */
-	public void log(HttpServerRequest request, Handler<Void> handler) {
-		log.finest(formatLog(request, null));
-		handler.handle(null);
+  private static final JsonStringEncoder encoder = JsonStringEncoder.getInstance();
+
+	@Override
+	boolean isEnabled() {
+		return log.isLoggable(Level.FINEST);
+	}
+
+	@Override
+	void write(String line) {
+		log.finest(line);
+	}
+
+	@Override
+	void format(AccessLogRecord record, StringBuilder sb) {
+		sb.append('{');
+		field(sb, "timestamp", record.timestamp.toString());
+		field(sb, "ip", record.ip);
+		field(sb, "method", record.method);
+		field(sb, "path", record.path);
+		field(sb, "query", record.query);
+		field(sb, "userAgent", record.userAgent);
+		if (record.secured) {
+			field(sb, "userId", record.userId);
+			field(sb, "sessionId", record.sessionId);
+			field(sb, "tokenId", record.tokenId);
+		}
+		sb.append('}');
+	}
+
+	private static void field(StringBuilder sb, String name, String value) {
+		if (sb.length() > 1) {
+			sb.append(',');
+		}
+		sb.append('"').append(name).append("\":");
+		if (value == null) {
+			sb.append("null");
+		} else {
+			sb.append('"');
+			encoder.quoteAsString(value, sb);
+			sb.append('"');
+		}
 	}
 
 	protected String formatLog(final HttpServerRequest request, final String userId) {
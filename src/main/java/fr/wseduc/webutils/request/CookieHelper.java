@@ -16,6 +16,7 @@
 
 package fr.wseduc.webutils.request;
 
+import fr.wseduc.webutils.collections.ConcurrentTTLMap;
 import fr.wseduc.webutils.http.Renders;
 import io.netty.handler.codec.http.Cookie;
 import io.netty.handler.codec.http.CookieDecoder;
@@ -23,21 +24,26 @@ import io.netty.handler.codec.http.DefaultCookie;
 import io.netty.handler.codec.http.ServerCookieEncoder;
 import io.netty.handler.codec.http.cookie.CookieHeaderNames;
 
-import java.io.UnsupportedEncodingException;
-import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
 import java.util.Set;
 
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
 import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.http.ServerWebSocket;
 import io.vertx.core.logging.Logger;
 
-import fr.wseduc.webutils.security.HmacSha1;
+import fr.wseduc.webutils.security.SecureHttpServerRequest;
 
 public class CookieHelper {
 
 	private String signKey;
 	private Logger log;
+	private volatile ThreadLocal<Mac> macs;
+	private volatile ConcurrentTTLMap<String, Boolean> verified = new ConcurrentTTLMap<>(600000L, 10000);
 
 	private static CookieHeaderNames.SameSite sameSiteValue = CookieHeaderNames.SameSite.Strict;
 
@@ -52,12 +58,12 @@ public class CookieHelper {
 	}
 
 	public void init(String signkey, Logger log) {
-		this.signKey = signkey;
+		setSignKey(signkey);
 		this.log = log;
 	}
 
 	public void init(String signKey, String sameSiteValue, Logger log) {
-		this.signKey = signKey;
+		setSignKey(signKey);
 		this.log = log;
 			if (sameSiteValue != null) {
 				this.log.info(String.format("SameSiteValue is not null. Configured as %s", sameSiteValue));
@@ -69,9 +75,56 @@ public class CookieHelper {
 			}
 	}
 
+	private void setSignKey(String signKey) {
+		this.signKey = signKey;
+		this.macs = signKey != null ? ThreadLocal.withInitial(() -> {
+			try {
+				final Mac mac = Mac.getInstance("HmacSHA1");
+				mac.init(new SecretKeySpec(signKey.getBytes(), "HmacSHA1"));
+				return mac;
+			} catch (GeneralSecurityException | IllegalArgumentException e) {
+				throw new IllegalStateException(e);
+			}
+		}) : null;
+		final ConcurrentTTLMap<String, Boolean> v = verified;
+		if (v != null) {
+			v.clear();
+		}
+	}
+
+	/**
+	 * Configure the cache of verified signed cookies, which avoids computing the signature of the hot sessions
+	 * on each request.
+	 * @param maxSize maximum number of cached cookies, 0 to disable the cache (default 10000)
+	 * @param ttl time in ms a verified cookie is kept (default 600000)
+	 */
+	public void setVerificationCache(int maxSize, long ttl) {
+		this.verified = maxSize > 0 ? new ConcurrentTTLMap<>(ttl, maxSize) : null;
+	}
+
+	/**
+	 * @return the cookies of the request, decoded once per request when the request is secured
+	 */
+	private static Set<Cookie> cookies(HttpServerRequest request) {
+		final String header = request.headers().get("Cookie");
+		if (header == null) {
+			return null;
+		}
+		if (request instanceof SecureHttpServerRequest) {
+			final SecureHttpServerRequest sr = (SecureHttpServerRequest) request;
+			CookieJar jar = sr.getCookieJar();
+			if (jar == null || !jar.isDecodedFrom(header)) {
+				jar = new CookieJar(header);
+				sr.setCookieJar(jar);
+			}
+			return jar.cookies();
+		}
+		return CookieDecoder.decode(header, false);
+	}
+
 	public static String get(String name, HttpServerRequest request) {
-		if (request.headers().get("Cookie") != null) {
-			Set<Cookie> cookies = CookieDecoder.decode(request.headers().get("Cookie"), false);
+		final Set<Cookie> cookies = cookies(request);
+		if (cookies != null) {
 			for (Cookie c : cookies) {
 				if (c.getName().equals(name)) {
 					return c.getValue();
@@ -115,8 +168,7 @@ public class CookieHelper {
 		if (signKey != null) {
 			try {
 				signCookie(cookie);
-			} catch (InvalidKeyException | NoSuchAlgorithmException
-					| IllegalStateException | UnsupportedEncodingException e) {
+			} catch (IllegalStateException e) {
 				log.error(e);
 				return;
 			}
@@ -140,8 +192,7 @@ public class CookieHelper {
 		if (signKey != null) {
 			try {
 				signCookie(cookie);
-			} catch (InvalidKeyException | NoSuchAlgorithmException
-					| IllegalStateException | UnsupportedEncodingException e) {
+			} catch (IllegalStateException e) {
 				log.error(e);
 				return;
 			}
@@ -150,22 +201,45 @@ public class CookieHelper {
 		}
 	}
 
-	private void signCookie(Cookie cookie)
-			throws InvalidKeyException, NoSuchAlgorithmException,
-			IllegalStateException, UnsupportedEncodingException {
-		String signature = HmacSha1.sign(
+	private void signCookie(Cookie cookie) throws IllegalStateException {
+		String signature = sign(
 				cookie.getDomain()+cookie.getName()+
-				cookie.getPath()+cookie.getValue(), signKey);
+				cookie.getPath()+cookie.getValue());
 		cookie.setValue(cookie.getValue() + ":" + signature);
 	}
 
+	private String sign(String content) throws IllegalStateException {
+		return Base64.getEncoder().encodeToString(macs.get().doFinal(content.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	private boolean verify(String content, String signature) {
+		final ConcurrentTTLMap<String, Boolean> cache = verified;
+		final String key = cache != null ? content + ":" + signature : null;
+		if (key != null && cache.get(key) != null) {
+			return true;
+		}
+		final String calcSign;
+		try {
+			calcSign = sign(content);
+		} catch (IllegalStateException e) {
+			return false;
+		}
+		if (!calcSign.equals(signature)) {
+			return false;
+		}
+		if (key != null) {
+			cache.put(key, Boolean.TRUE);
+		}
+		return true;
+	}
+
 	public String getSigned(String name, HttpServerRequest request) {
 		return getSigned(name, "/", request);
 	}
 
 	public String getSigned(String name, String path, HttpServerRequest request) {
-		if (request.headers().get("Cookie") != null) {
-			Set<Cookie> cookies = CookieDecoder.decode(request.headers().get("Cookie"), false);
+		final Set<Cookie> cookies = cookies(request);
+		if (cookies != null) {
 			return getSignedCookie(name, path, cookies);
 		}
 		return null;
@@ -184,26 +258,20 @@ public class CookieHelper {
 	}
 
 	private String getSignedCookie(String name, String path, Set<Cookie> cookies) {
+		if (macs == null) {
+			return null;
+		}
 		for (Cookie c : cookies) {
 			if (c.getName().equals(name) && c.getValue().contains(":")) {
 				int idx = c.getValue().lastIndexOf(":");
 				if (idx > c.getValue().length() - 1) continue;
 				String value = c.getValue().substring(0, idx);
 				String signature = c.getValue().substring(idx+1);
-				String calcSign = null;
 				String cookiePath = path;
 				if (cookiePath == null || cookiePath.trim().isEmpty()) {
 					cookiePath = c.getPath();
 				}
-				try {
-					calcSign = HmacSha1.sign(
-							c.getDomain() + c.getName() +
-									cookiePath + value, signKey);
-				} catch (InvalidKeyException | NoSuchAlgorithmException
-						| IllegalStateException
-						| UnsupportedEncodingException e) {
-				}
-				if (calcSign != null && calcSign.equals(signature)) {
+				if (verify(c.getDomain() + c.getName() + cookiePath + value, signature)) {
 					return value;
 				}
 			}
@@ -0,0 +1,46 @@
+/*
+ * Copyright © WebServices pour l'Éducation, 2014
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package fr.wseduc.webutils.request;
+
+import io.netty.handler.codec.http.Cookie;
+import io.netty.handler.codec.http.CookieDecoder;
+
+import java.util.Set;
+
+/**
+ * Cookies decoded from the Cookie header of a request, kept by the request so the header is decoded once.
+ */
+public final class CookieJar {
+
+	private final String header;
+	private final Set<Cookie> cookies;
+
+	CookieJar(String header) {
+		this.header = header;
+		this.cookies = CookieDecoder.decode(header, false);
+	}
+
+	boolean isDecodedFrom(String header) {
+		return this.header == header || this.header.equals(header);
+	}
+
+	Set<Cookie> cookies() {
+		return cookies;
+	}
+
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright © WebServices pour l'Éducation, 2014
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package fr.wseduc.webutils.request;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import fr.wseduc.webutils.security.XSSUtils;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.json.jackson.DatabindCodec;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Incremental decoder of a JSON request body. The chunks of the body are fed to a non blocking parser as they are
+ * received and the strings are stripped of XSS as they are parsed, so the body is never aggregated nor copied
+ * to a string before being decoded.
+ * @param <T> decoded value
+ */
+abstract class JsonBodyDecoder<T> {
+
+	private final JsonParser parser;
+	private final ByteArrayFeeder feeder;
+	private int depth;
+	private boolean started;
+
+	private JsonBodyDecoder() {
+		try {
+			parser = DatabindCodec.mapper().getFactory().createNonBlockingByteArrayParser();
+		} catch (IOException e) {
+			throw new DecodeException("Failed to create JSON parser : " + e.getMessage(), e);
+		}
+		feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+	}
+
+	static JsonBodyDecoder<JsonObject> jsonObject() {
+		return new Tree<JsonObject>() {
+			@Override
+			@SuppressWarnings("unchecked")
+			protected JsonObject result(Object root) {
+				if (!(root instanceof Map)) {
+					throw new DecodeException("Failed to decode : JSON object expected");
+				}
+				return new fr.wseduc.webutils.collections.JsonObject((Map<String, Object>) root);
+			}
+		};
+	}
+
+	static JsonBodyDecoder<JsonArray> jsonArray() {
+		return new Tree<JsonArray>() {
+			@Override
+			protected JsonArray result(Object root) {
+				if (!(root instanceof List)) {
+					throw new DecodeException("Failed to decode : JSON array expected");
+				}
+				return new fr.wseduc.webutils.collections.JsonArray((List) root);
+			}
+		};
+	}
+
+	/**
+	 * @param type type of the value bound from the body
+	 * @param onEmptyBody supplier of the value of an empty body, null to fail on an empty body
+	 */
+	static <T> JsonBodyDecoder<T> value(JavaType type, Supplier<T> onEmptyBody) {
+		return new Value<>(type, onEmptyBody);
+	}
+
+	void feed(Buffer chunk) {
+		try {
+			feeder.feedInput(chunk.getBytes(), 0, chunk.length());
+			nextTokens();
+		} catch (IOException e) {
+			throw new DecodeException("Failed to decode : " + e.getMessage(), e);
+		}
+	}
+
+	T end() {
+		try {
+			feeder.endOfInput();
+			nextTokens();
+			parser.close();
+		} catch (IOException e) {
+			throw new DecodeException("Failed to decode : " + e.getMessage(), e);
+		}
+		if (!started) {
+			return empty();
+		}
+		if (depth != 0) {
+			throw new DecodeException("Failed to decode : unexpected end of input");
+		}
+		return result();
+	}
+
+	private void nextTokens() throws IOException {
+		JsonToken token;
+		while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+			if (started && depth == 0) {
+				throw new DecodeException("Failed to decode : unexpected trailing token");
+			}
+			started = true;
+			if (token.isStructStart()) {
+				depth++;
+			} else if (token.isStructEnd()) {
+				depth--;
+			}
+			token(token, parser);
+		}
+	}
+
+	protected abstract void token(JsonToken token, JsonParser parser) throws IOException;
+
+	protected abstract T result();
+
+	protected T empty() {
+		throw new DecodeException("Failed to decode : empty body");
+	}
+
+	/**
+	 * Builds the maps and lists of a JSON object or array while parsing.
+	 */
+	private abstract static class Tree<T> extends JsonBodyDecoder<T> {
+
+		private final Deque<Object> containers = new ArrayDeque<>();
+		private String field;
+		private Object root;
+
+		@Override
+		protected void token(JsonToken token, JsonParser parser) throws IOException {
+			switch (token) {
+				case START_OBJECT:
+					final Map<String, Object> object = new LinkedHashMap<>();
+					value(object);
+					containers.push(object);
+					break;
+				case START_ARRAY:
+					final List<Object> array = new ArrayList<>();
+					value(array);
+					containers.push(array);
+					break;
+				case END_OBJECT:
+				case END_ARRAY:
+					containers.pop();
+					break;
+				case FIELD_NAME:
+					field = XSSUtils.stripXSS(parser.currentName());
+					break;
+				case VALUE_STRING:
+					value(XSSUtils.stripXSS(parser.getText()));
+					break;
+				case VALUE_NUMBER_INT:
+				case VALUE_NUMBER_FLOAT:
+					value(parser.getNumberValue());
+					break;
+				case VALUE_TRUE:
+					value(Boolean.TRUE);
+					break;
+				case VALUE_FALSE:
+					value(Boolean.FALSE);
+					break;
+				case VALUE_NULL:
+					value(null);
+					break;
+				default:
+					throw new DecodeException("Failed to decode : unexpected token " + token);
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		private void value(Object value) {
+			final Object container = containers.peek();
+			if (container == null) {
+				root = value;
+			} else if (container instanceof Map) {
+				((Map<String, Object>) container).put(field, value);
+			} else {
+				((List<Object>) container).add(value);
+			}
+		}
+
+		@Override
+		protected T result() {
+			return result(root);
+		}
+
+		protected abstract T result(Object root);
+	}
+
+	/**
+	 * Buffers the stripped tokens to bind them to the value type once the body is parsed.
+	 */
+	private static final class Value<T> extends JsonBodyDecoder<T> {
+
+		private final JavaType type;
+		private final Supplier<T> onEmptyBody;
+		private final ObjectMapper mapper = DatabindCodec.mapper();
+		private final TokenBuffer tokens = new TokenBuffer(mapper, false);
+
+		private Value(JavaType type, Supplier<T> onEmptyBody) {
+			this.type = type;
+			this.onEmptyBody = onEmptyBody;
+		}
+
+		@Override
+		protected void token(JsonToken token, JsonParser parser) throws IOException {
+			switch (token) {
+				case FIELD_NAME:
+					tokens.writeFieldName(XSSUtils.stripXSS(parser.currentName()));
+					break;
+				case VALUE_STRING:
+					tokens.writeString(XSSUtils.stripXSS(parser.getText()));
+					break;
+				default:
+					tokens.copyCurrentEvent(parser);
+			}
+		}
+
+		@Override
+		protected T result() {
+			try (JsonParser p = tokens.asParser()) {
+				return mapper.readValue(p, type);
+			} catch (IOException e) {
+				throw new DecodeException("Failed to decode : " + e.getMessage(), e);
+			}
+		}
+
+		@Override
+		protected T empty() {
+			return onEmptyBody != null ? onEmptyBody.get() : super.empty();
+		}
+	}
+
+}
@@ -17,23 +17,25 @@
 package fr.wseduc.webutils.request;
 
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
 import fr.wseduc.webutils.http.Renders;
-import fr.wseduc.webutils.security.XSSUtils;
+import fr.wseduc.webutils.security.SecureHttpServerRequest;
+import fr.wseduc.webutils.security.WrappedHttpServerRequest;
 import fr.wseduc.webutils.validation.JsonSchemaValidator;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.MultiMap;
 import io.vertx.core.Promise;
-import io.vertx.core.buffer.Buffer;
+import io.netty.handler.codec.http.HttpResponseStatus;
 import io.vertx.core.http.HttpServerRequest;
-import io.vertx.core.json.Json;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
-import io.vertx.core.json.jackson.JacksonCodec;
+import io.vertx.core.json.jackson.DatabindCodec;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
 import static java.util.Collections.emptySet;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
 import static org.apache.commons.lang3.StringUtils.isEmpty;
 
 import java.text.ParseException;
@@ -56,6 +58,7 @@ public class RequestUtils {
 	public static final Pattern REGEXP_AUTHORIZATION = Pattern.compile("^\\s*(OAuth|Bearer)\\s+([^\\s\\,]*)");
 	/** Default date and time format for incoming requests.*/
 	private static final SimpleDateFormat DEFAULT_DATE_FORMAT = new SimpleDateFormat("HHmm-ddMMyyyy");
+	private static volatile long maxBodySize = -1L;
 
 	private static void resumeQuietly(final HttpServerRequest request){
 		try{
@@ -64,36 +67,108 @@ public class RequestUtils {
 		}catch(Exception e){}
 	}
 
-	public static void bodyToJson(final HttpServerRequest request, final Handler<JsonObject> handler) {
-		request.bodyHandler(new Handler<Buffer>() {
-			@Override
-			public void handle(Buffer event) {
+	/**
+	 * Set the maximum size in bytes of the JSON bodies decoded by this class, checked before the body is read
+	 * when the request has a Content-Length and while the body is read otherwise.
+	 * Larger bodies are rejected with a 413 status.
+	 * @param maxBodySize maximum size in bytes, negative for no limit (default)
+	 */
+	public static void setMaxBodySize(long maxBodySize) {
+		RequestUtils.maxBodySize = maxBodySize;
+	}
+
+	/**
+	 * Decode the JSON body while it is received, the strings being stripped of XSS as they are parsed.
+	 */
+	private static <T> Future<T> decodeBody(final HttpServerRequest request, final JsonBodyDecoder<T> decoder) {
+		final Promise<T> promise = Promise.promise();
+		final long max = maxBodySize;
+		if (max >= 0) {
+			final String contentLength = request.getHeader("Content-Length");
+			if (contentLength != null && NumberUtils.toLong(contentLength, -1L) > max) {
+				promise.fail(new BodyTooLargeException(max));
+				return promise.future();
+			}
+		}
+		if (request.isEnded() || request instanceof SecureHttpServerRequest ||
+				request instanceof WrappedHttpServerRequest) {
+			// the wrappers keep the body read through bodyHandler so it can be read again
+			request.bodyHandler(buffer -> {
 				try {
-					JsonObject json = new fr.wseduc.webutils.collections.JsonObject(XSSUtils.stripXSS(event.toString("UTF-8")));
-					handler.handle(json);
+					if (max >= 0 && buffer.length() > max) {
+						throw new BodyTooLargeException(max);
+					}
+					decoder.feed(buffer);
+					promise.complete(decoder.end());
 				} catch (RuntimeException e) {
-					log.warn(e.getMessage(), e);
-					Renders.badRequest(request, e.getMessage());
+					promise.tryFail(e);
+				}
+			});
+			return promise.future();
+		}
+		final long[] size = new long[1];
+		request.handler(chunk -> {
+			if (promise.future().isComplete()) {
+				return;
+			}
+			try {
+				size[0] += chunk.length();
+				if (max >= 0 && size[0] > max) {
+					throw new BodyTooLargeException(max);
 				}
+				decoder.feed(chunk);
+			} catch (RuntimeException e) {
+				promise.tryFail(e);
+			}
+		});
+		request.endHandler(v -> {
+			if (promise.future().isComplete()) {
+				return;
+			}
+			try {
+				promise.complete(decoder.end());
+			} catch (RuntimeException e) {
+				promise.tryFail(e);
 			}
 		});
+		request.exceptionHandler(promise::tryFail);
+		return promise.future();
+	}
+
+	private static void bodyError(final HttpServerRequest request, final Throwable t) {
+		if (t instanceof BodyTooLargeException) {
+			log.warn(t.getMessage());
+			Renders.renderError(request, new JsonObject().put("error", t.getMessage()),
+					HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE.code(), "Payload Too Large");
+		} else {
+			log.warn(t.getMessage(), t);
+			Renders.badRequest(request, t.getMessage());
+		}
+	}
+
+	public static void bodyToJson(final HttpServerRequest request, final Handler<JsonObject> handler) {
+		decodeBody(request, JsonBodyDecoder.jsonObject())
+				.onSuccess(json -> {
+					try {
+						handler.handle(json);
+					} catch (RuntimeException e) {
+						bodyError(request, e);
+					}
+				})
+				.onFailure(t -> bodyError(request, t));
 		resumeQuietly(request);
 	}
 
 	public static void bodyToJsonArray(final HttpServerRequest request, final Handler<JsonArray> handler) {
-		request.bodyHandler(new Handler<Buffer>() {
-			@Override
-			public void handle(Buffer event) {
-				try {
-					String obj = XSSUtils.stripXSS(event.toString("UTF-8"));
-					JsonArray json = new fr.wseduc.webutils.collections.JsonArray(obj);
-					handler.handle(json);
-				} catch (RuntimeException e) {
-					log.warn(e.getMessage(), e);
-					Renders.badRequest(request, e.getMessage());
-				}
-			}
-		});
+		decodeBody(request, JsonBodyDecoder.jsonArray())
+				.onSuccess(json -> {
+					try {
+						handler.handle(json);
+					} catch (RuntimeException e) {
+						bodyError(request, e);
+					}
+				})
+				.onFailure(t -> bodyError(request, t));
 		resumeQuietly(request);
 	}
 
@@ -111,88 +186,52 @@ public class RequestUtils {
 	 * @param <T> Desired class
 	 */
 	public static <T> Future<T> bodyToClass(final HttpServerRequest request, final Class<T> clazz, final Supplier<T> onEmptyBody) {
-		final Promise<T> promise = Promise.promise();
-		request.bodyHandler(new Handler<Buffer>() {
-			@Override
-			public void handle(Buffer event) {
-				try {
-					final T body;
-					if(event == null) {
-						body = null;
-					} else {
-						final String content = event.toString("UTF-8");
-						if(content == null) {
-							body = null;
-						} else if(isEmpty(content) && onEmptyBody != null) {
-							body = onEmptyBody.get();
-						} else {
-							String obj = XSSUtils.stripXSS(content);
-							body = Json.decodeValue(obj, clazz);
-						}
-					}
-					promise.complete(body);
-				} catch (RuntimeException e) {
-					log.warn(e.getMessage(), e);
-					promise.fail(e);
-					Renders.badRequest(request, e.getMessage());
-				}
-			}
-		});
-		return promise.future();
+		final JavaType type = DatabindCodec.mapper().getTypeFactory().constructType(clazz);
+		return decodeBody(request, JsonBodyDecoder.value(type, onEmptyBody))
+				.onFailure(t -> bodyError(request, t));
 	}
 
 	public static <T> Future<T> bodyToClass(final HttpServerRequest request, final TypeReference<T> typeReference) {
-		final Promise<T> promise = Promise.promise();
-		request.bodyHandler(new Handler<Buffer>() {
-			@Override
-			public void handle(Buffer event) {
-				try {
-
-					String obj = XSSUtils.stripXSS(event.toString("UTF-8"));
-					final T body = JacksonCodec.decodeValue(obj, typeReference);
-					promise.complete(body);
-				} catch (RuntimeException e) {
-					log.warn(e.getMessage(), e);
-					promise.fail(e);
-					Renders.badRequest(request, e.getMessage());
-				}
-			}
-		});
-		return promise.future();
+		final JavaType type = DatabindCodec.mapper().getTypeFactory().constructType(typeReference);
+		return decodeBody(request, JsonBodyDecoder.<T>value(type, null))
+				.onFailure(t -> bodyError(request, t));
 	}
 
 	public static void bodyToJson(final HttpServerRequest request, final String schema,
 			final Handler<JsonObject> handler) {
-		request.bodyHandler(new Handler<Buffer>() {
-			@Override
-			public void handle(Buffer event) {
-				try {
-					final JsonObject json = new fr.wseduc.webutils.collections.JsonObject(XSSUtils.stripXSS(event.toString("UTF-8")));
-					validator.validate(schema, json, event1 -> {
-						if (event1.succeeded()) {
-							if ("ok".equals(event1.result().body().getString("status"))) {
-								handler.handle(json);
-							} else {
-								final String message = event1.result().body().getString("message");
-								log.debug(message);
-								log.debug(event1.result().body()
-										.getJsonArray("report", new JsonArray()).encodePrettily());
-								Renders.badRequest(request, event1.result().body().getString("error", message));
-							}
+		decodeBody(request, JsonBodyDecoder.jsonObject()).onSuccess(json -> {
+			try {
+				validator.validate(schema, json, event1 -> {
+					if (event1.succeeded()) {
+						if ("ok".equals(event1.result().body().getString("status"))) {
+							handler.handle(json);
 						} else {
-							log.error("Validate async error.", event1.cause());
-							Renders.badRequest(request, event1.cause().getMessage());
+							final String message = event1.result().body().getString("message");
+							log.debug(message);
+							log.debug(event1.result().body()
+									.getJsonArray("report", new JsonArray()).encodePrettily());
+							Renders.badRequest(request, event1.result().body().getString("error", message));
 						}
-					});
-				} catch (RuntimeException e) {
-					log.warn(e.getMessage(), e);
-					Renders.badRequest(request, e.getMessage());
-				}
+					} else {
+						log.error("Validate async error.", event1.cause());
+						Renders.badRequest(request, event1.cause().getMessage());
+					}
+				});
+			} catch (RuntimeException e) {
+				bodyError(request, e);
 			}
-		});
+		}).onFailure(t -> bodyError(request, t));
 		resumeQuietly(request);
 	}
 
+	private static final class BodyTooLargeException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		private BodyTooLargeException(long maxBodySize) {
+			super("Request body exceeds " + maxBodySize + " bytes");
+		}
+	}
+
 	public static String acceptVersion(HttpServerRequest request) {
 		final String accept = request.headers().get("Accept");
 		return getAcceptVersion(accept);
@@ -17,15 +17,55 @@
 package fr.wseduc.webutils.request.filter;
 
 
+import fr.wseduc.webutils.metrics.IBasicAuthMetricsRecorder;
 import fr.wseduc.webutils.security.SecureHttpServerRequest;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
 import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
 import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
 
 import java.util.Base64;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public abstract class AbstractBasicFilter {
 
+	private static final Logger log = LoggerFactory.getLogger(AbstractBasicFilter.class);
+	private CredentialsCache credentialsCache;
+	private long validationTimeout = 10000L;
+	private IBasicAuthMetricsRecorder metricsRecorder = IBasicAuthMetricsRecorder.noop;
+
+	/**
+	 * Keep the scope of verified credentials, so the same client calling again is not validated by the backend
+	 * until the ttl has elapsed. Concurrent validations of the same credentials share a single backend call.
+	 * @param ttl time in milliseconds the scope of verified credentials is kept
+	 * @param maxSize maximum number of verified credentials
+	 */
+	public AbstractBasicFilter enableCredentialsCache(long ttl, int maxSize) {
+		this.credentialsCache = (ttl > 0 && maxSize > 0) ? new CredentialsCache(ttl, maxSize) : null;
+		return this;
+	}
+
+	/**
+	 * @param ttl time in milliseconds the scope of verified credentials is kept
+	 * @param maxSize maximum number of verified credentials
+	 * @param validationTimeout time in milliseconds after which a validation shared by concurrent requests
+	 *                          is refused if the backend has not answered (default 10000)
+	 */
+	public AbstractBasicFilter enableCredentialsCache(long ttl, int maxSize, long validationTimeout) {
+		this.validationTimeout = validationTimeout;
+		return enableCredentialsCache(ttl, maxSize);
+	}
+
+	public AbstractBasicFilter setMetricsRecorder(IBasicAuthMetricsRecorder metricsRecorder) {
+		this.metricsRecorder = metricsRecorder != null ? metricsRecorder : IBasicAuthMetricsRecorder.noop;
+		return this;
+	}
+
 	public void validate(final SecureHttpServerRequest request, final Handler<Boolean> handler) {
 		String authorization = request.headers().get("Authorization");
 		if (authorization != null && authorization.startsWith("Basic ")) {
@@ -36,7 +76,7 @@ public abstract class AbstractBasicFilter {
 			final String[] c = credentials.split(":");
 			if (c.length == 2) {
 				request.pause();
-				validateClientScope(c[0], c[1], new Handler<String>() {
+				final Handler<String> scopeHandler = new Handler<String>() {
 					@Override
 					public void handle(String scope) {
 						boolean res = scope != null && !scope.trim().isEmpty();
@@ -48,7 +88,12 @@ public abstract class AbstractBasicFilter {
 						request.resume();
 						handler.handle(res);
 					}
-				});
+				};
+				if (credentialsCache != null) {
+					cachedValidateClientScope(c[0], c[1], credentials, scopeHandler);
+				} else {
+					timedValidateClientScope(c[0], c[1], scopeHandler);
+				}
 			} else {
 				handler.handle(false);
 			}
@@ -57,6 +102,69 @@ public abstract class AbstractBasicFilter {
 		}
 	}
 
+	private void cachedValidateClientScope(String clientId, String secret, String credentials, final Handler<String> handler) {
+		final CredentialsCache cache = this.credentialsCache;
+		final String key = cache.key(credentials);
+		final String scope = cache.get(key);
+		if (scope != null) {
+			metricsRecorder.onCacheHit();
+			handler.handle(scope);
+			return;
+		}
+		metricsRecorder.onCacheMiss();
+		final Context context = Vertx.currentContext();
+		final Promise<String> promise = Promise.promise();
+		final Future<String> pending = cache.validation(key, promise.future());
+		if (pending != null) {
+			pending.onComplete(ar -> {
+				if (context == null || Vertx.currentContext() == context) {
+					handler.handle(ar.result());
+				} else {
+					context.runOnContext(v -> handler.handle(ar.result()));
+				}
+			});
+			return;
+		}
+		final AtomicBoolean done = new AtomicBoolean();
+		final Handler<String> complete = s -> {
+			if (done.compareAndSet(false, true)) {
+				cache.validated(key, s, promise.future());
+				promise.complete(s);
+				handler.handle(s);
+			}
+		};
+		final long timer = context != null ? context.owner().setTimer(validationTimeout, id -> {
+			log.error("Timeout validating the credentials of client " + clientId);
+			complete.handle(null);
+		}) : -1L;
+		try {
+			timedValidateClientScope(clientId, secret, s -> {
+				if (timer >= 0) {
+					context.owner().cancelTimer(timer);
+				}
+				complete.handle(s);
+			});
+		} catch (RuntimeException e) {
+			log.error("Error validating the credentials of client " + clientId, e);
+			if (timer >= 0) {
+				context.owner().cancelTimer(timer);
+			}
+			complete.handle(null);
+		}
+	}
+
+	private void timedValidateClientScope(String clientId, String secret, final Handler<String> handler) {
+		if (!metricsRecorder.isEnabled()) {
+			validateClientScope(clientId, secret, handler);
+			return;
+		}
+		final long start = System.nanoTime();
+		validateClientScope(clientId, secret, scope -> {
+			metricsRecorder.onValidation(System.nanoTime() - start, scope != null && !scope.trim().isEmpty());
+			handler.handle(scope);
+		});
+	}
+
 	public boolean hasBasicHeader(HttpServerRequest request) {
 		String authorization = request.headers().get("Authorization");
 		return authorization != null && authorization.startsWith("Basic ");
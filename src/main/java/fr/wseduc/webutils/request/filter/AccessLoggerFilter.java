@@ -20,8 +20,13 @@ import fr.wseduc.webutils.request.IAccessLogger;
 import io.vertx.core.Handler;
 import io.vertx.core.http.HttpServerRequest;
 
-public class AccessLoggerFilter implements Filter {
+/**
+ * Access logging never denies the access, so the filter is evaluated inline by the security handler,
+ * without waiting for the access logger to call back.
+ */
+public class AccessLoggerFilter implements SyncFilter {
 
+	private static final Handler<Void> LOGGED = v -> {};
 	private IAccessLogger accessLogger;
 
 	public AccessLoggerFilter(IAccessLogger accessLogger) {
@@ -33,13 +38,9 @@ public class AccessLoggerFilter implements Filter {
 	}
 
 	@Override
-	public void canAccess(HttpServerRequest request, final Handler<Boolean> handler) {
-		accessLogger.log(request, new Handler<Void>() {
-			@Override
-			public void handle(Void v) {
-				handler.handle(true);
-			}
-		});
+	public boolean canAccess(HttpServerRequest request) {
+		accessLogger.log(request, LOGGED);
+		return true;
 	}
 
 	@Override
@@ -0,0 +1,85 @@
+/*
+ * Copyright © WebServices pour l'Éducation, 2014
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package fr.wseduc.webutils.request.filter;
+
+import fr.wseduc.webutils.collections.ConcurrentTTLMap;
+import io.vertx.core.Future;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Scopes of verified client credentials. Credentials are keyed by their HMAC with a random key of the process,
+ * so the secrets are not kept in memory.
+ */
+final class CredentialsCache {
+
+	private static final SecretKeySpec KEY;
+	static {
+		final byte[] key = new byte[32];
+		new SecureRandom().nextBytes(key);
+		KEY = new SecretKeySpec(key, "HmacSHA256");
+	}
+	private static final ThreadLocal<Mac> macs = ThreadLocal.withInitial(() -> {
+		try {
+			final Mac mac = Mac.getInstance("HmacSHA256");
+			mac.init(KEY);
+			return mac;
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException(e);
+		}
+	});
+
+	private final ConcurrentTTLMap<String, String> entries;
+	private final ConcurrentMap<String, Future<String>> validations = new ConcurrentHashMap<>();
+
+	CredentialsCache(long ttl, int maxSize) {
+		this.entries = new ConcurrentTTLMap<>(ttl, maxSize);
+	}
+
+	String key(String credentials) {
+		return new String(macs.get().doFinal(credentials.getBytes(StandardCharsets.UTF_8)), StandardCharsets.ISO_8859_1);
+	}
+
+	String get(String key) {
+		return entries.get(key);
+	}
+
+	/**
+	 * @return The validation in progress of the same credentials, or null if the given validation is registered.
+	 */
+	Future<String> validation(String key, Future<String> validation) {
+		return validations.putIfAbsent(key, validation);
+	}
+
+	/**
+	 * Cache the scope of a completed validation, or only remove it when it has failed or timed out.
+	 */
+	void validated(String key, String scope, Future<String> validation) {
+		if (scope != null && !scope.trim().isEmpty()) {
+			entries.put(key, scope);
+		}
+		validations.remove(key, validation);
+	}
+
+}
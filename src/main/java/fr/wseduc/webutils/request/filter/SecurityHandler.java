@@ -29,68 +29,88 @@ import io.vertx.core.impl.logging.Logger;
 import io.vertx.core.impl.logging.LoggerFactory;
 import org.apache.commons.lang3.time.StopWatch;
 
-import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 /*
  * Implement a Security Handler with a pre-configurate filters chain 
  */
 public abstract class SecurityHandler implements Handler<HttpServerRequest> {
 	private static final Logger logger = LoggerFactory.getLogger(SecurityHandler.class);
-	static protected List<Filter> chain = new ArrayList<>();
+	/**
+	 * Copy on write list : each request iterates over the snapshot of the chain taken when it starts,
+	 * without copying it, and the changes are visible to the next requests.
+	 */
+	static protected List<Filter> chain = new CopyOnWriteArrayList<>();
 	static {
 		chain.add(new AccessLoggerFilter(AccessLoggerFactory.create()));
 		chain.add(new UserAuthFilter());
 	}
 
-	@SuppressWarnings({ "unchecked", "rawtypes" })
-	private Handler<Boolean> chainToHandler(final HttpServerRequest request) {
-		final Handler [] handlers = new Handler[chain.size()];
-		request.pause();
-		handlers[chain.size() - 1] = new Handler<Boolean>() {
+	/**
+	 * Execution of the filters chain for one request : a single handler is passed from filter to filter,
+	 * and the synchronous filters are evaluated inline.
+	 */
+	private final class FilterChain implements Handler<Boolean> {
+		private final Iterator<Filter> filters;
+		private final HttpServerRequest request;
+		private final long start;
+		private Filter current;
 
-			@Override
-			public void handle(Boolean access) {
-				if (Boolean.TRUE.equals(access)) {
-					request.resume();
-					filter(request);
-				} else {
-					Context ctx = Vertx.currentContext();
-					StopWatch watch = TraceIdContextHandler.getTraceTime(ctx);
-					if(watch != null) {
-						watch.stop();
-						logger.info(" End of secured method REJECTED : " + request.path() + " in [" + watch.getTime(TimeUnit.MILLISECONDS) + " ms]");
-					}
-					chain.get(chain.size() - 1).deny(request);
+		private FilterChain(Iterator<Filter> filters, HttpServerRequest request, long start) {
+			this.filters = filters;
+			this.request = request;
+			this.start = start;
+		}
+
+		private void next() {
+			while (filters.hasNext()) {
+				final Filter f = filters.next();
+				if (!(f instanceof SyncFilter)) {
+					current = f;
+					f.canAccess(request, this);
+					return;
+				}
+				if (!((SyncFilter) f).canAccess(request)) {
+					denied(f);
+					return;
 				}
 			}
-		};
-		for (int i = chain.size() - 2; i >= 0; i--) {
-			final int idx = i;
-
-			handlers[i] = new Handler<Boolean>() {
+			filterChainEnd(request, System.nanoTime() - start, true);
+			request.resume();
+			filter(request);
+		}
 
-				@Override
-				public void handle(Boolean access) {
-					if (Boolean.TRUE.equals(access)) {
-						chain.get(idx + 1).canAccess(request, handlers[idx + 1]);
-					} else {
-						chain.get(idx).deny(request);
-					}
-				}
-			};
+		@Override
+		public void handle(Boolean access) {
+			if (Boolean.TRUE.equals(access)) {
+				next();
+			} else {
+				denied(current);
+			}
 		}
 
-		return handlers[0];
+		private void denied(Filter f) {
+			filterChainEnd(request, System.nanoTime() - start, false);
+			StopWatch watch = TraceIdContextHandler.getTraceTime(Vertx.currentContext());
+			if(watch != null) {
+				watch.stop();
+				logger.info(" End of secured method REJECTED : " + request.path() + " in [" + watch.getTime(TimeUnit.MILLISECONDS) + " ms]");
+			}
+			f.deny(request);
+		}
 	}
 
 	@Override
 	public void handle(HttpServerRequest request) {
 		final Context ctx = Vertx.currentContext();
 		TraceIdContextHandler.setTraceTime(ctx);
-		if (chain != null && !chain.isEmpty()) {
+		final Iterator<Filter> f = chain.iterator();
+		if (f.hasNext()) {
 			SecureHttpServerRequest sr = new XssSecuredHttpServerRequest(request);
-			chain.get(0).canAccess(sr, chainToHandler(sr));
+			sr.pause();
+			new FilterChain(f, sr, System.nanoTime()).next();
 		} else {
 			filter(request);
 		}
@@ -122,5 +142,14 @@ public abstract class SecurityHandler implements Handler<HttpServerRequest> {
 		}
 	}
 
+	/**
+	 * Called when the filters chain has granted or denied the access, before the request is filtered or denied.
+	 * @param request the secured request
+	 * @param durationInNanos time spent in the filters chain
+	 * @param granted true if the access was granted
+	 */
+	protected void filterChainEnd(HttpServerRequest request, long durationInNanos, boolean granted) {
+	}
+
 	public abstract void filter(HttpServerRequest request);
 }
@@ -0,0 +1,35 @@
+/*
+ * Copyright © WebServices pour l'Éducation, 2014
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package fr.wseduc.webutils.request.filter;
+
+import io.vertx.core.Handler;
+import io.vertx.core.http.HttpServerRequest;
+
+/**
+ * Filter deciding without any asynchronous call, evaluated inline by the security handler.
+ */
+public interface SyncFilter extends Filter {
+
+	boolean canAccess(HttpServerRequest request);
+
+	@Override
+	default void canAccess(HttpServerRequest request, Handler<Boolean> handler) {
+		handler.handle(canAccess(request));
+	}
+
+}
@@ -17,6 +17,7 @@
 package fr.wseduc.webutils.security;
 
 
+import fr.wseduc.webutils.collections.ConcurrentTTLMap;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
@@ -26,8 +27,6 @@ import io.vertx.core.json.JsonObject;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
-import sun.security.util.DerOutputStream;
-import sun.security.util.DerValue;
 
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
@@ -39,10 +38,15 @@ import java.security.cert.Certificate;
 import java.security.cert.CertificateException;
 import java.security.cert.CertificateFactory;
 import java.security.spec.*;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -59,6 +63,8 @@ public final class JWT {
 	private Boolean noCertCache = false;
 	private final ConcurrentMap<String, PublicKey> certificates = new ConcurrentHashMap<>();
 	private final List<Key> privateKeys = new ArrayList<>();
+	private volatile ConcurrentTTLMap<String, JsonObject> verified = new ConcurrentTTLMap<>(300000L, 10000);
+	private volatile long verificationCacheTtl = 300000L;
 
 	private class Key {
 		private final String kid;
@@ -109,6 +115,18 @@ public final class JWT {
 		this.noCertCache = noCertCache;
 	}
 
+	/**
+	 * Verified tokens are kept until their expiration, and at most ttl milliseconds,
+	 * so a token presented again is not verified again. The cache is disabled when certificates are not cached.
+	 * @param maxSize maximum number of verified tokens, 0 to disable the cache
+	 * @param ttl maximum time in milliseconds a verified token is kept
+	 */
+	public JWT setVerificationCache(int maxSize, long ttl) {
+		this.verificationCacheTtl = ttl;
+		this.verified = maxSize > 0 ? new ConcurrentTTLMap<>(ttl, maxSize) : null;
+		return this;
+	}
+
 	public JWT(final Vertx vertx, String keysPath) {
 		httpClient = null;
 		certsPath = null;
@@ -328,13 +346,31 @@ public final class JWT {
 	}
 
 	public static byte[] base64DecodeToByte(String s) {
-		// old vertx2 code theoretically useless now
-//		int repeat = 4 - (s.length() % 4);
-//		StringBuilder b = new StringBuilder("");
-//		for (int i = 0; i < repeat; i++) {
-//			b.append("=");
-//		}
-		return Base64.getUrlDecoder().decode(s.replaceAll("\n", "").replaceAll("\\+", "-").replaceAll("\\/", "_")); // + b.toString());
+		return base64DecodeToByte(s, 0, s.length());
+	}
+
+	/**
+	 * Decode a segment of a token, which can be wrapped on several lines or use the standard base64 alphabet.
+	 */
+	private static byte[] base64DecodeToByte(String s, int start, int end) {
+		final byte[] bytes = new byte[end - start];
+		int length = 0;
+		for (int i = start; i < end; i++) {
+			final char c = s.charAt(i);
+			switch (c) {
+				case '\n':
+					break;
+				case '+':
+					bytes[length++] = '-';
+					break;
+				case '/':
+					bytes[length++] = '_';
+					break;
+				default:
+					bytes[length++] = (byte) (c < 128 ? c : '?');
+			}
+		}
+		return Base64.getUrlDecoder().decode(length == bytes.length ? bytes : Arrays.copyOf(bytes, length));
 	}
 
 	public static String base64Encode(String s) throws UnsupportedEncodingException {
@@ -364,36 +400,44 @@ public final class JWT {
 
 
 	public void verifyAndGet(final String token, final Handler<JsonObject> handler) {
-		String[] t = token.split("\\.");
-		if (t.length != 3) {
-			handler.handle(null);
-			return;
+		final ConcurrentTTLMap<String, JsonObject> cache = verified;
+		final String cacheKey = cache != null && !noCertCache ? Verifiers.current().digest(token) : null;
+		if (cacheKey != null) {
+			final JsonObject payload = cache.get(cacheKey);
+			if (payload != null) {
+				handler.handle(payload.copy());
+				return;
+			}
 		}
-		JsonObject header;
-		try {
-			header = new JsonObject(base64Decode(t[0]));
-		} catch (UnsupportedEncodingException e) {
-			log.error(e.getMessage(), e);
+		final ParsedToken t = ParsedToken.parse(token);
+		if (t == null) {
 			handler.handle(null);
 			return;
 		}
-		switch (Algorithm.valueOf(header.getString("alg"))) {
+		final Handler<JsonObject> h = (cacheKey == null) ? handler : payload -> {
+			if (payload != null) {
+				cache(cache, cacheKey, payload);
+			}
+			handler.handle(payload);
+		};
+		switch (t.algorithm) {
 			case RS256:
 			case RS384:
 			case RS512:
 			case ES256:
-				final String kid = header.getString("kid");
+				final String kid = t.header.getString("kid");
 				if (kid != null) {
 					PublicKey publicKey = certificates.get(kid);
 					if (publicKey == null || noCertCache) {
 						findCertificates(new Handler<Void>() {
 							@Override
 							public void handle(Void v) {
-								handler.handle(verifyAndGet(token, certificates.get(kid)));
+								final PublicKey key = certificates.get(kid);
+								h.handle(key != null ? t.verify(key) : null);
 							}
 						});
 					} else {
-						handler.handle(verifyAndGet(token, publicKey));
+						h.handle(t.verify(publicKey));
 					}
 				} else {
 					log.error("missing key id");
@@ -401,7 +445,7 @@ public final class JWT {
 				}
 			break;
 			case HS256:
-				handler.handle(verifyAndGet(token, secret));
+				h.handle(isEmpty(secret) ? null : t.verify(secret));
 				break;
 			default:
 				log.error("Unsupported signature algorithm.");
@@ -409,77 +453,65 @@ public final class JWT {
 
 	}
 
+	private void cache(ConcurrentTTLMap<String, JsonObject> cache, String cacheKey, JsonObject payload) {
+		long ttl = verificationCacheTtl;
+		final Object exp = payload.getValue("exp");
+		if (exp instanceof Number) {
+			ttl = Math.min(ttl, ((Number) exp).longValue() * 1000L - System.currentTimeMillis());
+		}
+		if (ttl <= 0) {
+			return;
+		}
+		cache.put(cacheKey, payload.copy(), ttl);
+	}
+
 	public static JsonObject verifyAndGet(String token, PublicKey publicKey) {
 		log.debug(token);
-		String[] t = token.split("\\.");
-		if (t.length != 3 || publicKey == null) {
+		final ParsedToken t = ParsedToken.parse(token);
+		if (t == null || publicKey == null) {
 			return null;
 		}
-		try {
-			JsonObject header = new JsonObject(base64Decode(t[0]));
-			JsonObject payload = new JsonObject(base64Decode(t[1]));
-			byte[] rawSignature = base64DecodeToByte(t[2]);
-			byte[] derSignature = Algorithm.ES256.equals(Algorithm.valueOf(header.getString("alg"))) ? convertJWTSignatureToDER(rawSignature) : rawSignature;
-
-			Signature sign = Signature.getInstance(Algorithm.valueOf(header.getString("alg")).getAlgo());
-			sign.initVerify(publicKey);
-			sign.update((t[0] + "." + t[1]).getBytes("UTF-8"));
-			if (sign.verify(derSignature)) {
-				return payload;
-			}
-		} catch (Exception e) {
-			log.error(e.getMessage(), e);
-		}
-		return null;
+		return t.verify(publicKey);
 	}
 
-	private static byte[] convertJWTSignatureToDER(byte[] jwsSignature) throws IOException {
+	/**
+	 * Encode the r and s values of a JWS ECDSA signature as a DER sequence of two positive integers.
+	 */
+	private static byte[] convertJWTSignatureToDER(byte[] jwsSignature) {
 		if (jwsSignature.length != 64) {
 			throw new IllegalArgumentException("Invalid ES256 signature length");
 		}
-
-		byte[] r = Arrays.copyOfRange(jwsSignature, 0, 32);
-		byte[] s = Arrays.copyOfRange(jwsSignature, 32, 64);
-
-		DerOutputStream derOut = new DerOutputStream();
-		derOut.write(DerValue.createTag(DerValue.tag_Integer, false, (byte) 0), trimLeadingZeros(r));
-		derOut.write(DerValue.createTag(DerValue.tag_Integer, false, (byte) 0), trimLeadingZeros(s));
-
-		DerOutputStream seq = new DerOutputStream();
-		seq.write(DerValue.tag_Sequence, derOut.toByteArray());
-		return seq.toByteArray();
+		final int rStart = firstSignificantByte(jwsSignature, 0, 32);
+		final int sStart = firstSignificantByte(jwsSignature, 32, 64);
+		final int rLength = 32 - rStart + ((jwsSignature[rStart] & 0x80) != 0 ? 1 : 0);
+		final int sLength = 64 - sStart + ((jwsSignature[sStart] & 0x80) != 0 ? 1 : 0);
+		final byte[] der = new byte[6 + rLength + sLength];
+		der[0] = 0x30;
+		der[1] = (byte) (4 + rLength + sLength);
+		der[2] = 0x02;
+		der[3] = (byte) rLength;
+		System.arraycopy(jwsSignature, rStart, der, 4 + rLength - (32 - rStart), 32 - rStart);
+		der[4 + rLength] = 0x02;
+		der[5 + rLength] = (byte) sLength;
+		System.arraycopy(jwsSignature, sStart, der, 6 + rLength + sLength - (64 - sStart), 64 - sStart);
+		return der;
 	}
 
-	private static byte[] trimLeadingZeros(byte[] val) {
-		int i = 0;
-		while (i < val.length - 1 && val[i] == 0) {
+	private static int firstSignificantByte(byte[] val, int start, int end) {
+		int i = start;
+		while (i < end - 1 && val[i] == 0) {
 			i++;
 		}
-		return Arrays.copyOfRange(val, i, val.length);
+		return i;
 	}
 
 	public static JsonObject verifyAndGet(String token, String secret) {
 		log.debug(token);
-		final String[] t = token.split("\\.");
-		if (t.length != 3 || isEmpty(secret)) {
+		if (isEmpty(secret)) {
 			return null;
 		}
-		try {
-			final JsonObject header = new JsonObject(base64Decode(t[0]));
-			final JsonObject payload = new JsonObject(base64Decode(t[1]));
-			final String algo = Algorithm.valueOf(header.getString("alg")).getAlgo();
-			final SecretKeySpec signingKey = new SecretKeySpec(secret.getBytes(), algo);
-			final Mac mac = Mac.getInstance(algo);
-			mac.init(signingKey);
-			byte[] signed = mac.doFinal((t[0] + "." + t[1]).getBytes("UTF-8"));
-			byte[] signature = base64DecodeToByte(t[2]);
-			if (Arrays.equals(signature, signed)) {
-				return payload;
-			}
-		} catch (Exception e) {
-			log.error(e.getMessage(), e);
-		}
-		return null;
+		final ParsedToken t = ParsedToken.parse(token);
+		return t != null ? t.verify(secret) : null;
 	}
 
 	public String encodeAndSign(JsonObject payload) throws Exception {
@@ -514,4 +546,152 @@ public final class JWT {
 		return sb.toString();
 	}
 
+	/**
+	 * Token split and its header decoded once, the payload being decoded only if the signature is valid.
+	 */
+	private static final class ParsedToken {
+		private final String token;
+		private final int signatureStart;
+		private final JsonObject header;
+		private final Algorithm algorithm;
+
+		private ParsedToken(String token, int signatureStart, JsonObject header, Algorithm algorithm) {
+			this.token = token;
+			this.signatureStart = signatureStart;
+			this.header = header;
+			this.algorithm = algorithm;
+		}
+
+		private static ParsedToken parse(String token) {
+			final int payloadStart = token.indexOf('.') + 1;
+			final int signatureStart = payloadStart > 0 ? token.indexOf('.', payloadStart) + 1 : 0;
+			if (signatureStart <= 0 || signatureStart == token.length() || token.indexOf('.', signatureStart) >= 0) {
+				return null;
+			}
+			try {
+				final JsonObject header = new JsonObject(new String(
+						base64DecodeToByte(token, 0, payloadStart - 1), StandardCharsets.UTF_8));
+				return new ParsedToken(token, signatureStart, header, Algorithm.valueOf(header.getString("alg")));
+			} catch (RuntimeException e) {
+				log.error(e.getMessage(), e);
+				return null;
+			}
+		}
+
+		private byte[] signingInput() {
+			return token.substring(0, signatureStart - 1).getBytes(StandardCharsets.UTF_8);
+		}
+
+		private byte[] signature() {
+			return base64DecodeToByte(token, signatureStart, token.length());
+		}
+
+		private JsonObject payload() {
+			return new JsonObject(new String(base64DecodeToByte(token, token.indexOf('.') + 1, signatureStart - 1),
+					StandardCharsets.UTF_8));
+		}
+
+		private JsonObject verify(PublicKey publicKey) {
+			if (algorithm == Algorithm.HS256) {
+				log.error("Unsupported signature algorithm with a public key.");
+				return null;
+			}
+			Signature sign = null;
+			try {
+				final byte[] rawSignature = signature();
+				final byte[] derSignature = (algorithm == Algorithm.ES256) ? convertJWTSignatureToDER(rawSignature) : rawSignature;
+				sign = Verifiers.current().signature(algorithm, publicKey);
+				sign.update(signingInput());
+				if (sign.verify(derSignature)) {
+					return payload();
+				}
+			} catch (Exception e) {
+				if (sign != null) {
+					Verifiers.current().evict(algorithm, publicKey);
+				}
+				log.error(e.getMessage(), e);
+			}
+			return null;
+		}
+
+		private JsonObject verify(String secret) {
+			if (algorithm != Algorithm.HS256) {
+				log.error("Unsupported signature algorithm with a secret.");
+				return null;
+			}
+			try {
+				final byte[] signed = Verifiers.current().mac(algorithm, secret).doFinal(signingInput());
+				if (MessageDigest.isEqual(signature(), signed)) {
+					return payload();
+				}
+			} catch (Exception e) {
+				log.error(e.getMessage(), e);
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Signature and Mac instances of the current thread, initialized once by algorithm and key.
+	 * A Signature is reset to its verification state after each verification, and a Mac after each computation.
+	 */
+	private static final class Verifiers {
+		private static final int MAX_KEYS = 32;
+		private static final ThreadLocal<Verifiers> verifiers = ThreadLocal.withInitial(Verifiers::new);
+
+		private final Map<Algorithm, Map<PublicKey, Signature>> signatures = new EnumMap<>(Algorithm.class);
+		private final Map<Algorithm, Map<String, Mac>> macs = new EnumMap<>(Algorithm.class);
+		private MessageDigest sha256;
+
+		private static Verifiers current() {
+			return verifiers.get();
+		}
+
+		private Signature signature(Algorithm algorithm, PublicKey publicKey) throws GeneralSecurityException {
+			final Map<PublicKey, Signature> keys = signatures.computeIfAbsent(algorithm, a -> new IdentityHashMap<>());
+			Signature sign = keys.get(publicKey);
+			if (sign == null) {
+				sign = Signature.getInstance(algorithm.getAlgo());
+				sign.initVerify(publicKey);
+				if (keys.size() >= MAX_KEYS) {
+					keys.clear();
+				}
+				keys.put(publicKey, sign);
+			}
+			return sign;
+		}
+
+		private void evict(Algorithm algorithm, PublicKey publicKey) {
+			final Map<PublicKey, Signature> keys = signatures.get(algorithm);
+			if (keys != null) {
+				keys.remove(publicKey);
+			}
+		}
+
+		private Mac mac(Algorithm algorithm, String secret) throws GeneralSecurityException {
+			final Map<String, Mac> keys = macs.computeIfAbsent(algorithm, a -> new HashMap<>());
+			Mac mac = keys.get(secret);
+			if (mac == null) {
+				mac = Mac.getInstance(algorithm.getAlgo());
+				mac.init(new SecretKeySpec(secret.getBytes(), algorithm.getAlgo()));
+				if (keys.size() >= MAX_KEYS) {
+					keys.clear();
+				}
+				keys.put(secret, mac);
+			}
+			return mac;
+		}
+
+		private String digest(String token) {
+			if (sha256 == null) {
+				try {
+					sha256 = MessageDigest.getInstance("SHA-256");
+				} catch (NoSuchAlgorithmException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+			return new String(sha256.digest(token.getBytes(StandardCharsets.UTF_8)), StandardCharsets.ISO_8859_1);
+		}
+	}
+
 }
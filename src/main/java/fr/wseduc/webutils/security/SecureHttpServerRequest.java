@@ -26,6 +26,7 @@ import javax.net.ssl.SSLSession;
 import javax.security.cert.X509Certificate;
 
 import fr.wseduc.webutils.http.response.BufferHttpResponse;
+import fr.wseduc.webutils.request.CookieJar;
 import fr.wseduc.webutils.request.HttpServerRequestWithBuffering;
 import fr.wseduc.webutils.request.ProxyHttpRequest;
 import io.netty.handler.codec.DecoderResult;
@@ -46,12 +47,21 @@ public class SecureHttpServerRequest implements HttpServerRequest, HttpServerReq
 	private final Map<String, String> attributes;
 	private Buffer body;
 	private boolean end;
+	private CookieJar cookieJar;
 
 	public SecureHttpServerRequest(HttpServerRequest request) {
 		this.request = request;
 		this.attributes = new HashMap<>();
 	}
 
+	public CookieJar getCookieJar() {
+		return cookieJar;
+	}
+
+	public void setCookieJar(CookieJar cookieJar) {
+		this.cookieJar = cookieJar;
+	}
+
 	public Optional<Buffer> getBodyResponseBuffered(){
 		if(request.response() instanceof  BufferHttpResponse){
 			final BufferHttpResponse buffered = (BufferHttpResponse)request.response();
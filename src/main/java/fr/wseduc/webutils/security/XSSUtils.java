@@ -19,12 +19,39 @@ package fr.wseduc.webutils.security;
 import io.vertx.core.MultiMap;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
 
 public final class XSSUtils {
 
+	private static volatile Set<String> unfilteredHeaders = Collections.emptySet();
+
 	private XSSUtils() {}
 
+	/**
+	 * Set the headers whose values are never stripped by the XSS requests, for headers that are not rendered
+	 * to HTML like Authorization or Cookie.
+	 * @param headers names of the headers, case insensitive
+	 */
+	public static void setUnfilteredHeaders(Collection<String> headers) {
+		final Set<String> names = new HashSet<>();
+		if (headers != null) {
+			for (String header : headers) {
+				names.add(header.toLowerCase(Locale.ROOT));
+			}
+		}
+		unfilteredHeaders = Collections.unmodifiableSet(names);
+	}
+
+	public static boolean isUnfilteredHeader(String name) {
+		final Set<String> names = unfilteredHeaders;
+		return !names.isEmpty() && name != null && names.contains(name.toLowerCase(Locale.ROOT));
+	}
+
 	public static MultiMap safeMultiMap(MultiMap m) {
 		for (String name : m.names()) {
 			List<String> values = m.getAll(name);
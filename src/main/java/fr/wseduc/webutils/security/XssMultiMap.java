@@ -0,0 +1,248 @@
+/*
+ * Copyright © WebServices pour l'Éducation, 2014
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package fr.wseduc.webutils.security;
+
+import io.vertx.core.MultiMap;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * View of a request multimap whose values are stripped of XSS when they are read.
+ * The values of a name are stripped on the first read and kept for the next reads,
+ * writes go to the request multimap and forget the stripped values, as names may be case insensitive.
+ * Not thread safe, like the request it belongs to.
+ */
+final class XssMultiMap implements MultiMap {
+
+	private final MultiMap delegate;
+	private final boolean headers;
+	private final Map<String, List<String>> safeValues = new HashMap<>();
+
+	private XssMultiMap(MultiMap delegate, boolean headers) {
+		this.delegate = delegate;
+		this.headers = headers;
+	}
+
+	/**
+	 * @return the current view if it is still backed by the request multimap m, a new view otherwise
+	 */
+	static XssMultiMap of(XssMultiMap current, MultiMap m, boolean headers) {
+		if (m == null) {
+			return null;
+		}
+		if (current != null && current.delegate == m) {
+			return current;
+		}
+		return new XssMultiMap(m, headers);
+	}
+
+	@Override
+	public String get(CharSequence name) {
+		return get(name.toString());
+	}
+
+	@Override
+	public String get(String name) {
+		final List<String> values = getAll(name);
+		return values.isEmpty() ? null : values.get(0);
+	}
+
+	@Override
+	public List<String> getAll(CharSequence name) {
+		return getAll(name.toString());
+	}
+
+	@Override
+	public List<String> getAll(String name) {
+		List<String> values = safeValues.get(name);
+		if (values == null) {
+			final List<String> raw = delegate.getAll(name);
+			if (headers && XSSUtils.isUnfilteredHeader(name)) {
+				values = Collections.unmodifiableList(raw);
+			} else {
+				final List<String> stripped = new ArrayList<>(raw.size());
+				for (String value : raw) {
+					stripped.add(XSSUtils.stripXSS(value));
+				}
+				values = Collections.unmodifiableList(stripped);
+			}
+			safeValues.put(name, values);
+		}
+		return values;
+	}
+
+	@Override
+	public Iterator<Map.Entry<String, String>> iterator() {
+		return entries().iterator();
+	}
+
+	@Override
+	public void forEach(BiConsumer<String, String> action) {
+		for (String name : delegate.names()) {
+			for (String value : getAll(name)) {
+				action.accept(name, value);
+			}
+		}
+	}
+
+	@Override
+	public List<Map.Entry<String, String>> entries() {
+		final List<Map.Entry<String, String>> entries = new ArrayList<>(delegate.size());
+		forEach((name, value) -> entries.add(new AbstractMap.SimpleImmutableEntry<>(name, value)));
+		return entries;
+	}
+
+	@Override
+	public boolean contains(String name) {
+		return delegate.contains(name);
+	}
+
+	@Override
+	public boolean contains(CharSequence name) {
+		return delegate.contains(name);
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return delegate.isEmpty();
+	}
+
+	@Override
+	public Set<String> names() {
+		return delegate.names();
+	}
+
+	@Override
+	public int size() {
+		return delegate.size();
+	}
+
+	@Override
+	public MultiMap add(String name, String value) {
+		safeValues.clear();
+		delegate.add(name, value);
+		return this;
+	}
+
+	@Override
+	public MultiMap add(CharSequence name, CharSequence value) {
+		safeValues.clear();
+		delegate.add(name, value);
+		return this;
+	}
+
+	@Override
+	public MultiMap add(String name, Iterable<String> values) {
+		safeValues.clear();
+		delegate.add(name, values);
+		return this;
+	}
+
+	@Override
+	public MultiMap add(CharSequence name, Iterable<CharSequence> values) {
+		safeValues.clear();
+		delegate.add(name, values);
+		return this;
+	}
+
+	@Override
+	public MultiMap addAll(MultiMap map) {
+		safeValues.clear();
+		delegate.addAll(map);
+		return this;
+	}
+
+	@Override
+	public MultiMap addAll(Map<String, String> headers) {
+		safeValues.clear();
+		delegate.addAll(headers);
+		return this;
+	}
+
+	@Override
+	public MultiMap set(String name, String value) {
+		safeValues.clear();
+		delegate.set(name, value);
+		return this;
+	}
+
+	@Override
+	public MultiMap set(CharSequence name, CharSequence value) {
+		safeValues.clear();
+		delegate.set(name, value);
+		return this;
+	}
+
+	@Override
+	public MultiMap set(String name, Iterable<String> values) {
+		safeValues.clear();
+		delegate.set(name, values);
+		return this;
+	}
+
+	@Override
+	public MultiMap set(CharSequence name, Iterable<CharSequence> values) {
+		safeValues.clear();
+		delegate.set(name, values);
+		return this;
+	}
+
+	@Override
+	public MultiMap setAll(MultiMap map) {
+		safeValues.clear();
+		delegate.setAll(map);
+		return this;
+	}
+
+	@Override
+	public MultiMap setAll(Map<String, String> headers) {
+		safeValues.clear();
+		delegate.setAll(headers);
+		return this;
+	}
+
+	@Override
+	public MultiMap remove(String name) {
+		safeValues.clear();
+		delegate.remove(name);
+		return this;
+	}
+
+	@Override
+	public MultiMap remove(CharSequence name) {
+		safeValues.clear();
+		delegate.remove(name);
+		return this;
+	}
+
+	@Override
+	public MultiMap clear() {
+		safeValues.clear();
+		delegate.clear();
+		return this;
+	}
+
+}
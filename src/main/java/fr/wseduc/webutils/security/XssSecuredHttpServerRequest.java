@@ -19,28 +19,56 @@ package fr.wseduc.webutils.security;
 import io.vertx.core.MultiMap;
 import io.vertx.core.http.HttpServerRequest;
 
-import static fr.wseduc.webutils.security.XSSUtils.safeMultiMap;
-
-
 public class XssSecuredHttpServerRequest extends SecureHttpServerRequest {
 
+	private XssMultiMap formAttributes;
+	private XssMultiMap params;
+	private XssMultiMap headers;
+
 	public XssSecuredHttpServerRequest(HttpServerRequest request) {
 		super(request);
 	}
 
 	@Override
 	public MultiMap formAttributes() {
-		return safeMultiMap(super.formAttributes());
+		formAttributes = XssMultiMap.of(formAttributes, super.formAttributes(), false);
+		return formAttributes;
+	}
+
+	@Override
+	public String getFormAttribute(String attributeName) {
+		final MultiMap m = formAttributes();
+		return m != null ? m.get(attributeName) : null;
 	}
 
 	@Override
 	public MultiMap params() {
-		return safeMultiMap(super.params());
+		params = XssMultiMap.of(params, super.params(), false);
+		return params;
+	}
+
+	@Override
+	public String getParam(String paramName) {
+		final MultiMap m = params();
+		return m != null ? m.get(paramName) : null;
 	}
 
 	@Override
 	public MultiMap headers() {
-		return safeMultiMap(super.headers());
+		headers = XssMultiMap.of(headers, super.headers(), true);
+		return headers;
+	}
+
+	@Override
+	public String getHeader(String headerName) {
+		final MultiMap m = headers();
+		return m != null ? m.get(headerName) : null;
+	}
+
+	@Override
+	public String getHeader(CharSequence headerName) {
+		final MultiMap m = headers();
+		return m != null ? m.get(headerName) : null;
 	}
 
 }
@@ -17,22 +17,60 @@
 package fr.wseduc.webutils.security.oauth;
 
 import fr.wseduc.webutils.DefaultAsyncResult;
+import fr.wseduc.webutils.collections.ConcurrentTTLMap;
 import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
 import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
 import io.vertx.core.eventbus.EventBus;
 import io.vertx.core.eventbus.Message;
+import io.vertx.core.eventbus.ReplyException;
 import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.json.JsonObject;
 
 import fr.wseduc.webutils.security.SecureHttpServerRequest;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 public class DefaultOAuthResourceProvider implements OAuthResourceProvider {
 
 	private final EventBus eb;
 	private static final String OAUTH_ADDRESS = "wse.oauth";
+	public static final String OAUTH_INVALIDATION_ADDRESS = "wse.oauth.invalidate";
+	private final boolean cacheEnabled;
+	private final long ttl;
+	private final long negativeTtl;
+	private final ConcurrentTTLMap<String, CachedInfos> cache;
+	private final ConcurrentMap<String, Future<JsonObject>> loading = new ConcurrentHashMap<>();
+	private volatile long generation;
 
 	public DefaultOAuthResourceProvider(EventBus eb) {
+		this(eb, null);
+	}
+
+	/**
+	 * When the cache is enabled, the introspection result of an access token is reused until its ttl,
+	 * an invalid token is rejected until its negative ttl, and concurrent requests with the same token share a single lookup.
+	 * Revoked tokens are invalidated by publishing on {@link #OAUTH_INVALIDATION_ADDRESS} a "token", "remote_user"
+	 * or "client_id", or an empty message to invalidate everything.
+	 * @param cacheConfig "enabled" (default false), "ttl" in ms (default 60000), "negative-ttl" in ms (default 5000),
+	 *                    "max-size" (default 10000)
+	 */
+	public DefaultOAuthResourceProvider(EventBus eb, JsonObject cacheConfig) {
 		this.eb = eb;
+		this.cacheEnabled = cacheConfig != null && cacheConfig.getBoolean("enabled", false);
+		this.ttl = cacheConfig != null ? cacheConfig.getLong("ttl", 60000L) : 60000L;
+		this.negativeTtl = cacheConfig != null ? cacheConfig.getLong("negative-ttl", 5000L) : 5000L;
+		this.cache = new ConcurrentTTLMap<>(ttl, cacheConfig != null ? cacheConfig.getInteger("max-size", 10000) : 10000);
+		if (cacheEnabled) {
+			eb.<JsonObject>consumer(OAUTH_INVALIDATION_ADDRESS, message -> invalidate(message.body()));
+		}
 	}
 
 	protected void getOAuthInfos(final SecureHttpServerRequest request, final JsonObject payload, final Handler<AsyncResult<JsonObject>> handler){
@@ -56,6 +94,23 @@ public class DefaultOAuthResourceProvider implements OAuthResourceProvider {
 
 	@Override
 	public void validToken(final SecureHttpServerRequest request, final Handler<Boolean> handler) {
+		request.pause();
+		final Future<JsonObject> infos = cacheEnabled ? cachedOAuthInfos(request) : oAuthInfos(request);
+		infos.onComplete(res -> {
+			request.resume();
+			if(res.succeeded()){
+				request.setAttribute("client_id", res.result().getString("client_id"));
+				request.setAttribute("remote_user", res.result().getString("remote_user"));
+				request.setAttribute("scope", res.result().getString("scope"));
+				request.setAttribute("authorization_type", "Bearer");
+				handler.handle(customValidation(request));
+			}else{
+				handler.handle(false);
+			}
+		});
+	}
+
+	private Future<JsonObject> oAuthInfos(final SecureHttpServerRequest request) {
 		JsonObject headers = new JsonObject();
 		for (String name : request.headers().names()) {
 			headers.put(name, request.headers().get(name));
@@ -67,19 +122,102 @@ public class DefaultOAuthResourceProvider implements OAuthResourceProvider {
 		JsonObject json = new JsonObject()
 		.put("headers", headers)
 		.put("params", params);
-		request.pause();
-		getOAuthInfos(request, json, res->{
-			if(res.succeeded()){
-				request.setAttribute("client_id", res.result().getString("client_id"));
-				request.setAttribute("remote_user", res.result().getString("remote_user"));
-				request.setAttribute("scope", res.result().getString("scope"));
-				request.setAttribute("authorization_type", "Bearer");
-				request.resume();
-				handler.handle(customValidation(request));
-			}else{
-				handler.handle(false);
+		final Promise<JsonObject> promise = Promise.promise();
+		getOAuthInfos(request, json, promise);
+		return promise.future();
+	}
+
+	private Future<JsonObject> cachedOAuthInfos(final SecureHttpServerRequest request) {
+		final String token = accessToken(request);
+		if (token == null) {
+			return oAuthInfos(request);
+		}
+		final String key = digest(token);
+		final CachedInfos cached = cache.get(key);
+		if (cached != null) {
+			return cached.infos != null ? Future.succeededFuture(cached.infos) :
+					Future.failedFuture("Failed to authenticate");
+		}
+		final Context context = Vertx.currentContext();
+		final Promise<JsonObject> promise = Promise.promise();
+		final Future<JsonObject> pending = loading.putIfAbsent(key, promise.future());
+		if (pending != null) {
+			return dispatch(context, pending);
+		}
+		final long gen = generation;
+		oAuthInfos(request).onComplete(ar -> {
+			if (gen == generation) {
+				if (ar.succeeded()) {
+					final JsonObject infos = new JsonObject()
+							.put("client_id", ar.result().getString("client_id"))
+							.put("remote_user", ar.result().getString("remote_user"))
+							.put("scope", ar.result().getString("scope"));
+					cache.put(key, new CachedInfos(infos), ttl);
+				} else if (!(ar.cause() instanceof ReplyException)) {
+					cache.put(key, new CachedInfos(null), negativeTtl);
+				}
 			}
+			loading.remove(key);
+			promise.handle(ar);
 		});
+		return promise.future();
+	}
+
+	private Future<JsonObject> dispatch(Context context, Future<JsonObject> pending) {
+		if (context == null) {
+			return pending;
+		}
+		final Promise<JsonObject> promise = Promise.promise();
+		pending.onComplete(ar -> {
+			if (Vertx.currentContext() == context) {
+				promise.handle(ar);
+			} else {
+				context.runOnContext(v -> promise.handle(ar));
+			}
+		});
+		return promise.future();
+	}
+
+	private void invalidate(JsonObject message) {
+		generation++;
+		if (message == null || message.isEmpty()) {
+			cache.clear();
+		} else if (message.getString("token") != null) {
+			cache.remove(digest(message.getString("token")));
+		} else {
+			final String remoteUser = message.getString("remote_user");
+			final String clientId = message.getString("client_id");
+			cache.removeIf(c -> c.infos != null &&
+					((remoteUser != null && remoteUser.equals(c.infos.getString("remote_user"))) ||
+					(clientId != null && clientId.equals(c.infos.getString("client_id")))));
+		}
+	}
+
+	private static String accessToken(HttpServerRequest request) {
+		final String authorization = request.headers().get("Authorization");
+		if (authorization != null) {
+			int start = -1;
+			if (authorization.startsWith("Bearer ")) {
+				start = 7;
+			} else if (authorization.contains(", Bearer ")) {
+				start = authorization.indexOf(", Bearer ") + 9;
+			}
+			if (start >= 0) {
+				final int end = authorization.indexOf(',', start);
+				final String token = (end < 0 ? authorization.substring(start) : authorization.substring(start, end)).trim();
+				return token.isEmpty() ? null : token;
+			}
+		}
+		return request.params().get("access_token");
+	}
+
+	private static String digest(String token) {
+		try {
+			final byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+			return new String(hash, StandardCharsets.ISO_8859_1);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
 	}
 
 	protected boolean customValidation(SecureHttpServerRequest request) {
@@ -92,4 +230,12 @@ public class DefaultOAuthResourceProvider implements OAuthResourceProvider {
 		return authorization != null && (authorization.startsWith("Bearer ") || authorization.contains(", Bearer "));
 	}
 
+	private static final class CachedInfos {
+		private final JsonObject infos;
+
+		private CachedInfos(JsonObject infos) {
+			this.infos = infos;
+		}
+	}
+
 }
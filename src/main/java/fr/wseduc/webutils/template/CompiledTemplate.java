@@ -0,0 +1,106 @@
+/*
+ * Copyright © "Open Digital Education", 2020
+ *
+ * This program is published by "Open Digital Education".
+ * You must indicate the name of the software and the company in any production /contribution
+ * using the software and indicate on the home page of the software industry in question,
+ * "powered by Open Digital Education" with a reference to the website: https://opendigitaleducation.com/.
+ *
+ * This program is free software, licensed under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, version 3 of the License.
+ *
+ * You can redistribute this application and/or modify it since you respect the terms of the GNU Affero General Public License.
+ * If you modify the source code and then use this modified source code in your creation, you must make available the source code of your modifications.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with the software.
+ * If not, please see : <http://www.gnu.org/licenses/>. Full compliance requires reading the terms of this license and following its directives.
+ */
+
+package fr.wseduc.webutils.template;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.samskivert.mustache.Mustache;
+import com.samskivert.mustache.Template;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * A template compiled once with its lambdas, to render many parameter sets, like the bodies of bulk notifications.
+ * The lambdas are fixed at compilation, so renderings can run concurrently without any shared mutable state.
+ */
+public final class CompiledTemplate
+{
+  private static final int CHUNK_SIZE = 64;
+
+  private final Template template;
+  private final Map<String, Mustache.Lambda> requestLambdas;
+  private final Map<String, Mustache.Lambda> lambdas;
+
+  CompiledTemplate(Template template, Map<String, Mustache.Lambda> requestLambdas, Map<String, Mustache.Lambda> lambdas)
+  {
+    this.template = template;
+    this.requestLambdas = requestLambdas;
+    this.lambdas = Collections.unmodifiableMap(lambdas);
+  }
+
+  public String render(JsonObject params)
+  {
+    final StringWriter writer = new StringWriter();
+    template.execute(new TemplateContext(params, requestLambdas, lambdas), writer);
+    return writer.toString();
+  }
+
+  /**
+   * Render the parameter sets in parallel on the worker pool, by chunks.
+   * @return the future bodies in the order of the parameter sets, each one completed as soon as its chunk
+   * is rendered, so the bodies can be sent before the whole batch is rendered
+   */
+  public List<Future<String>> renderAll(Vertx vertx, List<JsonObject> paramsList)
+  {
+    final List<Promise<String>> promises = new ArrayList<>(paramsList.size());
+    final List<Future<String>> futures = new ArrayList<>(paramsList.size());
+    for (int i = 0; i < paramsList.size(); i++)
+    {
+      final Promise<String> promise = Promise.promise();
+      promises.add(promise);
+      futures.add(promise.future());
+    }
+    for (int start = 0; start < paramsList.size(); start += CHUNK_SIZE)
+    {
+      final List<JsonObject> chunk = paramsList.subList(start, Math.min(start + CHUNK_SIZE, paramsList.size()));
+      final List<Promise<String>> chunkPromises = promises.subList(start, start + chunk.size());
+      vertx.executeBlocking(() -> {
+        final List<Object> bodies = new ArrayList<>(chunk.size());
+        for (JsonObject params : chunk)
+        {
+          try
+          {
+            bodies.add(render(params));
+          }
+          catch (RuntimeException e)
+          {
+            bodies.add(e);
+          }
+        }
+        return bodies;
+      }, false).onComplete(ar -> {
+        for (int i = 0; i < chunkPromises.size(); i++)
+        {
+          final Object body = ar.succeeded() ? ar.result().get(i) : ar.cause();
+          if (body instanceof Throwable)
+            chunkPromises.get(i).fail((Throwable) body);
+          else
+            chunkPromises.get(i).complete((String) body);
+        }
+      });
+    }
+    return futures;
+  }
+}
@@ -20,22 +20,16 @@
 package fr.wseduc.webutils.template;
 
 import java.io.Writer;
-import java.io.StringWriter;
 import java.io.Reader;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 
 import com.samskivert.mustache.Mustache;
 import com.samskivert.mustache.Template;
-import fr.wseduc.webutils.collections.JsonUtils;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.JsonObject;
-import io.vertx.core.logging.Logger;
-import io.vertx.core.logging.LoggerFactory;
 
 import static fr.wseduc.webutils.data.FileResolver.absolutePath;
 
@@ -44,7 +38,6 @@ public class FileTemplateProcessor extends TemplateProcessor
   private Vertx vertx;
   private String templateFolder;
 
-  private final ConcurrentMap<String, Template> cache = new ConcurrentHashMap<String, Template>();
   private boolean useCache = false;
 
   public FileTemplateProcessor(Vertx vertx, String templateFolder)
@@ -67,35 +60,45 @@ public class FileTemplateProcessor extends TemplateProcessor
     this.useCache = useCache;
   }
 
+  /**
+   * Remove the templates of the folder of this processor from the cache shared by all the processors.
+   */
   public void clearCache()
   {
-    this.cache.clear();
+    TemplateCache.getInstance().clear(absolutePath(this.templateFolder));
   }
 
   // ============================================= TEMPLATE PROCESSING ============================================
 
   public void processTemplate(String resourceName, JsonObject params, Reader r, final Handler<Writer> handler)
+  {
+    this.processTemplate(resourceName, params, r, null, handler);
+  }
+
+  public void processTemplate(String resourceName, JsonObject params, Reader r, final Writer out, final Handler<Writer> handler)
+  {
+    this.processTemplate(resourceName, params, r, null, out, handler);
+  }
+
+  public void processTemplate(String resourceName, JsonObject params, Reader r, final Map<String, Mustache.Lambda> requestLambdas,
+      final Writer out, final Handler<Writer> handler)
   {
     if(r != null)
-      this.processTemplate(compiler.compile(r), params, handler);
+      this.processTemplate(compiler.compile(r), params, requestLambdas, out, handler);
     else
-      this.processTemplateToWriter(resourceName, params, handler);
+      this.processTemplateToWriter(resourceName, params, requestLambdas, out, handler);
   }
 
   @Override
-  protected void getTemplate(String resourceName, final Handler<Template> handler)
+  protected void getTemplate(String resourceName, final Mustache.Compiler compiler, final Handler<Template> handler)
   {
     String path = this.templateFolder + resourceName;
 
     final String p = absolutePath(path);
     if (this.useCache == true)
     {
-      Template cacheEntry = cache.get(p);
-      if(cacheEntry != null)
-      {
-        handler.handle(cacheEntry);
-        return;
-      }
+      TemplateCache.getInstance().getTemplate(vertx, p, compiler, handler);
+      return;
     }
 
     this.vertx.fileSystem().readFile(p, new Handler<AsyncResult<Buffer>>()
@@ -104,14 +107,7 @@ public class FileTemplateProcessor extends TemplateProcessor
       public void handle(AsyncResult<Buffer> ar)
       {
         if (ar.succeeded())
-        {
-          Template template = compiler.compile(ar.result().toString("UTF-8"));
-
-          if(useCache == true)
-            cache.put(p, template);
-
-          handler.handle(template);
-        }
+          handler.handle(compiler.compile(ar.result().toString("UTF-8")));
         else
           handler.handle(null);
       }
@@ -0,0 +1,76 @@
+/*
+ * Copyright © "Open Digital Education", 2020
+ *
+ * This program is published by "Open Digital Education".
+ * You must indicate the name of the software and the company in any production /contribution
+ * using the software and indicate on the home page of the software industry in question,
+ * "powered by Open Digital Education" with a reference to the website: https://opendigitaleducation.com/.
+ *
+ * This program is free software, licensed under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, version 3 of the License.
+ *
+ * You can redistribute this application and/or modify it since you respect the terms of the GNU Affero General Public License.
+ * If you modify the source code and then use this modified source code in your creation, you must make available the source code of your modifications.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with the software.
+ * If not, please see : <http://www.gnu.org/licenses/>. Full compliance requires reading the terms of this license and following its directives.
+
+ */
+
+package fr.wseduc.webutils.template;
+
+import java.util.Iterator;
+
+import com.samskivert.mustache.DefaultCollector;
+import com.samskivert.mustache.Mustache;
+import com.samskivert.mustache.Template;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Resolves template variables directly from JsonObject instances and template contexts,
+ * so the params do not have to be converted to maps before rendering.
+ * A JsonObject is a section context like a map, it is not iterated over its entries.
+ * The collector is stateless : use the shared {@link #INSTANCE}, templates compiled with the same collector
+ * can be shared by {@link TemplateCache}.
+ */
+public class JsonCollector extends DefaultCollector
+{
+  public static final JsonCollector INSTANCE = new JsonCollector();
+
+  private static final Mustache.VariableFetcher JSON_FETCHER = new Mustache.VariableFetcher()
+  {
+    @Override
+    public Object get(Object ctx, String name) throws Exception
+    {
+      final JsonObject json = (JsonObject) ctx;
+      return json.containsKey(name) ? json.getValue(name) : Template.NO_FETCHER_FOUND;
+    }
+  };
+
+  private static final Mustache.VariableFetcher CONTEXT_FETCHER = new Mustache.VariableFetcher()
+  {
+    @Override
+    public Object get(Object ctx, String name) throws Exception
+    {
+      return ((TemplateContext) ctx).fetch(name);
+    }
+  };
+
+  @Override
+  public Iterator<?> toIterator(Object value)
+  {
+    if (value instanceof JsonObject)
+      return null;
+    return super.toIterator(value);
+  }
+
+  @Override
+  public Mustache.VariableFetcher createFetcher(Object ctx, String name)
+  {
+    if (ctx instanceof JsonObject)
+      return JSON_FETCHER;
+    if (ctx instanceof TemplateContext)
+      return CONTEXT_FETCHER;
+    return super.createFetcher(ctx, name);
+  }
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright © "Open Digital Education", 2020
+ *
+ * This program is published by "Open Digital Education".
+ * You must indicate the name of the software and the company in any production /contribution
+ * using the software and indicate on the home page of the software industry in question,
+ * "powered by Open Digital Education" with a reference to the website: https://opendigitaleducation.com/.
+ *
+ * This program is free software, licensed under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, version 3 of the License.
+ *
+ * You can redistribute this application and/or modify it since you respect the terms of the GNU Affero General Public License.
+ * If you modify the source code and then use this modified source code in your creation, you must make available the source code of your modifications.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with the software.
+ * If not, please see : <http://www.gnu.org/licenses/>. Full compliance requires reading the terms of this license and following its directives.
+ */
+
+package fr.wseduc.webutils.template;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.samskivert.mustache.Mustache;
+import com.samskivert.mustache.MustacheException;
+import com.samskivert.mustache.Template;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+/**
+ * Compiled file templates shared by all the verticle instances, bounded by a maximum size with LRU eviction.
+ * Concurrent requests of a missing template trigger a single read and compile.
+ * When a check interval is configured, the modification time of a cached file is checked at most once per interval
+ * and the template is compiled again if the file has changed, so edits are still seen in dev mode.
+ */
+public final class TemplateCache
+{
+  private static final Logger log = LoggerFactory.getLogger(TemplateCache.class);
+  private static final TemplateCache instance = new TemplateCache();
+
+  private volatile int maxSize = 1000;
+  private volatile long checkInterval = -1L;
+  private final Map<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true)
+  {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest)
+    {
+      return size() > maxSize;
+    }
+  };
+  private final ConcurrentMap<Key, Future<Template>> loading = new ConcurrentHashMap<>();
+
+  private TemplateCache()
+  {
+  }
+
+  public static TemplateCache getInstance()
+  {
+    return instance;
+  }
+
+  /**
+   * @param config "max-size" : maximum number of cached templates (default 1000),
+   *               "check-interval" : minimum delay in ms between two modification checks of a file,
+   *               0 to check on every access, negative to never check (default)
+   */
+  public void configure(JsonObject config)
+  {
+    if (config != null)
+    {
+      this.maxSize = config.getInteger("max-size", 1000);
+      this.checkInterval = config.getLong("check-interval", -1L);
+    }
+  }
+
+  public void clear()
+  {
+    synchronized (entries)
+    {
+      entries.clear();
+    }
+  }
+
+  /**
+   * Remove the templates of a folder, leaving the ones of the other processors.
+   * @param pathPrefix absolute path of the folder
+   */
+  public void clear(String pathPrefix)
+  {
+    synchronized (entries)
+    {
+      entries.keySet().removeIf(key -> key.path.startsWith(pathPrefix));
+    }
+  }
+
+  public void getTemplate(Vertx vertx, String path, Mustache.Compiler compiler, Handler<Template> handler)
+  {
+    final Key key = new Key(path, compiler);
+    final Entry entry;
+    synchronized (entries)
+    {
+      entry = entries.get(key);
+    }
+    final long interval = this.checkInterval;
+    if (entry == null)
+    {
+      load(vertx, key, compiler, interval >= 0, handler);
+    }
+    else if (interval < 0 || System.currentTimeMillis() - entry.checked < interval)
+    {
+      handler.handle(entry.template);
+    }
+    else
+    {
+      vertx.fileSystem().props(path).onComplete(ar -> {
+        if (ar.succeeded() && ar.result().lastModifiedTime() == entry.lastModified)
+        {
+          entry.checked = System.currentTimeMillis();
+          handler.handle(entry.template);
+        }
+        else
+        {
+          remove(key, entry);
+          load(vertx, key, compiler, true, handler);
+        }
+      });
+    }
+  }
+
+  private void load(Vertx vertx, Key key, Mustache.Compiler compiler, boolean checkModified, Handler<Template> handler)
+  {
+    final Context context = vertx.getOrCreateContext();
+    final Promise<Template> promise = Promise.promise();
+    final Future<Template> pending = loading.putIfAbsent(key, promise.future());
+    if (pending != null)
+    {
+      pending.onComplete(ar -> dispatch(context, handler, ar.result()));
+      return;
+    }
+    final Future<Long> lastModified = checkModified ?
+        vertx.fileSystem().props(key.path).map(props -> props.lastModifiedTime()) :
+        Future.succeededFuture(0L);
+    lastModified.compose(modified -> vertx.fileSystem().readFile(key.path).map(buffer -> {
+      final Template template = compiler.compile(buffer.toString("UTF-8"));
+      synchronized (entries)
+      {
+        entries.put(key, new Entry(template, modified));
+      }
+      return template;
+    })).onComplete(ar -> {
+      loading.remove(key);
+      if (ar.failed() && ar.cause() instanceof MustacheException)
+      {
+        log.error("Error compiling template " + key.path, ar.cause());
+      }
+      promise.complete(ar.succeeded() ? ar.result() : null);
+      handler.handle(ar.succeeded() ? ar.result() : null);
+    });
+  }
+
+  private void dispatch(Context context, Handler<Template> handler, Template template)
+  {
+    if (Vertx.currentContext() == context)
+    {
+      handler.handle(template);
+    }
+    else
+    {
+      context.runOnContext(v -> handler.handle(template));
+    }
+  }
+
+  private void remove(Key key, Entry entry)
+  {
+    synchronized (entries)
+    {
+      if (entries.get(key) == entry)
+      {
+        entries.remove(key);
+      }
+    }
+  }
+
+  private static final class Entry
+  {
+    private final Template template;
+    private final long lastModified;
+    private volatile long checked;
+
+    private Entry(Template template, long lastModified)
+    {
+      this.template = template;
+      this.lastModified = lastModified;
+      this.checked = System.currentTimeMillis();
+    }
+  }
+
+  /**
+   * Templates compiled from the same file with another escaping, default value or collector are different templates.
+   */
+  private static final class Key
+  {
+    private final String path;
+    private final Mustache.Escaper escaper;
+    private final String nullValue;
+    private final Mustache.Collector collector;
+
+    private Key(String path, Mustache.Compiler compiler)
+    {
+      this.path = path;
+      this.escaper = compiler.escaper;
+      this.nullValue = compiler.nullValue;
+      this.collector = compiler.collector;
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+      if (this == o) return true;
+      if (!(o instanceof Key)) return false;
+      final Key key = (Key) o;
+      return path.equals(key.path) && escaper == key.escaper && collector == key.collector &&
+          Objects.equals(nullValue, key.nullValue);
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return Objects.hash(path, System.identityHashCode(escaper), System.identityHashCode(collector), nullValue);
+    }
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright © "Open Digital Education", 2020
+ *
+ * This program is published by "Open Digital Education".
+ * You must indicate the name of the software and the company in any production /contribution
+ * using the software and indicate on the home page of the software industry in question,
+ * "powered by Open Digital Education" with a reference to the website: https://opendigitaleducation.com/.
+ *
+ * This program is free software, licensed under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, version 3 of the License.
+ *
+ * You can redistribute this application and/or modify it since you respect the terms of the GNU Affero General Public License.
+ * If you modify the source code and then use this modified source code in your creation, you must make available the source code of your modifications.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with the software.
+ * If not, please see : <http://www.gnu.org/licenses/>. Full compliance requires reading the terms of this license and following its directives.
+
+ */
+
+package fr.wseduc.webutils.template;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.samskivert.mustache.Mustache;
+import com.samskivert.mustache.Template;
+import fr.wseduc.webutils.collections.JsonUtils;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Read-only root context of a rendering : the lambdas of the request, then the lambdas of the processor,
+ * then the params. Nothing is copied, the params must not be modified while the template is executed.
+ * It is the context returned by Template.Fragment#context() to the lambdas called at the root of a template.
+ * As the context was a map of the converted params and of the lambdas, it is also a read-only map view,
+ * whose JSON values are converted to maps and lists when they are read.
+ */
+public final class TemplateContext extends AbstractMap<String, Object>
+{
+  private final JsonObject params;
+  private final Map<String, Mustache.Lambda> requestLambdas;
+  private final Map<String, Mustache.Lambda> lambdas;
+
+  TemplateContext(JsonObject params, Map<String, Mustache.Lambda> requestLambdas, Map<String, Mustache.Lambda> lambdas)
+  {
+    this.params = params;
+    this.requestLambdas = (requestLambdas != null) ? requestLambdas : Collections.<String, Mustache.Lambda>emptyMap();
+    this.lambdas = lambdas;
+  }
+
+  /**
+   * @return the params of the rendering, to be read only
+   */
+  public JsonObject getParams()
+  {
+    return params;
+  }
+
+  /**
+   * @return the lambda or the param with this name, or Template.NO_FETCHER_FOUND if there is none
+   */
+  Object fetch(String name)
+  {
+    Mustache.Lambda lambda = requestLambdas.get(name);
+    if (lambda == null)
+      lambda = lambdas.get(name);
+    if (lambda != null)
+      return lambda;
+    if (params != null && params.containsKey(name))
+      return params.getValue(name);
+    return Template.NO_FETCHER_FOUND;
+  }
+
+  @Override
+  public boolean containsKey(Object key)
+  {
+    return key instanceof String && fetch((String) key) != Template.NO_FETCHER_FOUND;
+  }
+
+  /**
+   * @return the lambda or the param with this name, the JSON params being converted, or null if there is none
+   */
+  @Override
+  public Object get(Object key)
+  {
+    if (!(key instanceof String))
+      return null;
+    final Object value = fetch((String) key);
+    if (value == Template.NO_FETCHER_FOUND)
+      return null;
+    return convert(value);
+  }
+
+  @Override
+  public Set<Entry<String, Object>> entrySet()
+  {
+    final Map<String, Object> entries = (params != null) ?
+        JsonUtils.convertMap(params) : new LinkedHashMap<String, Object>();
+    entries.putAll(lambdas);
+    entries.putAll(requestLambdas);
+    return Collections.unmodifiableMap(entries).entrySet();
+  }
+
+  private static Object convert(Object value)
+  {
+    if (value instanceof JsonObject)
+      return JsonUtils.convertMap((JsonObject) value);
+    if (value instanceof JsonArray)
+      return JsonUtils.convertList((JsonArray) value);
+    return value;
+  }
+}
@@ -22,13 +22,13 @@ package fr.wseduc.webutils.template;
 import java.io.Writer;
 import java.io.StringWriter;
 import java.io.Reader;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
 import com.samskivert.mustache.Mustache;
 import com.samskivert.mustache.Template;
-import fr.wseduc.webutils.collections.JsonUtils;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
@@ -43,7 +43,7 @@ public class TemplateProcessor
 {
   protected static final Logger log = LoggerFactory.getLogger(TemplateProcessor.class);
 
-  protected Mustache.Compiler compiler = Mustache.compiler().defaultValue("");
+  protected Mustache.Compiler compiler = Mustache.compiler().defaultValue("").withCollector(JsonCollector.INSTANCE);
   private Map<String, Mustache.Lambda> templateLambdas = new ConcurrentHashMap<String, Mustache.Lambda>();
 
   public TemplateProcessor()
@@ -92,29 +92,51 @@ public class TemplateProcessor
   }
 
   public void processTemplateToWriter(String templateString, JsonObject params, final Handler<Writer> handler)
+  {
+    this.processTemplateToWriter(templateString, params, null, handler);
+  }
+
+  public void processTemplateToWriter(String templateString, JsonObject params, final Writer out, final Handler<Writer> handler)
+  {
+    this.processTemplateToWriter(templateString, params, null, out, handler);
+  }
+
+  /**
+   * Render the template into the given writer, or into a new StringWriter if it is null.
+   * The request lambdas are only visible to this rendering and take precedence over the lambdas of the processor.
+   */
+  public void processTemplateToWriter(String templateString, JsonObject params, final Map<String, Mustache.Lambda> requestLambdas,
+      final Writer out, final Handler<Writer> handler)
   {
     this.getTemplate(templateString, new Handler<Template>()
     {
       @Override
       public void handle(Template t)
       {
-        processTemplate(t, params, handler);
+        processTemplate(t, params, requestLambdas, out, handler);
       }
     });
   }
 
   protected void processTemplate(Template t, JsonObject params, final Handler<Writer> handler)
   {
-    final JsonObject ctxParams = (params == null) ? new JsonObject() : params.copy();
-    final Map<String, Object> ctx = JsonUtils.convertMap(ctxParams);
-    this.applyLambdas(ctx);
+    this.processTemplate(t, params, null, null, handler);
+  }
 
+  protected void processTemplate(Template t, JsonObject params, final Writer out, final Handler<Writer> handler)
+  {
+    this.processTemplate(t, params, null, out, handler);
+  }
+
+  protected void processTemplate(Template t, JsonObject params, final Map<String, Mustache.Lambda> requestLambdas,
+      final Writer out, final Handler<Writer> handler)
+  {
     if (t != null)
     {
       try
       {
-        Writer writer = new StringWriter();
-        t.execute(ctx, writer);
+        Writer writer = (out != null) ? out : new StringWriter();
+        t.execute(new TemplateContext(params, requestLambdas, this.templateLambdas), writer);
         handler.handle(writer);
       }
       catch (Exception e)
@@ -127,18 +149,30 @@ public class TemplateProcessor
       handler.handle(null);
   }
 
-  protected void getTemplate(String templateString, final Handler<Template> handler)
+  /**
+   * Compile the template once, to render it many times with the returned {@link CompiledTemplate}.
+   * The lambdas of the processor are copied, so the compiled template does not see their later changes.
+   */
+  public void compileTemplate(String templateString, boolean escapeHTML, final Map<String, Mustache.Lambda> requestLambdas,
+      final Handler<CompiledTemplate> handler)
   {
-    handler.handle(compiler.compile(templateString));
+    this.getTemplate(templateString, compiler.escapeHTML(escapeHTML), new Handler<Template>()
+    {
+      @Override
+      public void handle(Template t)
+      {
+        handler.handle(t == null ? null : new CompiledTemplate(t, requestLambdas, new HashMap<>(templateLambdas)));
+      }
+    });
   }
 
-  // ================================================ PRIVATE UTILS ===============================================
+  protected void getTemplate(String templateString, final Handler<Template> handler)
+  {
+    this.getTemplate(templateString, compiler, handler);
+  }
 
-  private void applyLambdas(Map<String, Object> context)
+  protected void getTemplate(String templateString, Mustache.Compiler compiler, final Handler<Template> handler)
   {
-    for(Map.Entry<String, Mustache.Lambda> entry : this.templateLambdas.entrySet())
-    {
-      context.put(entry.getKey(), entry.getValue());
-    }
+    handler.handle(compiler.compile(templateString));
   }
-}
\ No newline at end of file
+}
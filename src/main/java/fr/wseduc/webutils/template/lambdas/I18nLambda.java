@@ -21,15 +21,28 @@ package fr.wseduc.webutils.template.lambdas;
 
 import java.io.Writer;
 import java.util.Locale;
+import java.util.Objects;
 import java.io.IOException;
 
 import com.samskivert.mustache.Mustache;
 import com.samskivert.mustache.Template;
 
 import fr.wseduc.webutils.I18n;
+import fr.wseduc.webutils.collections.ConcurrentTTLMap;
+import fr.wseduc.webutils.template.JsonCollector;
 
+/**
+ * Translations are classified once : plain texts are written as is and the ones with embedded mustache tags
+ * are compiled once and shared by all the instances, in a cache bounded by a maximum number of translations
+ * which evicts the oldest ones, the domains coming from the Host headers.
+ */
 public class I18nLambda implements Mustache.Lambda
 {
+  private static final Mustache.Compiler compiler = Mustache.compiler().withCollector(JsonCollector.INSTANCE);
+  private static final int CACHE_MAX_SIZE = 10000;
+  private static final long CACHE_TTL = 3600000L;
+  private static final ConcurrentTTLMap<Key, Translation> translations = new ConcurrentTTLMap<>(CACHE_TTL, CACHE_MAX_SIZE);
+
   private final I18n i18n;
 
   private final String host;
@@ -57,15 +70,73 @@ public class I18nLambda implements Mustache.Lambda
   @Override
   public void execute(Template.Fragment frag, Writer out) throws IOException {
     String key = frag.execute();
-    String text;
+    String domain = this.host == null ? I18n.DEFAULT_DOMAIN : this.host;
+    String text = i18n.translate(key, domain, theme, locale);
 
-    if(this.host == null)
-      text = i18n.translate(key, I18n.DEFAULT_DOMAIN, theme, locale);
+    Translation translation = translation(new Key(locale, domain, theme, key), text);
+    if (translation.template == null)
+      out.write(text);
     else
-      text = i18n.translate(key, host, theme, locale);
+      // This will handle translation units with embedded mustache templates
+      translation.template.execute(frag.context(), out);
+  }
+
+  /**
+   * The cached translation is checked against the current text, so a bundle reloaded with other messages
+   * is compiled again.
+   */
+  private static Translation translation(Key key, String text)
+  {
+    Translation translation = translations.get(key);
+    if (translation == null || !translation.text.equals(text))
+    {
+      translation = new Translation(text, text.contains("{{") ? compiler.compile(text) : null);
+      translations.put(key, translation);
+    }
+    return translation;
+  }
+
+  private static final class Translation
+  {
+    private final String text;
+    private final Template template;
+
+    private Translation(String text, Template template)
+    {
+      this.text = text;
+      this.template = template;
+    }
+  }
+
+  private static final class Key
+  {
+    private final Locale locale;
+    private final String domain;
+    private final String theme;
+    private final String key;
+
+    private Key(Locale locale, String domain, String theme, String key)
+    {
+      this.locale = locale;
+      this.domain = domain;
+      this.theme = theme;
+      this.key = key;
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+      if (this == o) return true;
+      if (!(o instanceof Key)) return false;
+      final Key other = (Key) o;
+      return key.equals(other.key) && locale.equals(other.locale) && domain.equals(other.domain) &&
+          Objects.equals(theme, other.theme);
+    }
 
-    // This will handle translation units with embedded mustache templates
-    Mustache.compiler().compile(text).execute(frag.context(), out);
-    //out.write(text);
+    @Override
+    public int hashCode()
+    {
+      return Objects.hash(locale, domain, theme, key);
+    }
   }
 }
\ No newline at end of file
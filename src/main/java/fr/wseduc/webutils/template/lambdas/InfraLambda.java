@@ -27,35 +27,25 @@ import com.samskivert.mustache.Template;
 
 public class InfraLambda implements Mustache.Lambda
 {
-  private boolean https;
-  private String host;
-  private String rootFolderPath;
-  private boolean useDefaultPort;
+  private final String prefix;
 
   public InfraLambda(boolean https, String host, String rootFolderPath, boolean useDefaultPort)
   {
-    this.https = https;
-    this.host = host;
-    this.rootFolderPath = rootFolderPath;
-    this.useDefaultPort = useDefaultPort;
+    String protocol = https ? "https://" : "http://";
+    String staticHost = host;
+    if (useDefaultPort == true) {
+      staticHost = staticHost.split(":")[0] + ":8001";
+    }
+    this.prefix = protocol
+        + staticHost
+        + (rootFolderPath.startsWith("/") ? rootFolderPath : "/" + rootFolderPath)
+        + "/";
   }
 
   @Override
   public void execute(Template.Fragment frag, Writer out) throws IOException {
     String path = frag.execute();
-    out.write(staticResource(path));
-  }
-
-  private String staticResource(String path)
-  {
-    String protocol = this.https ? "https://" : "http://";
-    String staticHost = this.host;
-    if (this.useDefaultPort == true) {
-      staticHost = staticHost.split(":")[0] + ":8001";
-    }
-    return protocol
-        + staticHost
-        + (this.rootFolderPath.startsWith("/") ? this.rootFolderPath : "/" + this.rootFolderPath)
-        + "/" + path;
+    out.write(prefix);
+    out.write(path);
   }
 }
\ No newline at end of file
@@ -25,6 +25,7 @@ import java.util.Locale;
 
 import com.samskivert.mustache.Mustache;
 import com.samskivert.mustache.Template;
+import fr.wseduc.webutils.collections.ConcurrentTTLMap;
 
 import org.joda.time.Instant;
 import org.joda.time.format.DateTimeFormat;
@@ -32,12 +33,31 @@ import org.joda.time.format.DateTimeFormatter;
 
 public class LocaleDateLambda implements Mustache.Lambda
 {
-  private DateTimeFormatter fmt;
+  private static final int FORMATTERS_CACHE_SIZE = 256;
+  private static final long FORMATTERS_CACHE_TTL = 3600000L;
+  private static final ConcurrentTTLMap<Locale, DateTimeFormatter> formatters =
+      new ConcurrentTTLMap<>(FORMATTERS_CACHE_TTL, FORMATTERS_CACHE_SIZE);
+
+  private final DateTimeFormatter fmt;
 
   public LocaleDateLambda(String locale)
   {
-    Locale l = new Locale(locale);
-    this.fmt = DateTimeFormat.forPattern(DateTimeFormat.patternForStyle("FF", l)).withLocale(l);
+    this.fmt = formatter(locale);
+  }
+
+  /**
+   * The formatters are immutable and shared by locale, the oldest ones being evicted from the cache.
+   */
+  private static DateTimeFormatter formatter(String locale)
+  {
+    final Locale l = new Locale(locale);
+    DateTimeFormatter fmt = formatters.get(l);
+    if (fmt == null)
+    {
+      fmt = DateTimeFormat.forPattern(DateTimeFormat.patternForStyle("FF", l)).withLocale(l);
+      formatters.put(l, fmt);
+    }
+    return fmt;
   }
 
   @Override
@@ -27,29 +27,21 @@ import com.samskivert.mustache.Template;
 
 public class StaticLambda implements Mustache.Lambda
 {
-  private boolean https;
-  private String host;
-  private String rootFolderPath;
+  private final String prefix;
 
   public StaticLambda(boolean https, String host, String rootFolderPath)
   {
-    this.https = https;
-    this.host = host;
-    this.rootFolderPath = rootFolderPath;
+    String protocol = https ? "https://" : "http://";
+    this.prefix = protocol
+        + host
+        + (rootFolderPath.startsWith("/") ? rootFolderPath : "/" + rootFolderPath)
+        + "/";
   }
 
   @Override
   public void execute(Template.Fragment frag, Writer out) throws IOException {
     String path = frag.execute();
-    out.write(staticResource(path));
-  }
-
-  private String staticResource(String path)
-  {
-    String protocol = this.https ? "https://" : "http://";
-    return protocol
-        + this.host
-        + (this.rootFolderPath.startsWith("/") ? this.rootFolderPath : "/" + this.rootFolderPath)
-        + "/" + path;
+    out.write(prefix);
+    out.write(path);
   }
 }
\ No newline at end of file
@@ -0,0 +1,156 @@
+/*
+ * Copyright © "Open Digital Education", 2020
+ *
+ * This program is published by "Open Digital Education".
+ * You must indicate the name of the software and the company in any production /contribution
+ * using the software and indicate on the home page of the software industry in question,
+ * "powered by Open Digital Education" with a reference to the website: https://opendigitaleducation.com/.
+ *
+ * This program is free software, licensed under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, version 3 of the License.
+ *
+ * You can redistribute this application and/or modify it since you respect the terms of the GNU Affero General Public License.
+ * If you modify the source code and then use this modified source code in your creation, you must make available the source code of your modifications.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with the software.
+ * If not, please see : <http://www.gnu.org/licenses/>. Full compliance requires reading the terms of this license and following its directives.
+
+ */
+
+package fr.wseduc.webutils.template.lambdas;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+import com.samskivert.mustache.Mustache;
+import fr.wseduc.webutils.I18n;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+/**
+ * Lambdas of the rendered requests, shared by all the requests with the same locale, host, protocol and theme.
+ * The locale is the one resolved from the Accept-Language header, so equivalent headers share the same lambdas.
+ * The lambdas are immutable, so a set of lambdas stays valid across requests.
+ * The number of sets is bounded by a maximum size with LRU eviction.
+ */
+public final class TemplateLambdas
+{
+  private static final Logger log = LoggerFactory.getLogger(TemplateLambdas.class);
+  private static final TemplateLambdas instance = new TemplateLambdas();
+
+  private volatile int maxSize = 1000;
+  private final Map<Key, Map<String, Mustache.Lambda>> lambdas = new LinkedHashMap<Key, Map<String, Mustache.Lambda>>(16, 0.75f, true)
+  {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Key, Map<String, Mustache.Lambda>> eldest)
+    {
+      return size() > maxSize;
+    }
+  };
+
+  private TemplateLambdas()
+  {
+  }
+
+  public static TemplateLambdas getInstance()
+  {
+    return instance;
+  }
+
+  /**
+   * @param config "max-size" : maximum number of cached sets of lambdas, which must be positive (default 1000)
+   */
+  public void configure(JsonObject config)
+  {
+    if (config != null)
+    {
+      final int size = config.getInteger("max-size", 1000);
+      if (size > 0)
+        this.maxSize = size;
+      else
+        log.warn("Invalid template lambdas max-size " + size + ", keeping " + maxSize);
+    }
+  }
+
+  public void clear()
+  {
+    synchronized (lambdas)
+    {
+      lambdas.clear();
+    }
+  }
+
+  /**
+   * @return the unmodifiable "i18n", "static", "infra" and "datetime" lambdas
+   */
+  public Map<String, Mustache.Lambda> get(String acceptLanguage, String host, String theme, boolean ssl,
+      String staticHost, String staticRoot, boolean infraDefaultPort)
+  {
+    final Locale locale = I18n.getLocale(acceptLanguage);
+    final Key key = new Key(locale, host, theme, ssl, staticHost, staticRoot, infraDefaultPort);
+    Map<String, Mustache.Lambda> l;
+    synchronized (lambdas)
+    {
+      l = lambdas.get(key);
+    }
+    if (l == null)
+    {
+      final Map<String, Mustache.Lambda> m = new HashMap<>(8);
+      m.put("i18n", new I18nLambda(locale.getLanguage(), host, theme));
+      m.put("static", new StaticLambda(ssl, staticHost, staticRoot));
+      m.put("infra", new InfraLambda(ssl, staticHost, "/infra/public", infraDefaultPort));
+      m.put("datetime", new LocaleDateLambda(locale.getLanguage()));
+      l = Collections.unmodifiableMap(m);
+      synchronized (lambdas)
+      {
+        lambdas.put(key, l);
+      }
+    }
+    return l;
+  }
+
+  private static final class Key
+  {
+    private final Locale locale;
+    private final String host;
+    private final String theme;
+    private final boolean ssl;
+    private final String staticHost;
+    private final String staticRoot;
+    private final boolean infraDefaultPort;
+
+    private Key(Locale locale, String host, String theme, boolean ssl, String staticHost, String staticRoot,
+        boolean infraDefaultPort)
+    {
+      this.locale = locale;
+      this.host = host;
+      this.theme = theme;
+      this.ssl = ssl;
+      this.staticHost = staticHost;
+      this.staticRoot = staticRoot;
+      this.infraDefaultPort = infraDefaultPort;
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+      if (this == o) return true;
+      if (!(o instanceof Key)) return false;
+      final Key key = (Key) o;
+      return ssl == key.ssl && infraDefaultPort == key.infraDefaultPort && Objects.equals(locale, key.locale) &&
+          Objects.equals(host, key.host) && Objects.equals(theme, key.theme) &&
+          Objects.equals(staticHost, key.staticHost) && Objects.equals(staticRoot, key.staticRoot);
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return Objects.hash(locale, host, theme, ssl, staticHost, staticRoot, infraDefaultPort);
+    }
+  }
+}
@@ -19,12 +19,13 @@ package org.vertx.java.core.http;
 import io.vertx.core.Handler;
 import io.vertx.core.http.HttpServerRequest;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -32,8 +33,8 @@ import java.util.regex.Pattern;
  * This class allows you to do route requests based on the HTTP verb and the request URI, in a manner similar
  * to <a href="http://www.sinatrarb.com/">Sinatra</a> or <a href="http://expressjs.com/">Express</a>.<p>
  * RouteMatcher also lets you extract parameters from the request URI either a simple pattern or using
- * regular expressions for more complex matches. Any parameters extracted will be added to the requests parameters
- * which will be available to you in your request handler.<p>
+ * regular expressions for more complex matches. Any parameters extracted will be available to you in your request
+ * handler through the request parameters. They are only extracted from the path when read.<p>
  * It's particularly useful when writing REST-ful web applications.<p>
  * To use a simple pattern to extract parameters simply prefix the parameter name in the pattern with a ':' (colon).<p>
  * Different handlers can be specified for each of the HTTP verbs, GET, POST, PUT, DELETE etc.<p>
@@ -41,55 +42,61 @@ import java.util.regex.Pattern;
  * parameters do not have a name, so they are put into the HTTP request with names of param0, param1, param2 etc.<p>
  * Multiple matches can be specified for each HTTP verb. In the case there are more than one matching patterns for
  * a particular request, the first matching one will be used.<p>
+ * Simple patterns are dispatched through a trie of path segments and regular expressions are indexed by
+ * their literal prefix, so dispatch cost does not grow linearly with the number of registered routes.<p>
  * Instances of this class are not thread-safe<p>
  *
  * @author <a href="http://tfox.org">Tim Fox</a>
  */
 public class RouteMatcher implements Handler<HttpServerRequest> {
 
-	private final List<PatternBinding> getBindings = new CopyOnWriteArrayList<>();
-	private final List<PatternBinding> putBindings = new CopyOnWriteArrayList<>();
-	private final List<PatternBinding> postBindings = new CopyOnWriteArrayList<>();
-	private final List<PatternBinding> deleteBindings = new CopyOnWriteArrayList<>();
-	private final List<PatternBinding> optionsBindings = new CopyOnWriteArrayList<>();
-	private final List<PatternBinding> headBindings = new CopyOnWriteArrayList<>();
-	private final List<PatternBinding> traceBindings = new CopyOnWriteArrayList<>();
-	private final List<PatternBinding> connectBindings = new CopyOnWriteArrayList<>();
-	private final List<PatternBinding> patchBindings = new CopyOnWriteArrayList<>();
+	private static final Pattern PARAM_PATTERN = Pattern.compile(":([A-Za-z][A-Za-z0-9_]*)");
+	private static final Pattern PARAM_SEGMENT_PATTERN = Pattern.compile(":[A-Za-z][A-Za-z0-9_]*");
+	private static final String REGEX_META_CHARS = "\\.[]{}()*+?^$|";
+
+	private final RouteTable getBindings = new RouteTable();
+	private final RouteTable putBindings = new RouteTable();
+	private final RouteTable postBindings = new RouteTable();
+	private final RouteTable deleteBindings = new RouteTable();
+	private final RouteTable optionsBindings = new RouteTable();
+	private final RouteTable headBindings = new RouteTable();
+	private final RouteTable traceBindings = new RouteTable();
+	private final RouteTable connectBindings = new RouteTable();
+	private final RouteTable patchBindings = new RouteTable();
 	private Handler<HttpServerRequest> noMatchHandler;
 
 	@Override
 	public void handle(HttpServerRequest request) {
-		switch (request.method().name()) {
+		final RouteTable bindings = bindings(request.method().name());
+		if (bindings != null) {
+			route(request, bindings);
+		} else {
+			notFound(request);
+		}
+	}
+
+	private RouteTable bindings(String method) {
+		switch (method) {
 			case "GET":
-				route(request, getBindings);
-				break;
+				return getBindings;
 			case "PUT":
-				route(request, putBindings);
-				break;
+				return putBindings;
 			case "POST":
-				route(request, postBindings);
-				break;
+				return postBindings;
 			case "DELETE":
-				route(request, deleteBindings);
-				break;
+				return deleteBindings;
 			case "OPTIONS":
-				route(request, optionsBindings);
-				break;
+				return optionsBindings;
 			case "HEAD":
-				route(request, headBindings);
-				break;
+				return headBindings;
 			case "TRACE":
-				route(request, traceBindings);
-				break;
+				return traceBindings;
 			case "PATCH":
-				route(request, patchBindings);
-				break;
+				return patchBindings;
 			case "CONNECT":
-				route(request, connectBindings);
-				break;
+				return connectBindings;
 			default:
-				notFound(request);
+				return null;
 		}
 	}
 
@@ -319,9 +326,9 @@ public class RouteMatcher implements Handler<HttpServerRequest> {
 	}
 
 
-	private static void addPattern(String input, Handler<HttpServerRequest> handler, List<PatternBinding> bindings) {
+	private static void addPattern(String input, Handler<HttpServerRequest> handler, RouteTable bindings) {
 		// We need to search for any :<token name> tokens in the String and replace them with named capture groups
-		Matcher m =  Pattern.compile(":([A-Za-z][A-Za-z0-9_]*)").matcher(input);
+		Matcher m = PARAM_PATTERN.matcher(input);
 		StringBuffer sb = new StringBuffer();
 		Set<String> groups = new HashSet<>();
 		while (m.find()) {
@@ -334,37 +341,29 @@ public class RouteMatcher implements Handler<HttpServerRequest> {
 		}
 		m.appendTail(sb);
 		String regex = sb.toString();
-		PatternBinding binding = new PatternBinding(Pattern.compile(regex), groups, handler);
+		PatternBinding binding = new PatternBinding(Pattern.compile(regex), groups, segments(input), handler);
 		bindings.add(binding);
 	}
 
-	private static void addRegEx(String input, Handler<HttpServerRequest> handler, List<PatternBinding> bindings) {
-		PatternBinding binding = new PatternBinding(Pattern.compile(input), null, handler);
+	private static void addRegEx(String input, Handler<HttpServerRequest> handler, RouteTable bindings) {
+		PatternBinding binding = new PatternBinding(Pattern.compile(input), null, null, handler);
 		bindings.add(binding);
 	}
 
-	private void route(HttpServerRequest request, List<PatternBinding> bindings) {
-		for (PatternBinding binding: bindings) {
-			Matcher m = binding.pattern.matcher(request.path());
-			if (m.matches()) {
-				Map<String, String> params = new HashMap<>(m.groupCount());
-				if (binding.paramNames != null) {
-					// Named params
-					for (String param: binding.paramNames) {
-						params.put(param, m.group(param));
-					}
-				} else {
-					// Un-named params
-					for (int i = 0; i < m.groupCount(); i++) {
-						params.put("param" + i, m.group(i + 1));
-					}
-				}
-				request.params().addAll(params);
-				binding.handler.handle(request);
-				return;
-			}
+	private void route(HttpServerRequest request, RouteTable bindings) {
+		final RouteMatch match = bindings.match(request.path());
+		if (match == null) {
+			notFound(request);
+		} else if (match.size() == 0) {
+			match.binding.handler.handle(request);
+		} else {
+			match.binding.handler.handle(new RoutedHttpServerRequest(request, match));
 		}
-		notFound(request);
+	}
+
+	RouteMatch match(String method, String path) {
+		final RouteTable bindings = bindings(method);
+		return bindings != null ? bindings.match(path) : null;
 	}
 
 	private void notFound(HttpServerRequest request) {
@@ -377,15 +376,338 @@ public class RouteMatcher implements Handler<HttpServerRequest> {
 		}
 	}
 
-	private static class PatternBinding {
+	/**
+	 * Split a simple pattern in path segments if it can be dispatched by the segment trie, that is if each
+	 * segment is either a plain literal or a single :param token. Otherwise the pattern contains regular
+	 * expression constructs and null is returned.
+	 */
+	private static String[] segments(String input) {
+		final String[] segments = input.split("/", -1);
+		for (String segment : segments) {
+			if (PARAM_SEGMENT_PATTERN.matcher(segment).matches()) {
+				continue;
+			}
+			for (int i = 0; i < segment.length(); i++) {
+				final char c = segment.charAt(i);
+				if (c == ':' || REGEX_META_CHARS.indexOf(c) >= 0) {
+					return null;
+				}
+			}
+		}
+		return segments;
+	}
+
+	private static boolean isParam(String segment) {
+		return !segment.isEmpty() && segment.charAt(0) == ':';
+	}
+
+	/**
+	 * Literal characters any input must start with to match the regular expression.
+	 */
+	static String literalPrefix(String regex) {
+		if (regex.indexOf('|') >= 0) {
+			return "";
+		}
+		final StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < regex.length(); i++) {
+			char c = regex.charAt(i);
+			if (c == '\\') {
+				if (i + 1 >= regex.length() || Character.isLetterOrDigit(regex.charAt(i + 1))) {
+					break;
+				}
+				c = regex.charAt(++i);
+			} else if (c == '^' && i == 0) {
+				continue;
+			} else if (REGEX_META_CHARS.indexOf(c) >= 0) {
+				if ((c == '?' || c == '*' || c == '{') && sb.length() > 0) {
+					// the previous character is optional
+					sb.setLength(sb.length() - 1);
+				}
+				break;
+			}
+			sb.append(c);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * First path segment including its trailing slash (ie "/app/" for "/app/api/1"), or null.
+	 */
+	private static String firstSegment(String path) {
+		if (path.isEmpty() || path.charAt(0) != '/') {
+			return null;
+		}
+		final int end = path.indexOf('/', 1);
+		return end > 0 ? path.substring(0, end + 1) : null;
+	}
+
+	static final class PatternBinding {
 		final Pattern pattern;
 		final Handler<HttpServerRequest> handler;
 		final Set<String> paramNames;
+		final String[] segments;
+		final String prefix;
+		final String[] captureNames;
+		int order;
 
-		private PatternBinding(Pattern pattern, Set<String> paramNames, Handler<HttpServerRequest> handler) {
+		private PatternBinding(Pattern pattern, Set<String> paramNames, String[] segments,
+				Handler<HttpServerRequest> handler) {
 			this.pattern = pattern;
 			this.paramNames = paramNames;
+			this.segments = segments;
 			this.handler = handler;
+			if (segments != null) {
+				final List<String> names = new ArrayList<>();
+				for (String segment : segments) {
+					if (isParam(segment)) {
+						names.add(segment.substring(1));
+					}
+				}
+				this.prefix = null;
+				this.captureNames = names.toArray(new String[0]);
+			} else if (paramNames != null) {
+				this.prefix = literalPrefix(pattern.pattern());
+				this.captureNames = paramNames.toArray(new String[0]);
+			} else {
+				this.prefix = literalPrefix(pattern.pattern());
+				this.captureNames = new String[pattern.matcher("").groupCount()];
+				for (int i = 0; i < captureNames.length; i++) {
+					captureNames[i] = "param" + i;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Bindings of one HTTP method, in registration order. The dispatch structures are rebuilt lazily
+	 * after each registration and are immutable once published.
+	 */
+	private static final class RouteTable {
+		private final List<PatternBinding> bindings = new ArrayList<>();
+		private volatile CompiledRoutes compiled;
+
+		private synchronized void add(PatternBinding binding) {
+			binding.order = bindings.size();
+			bindings.add(binding);
+			compiled = null;
+		}
+
+		private RouteMatch match(String path) {
+			CompiledRoutes c = compiled;
+			if (c == null) {
+				c = compile();
+			}
+			return c.match(path);
+		}
+
+		private synchronized CompiledRoutes compile() {
+			if (compiled == null) {
+				compiled = new CompiledRoutes(bindings);
+			}
+			return compiled;
+		}
+	}
+
+	/**
+	 * Simple patterns are dispatched through a segment trie. Regular expressions are indexed by the first
+	 * path segment of their literal prefix, and the remaining ones are tried for every path. As the lowest
+	 * registration order wins, a regular expression is only evaluated when it was registered before the
+	 * best trie candidate.
+	 */
+	private static final class CompiledRoutes {
+		private static final PatternBinding[] EMPTY = new PatternBinding[0];
+		private final TrieNode root = new TrieNode();
+		private final Map<String, PatternBinding[]> regexBindingsByFirstSegment = new HashMap<>();
+		private final PatternBinding[] unindexedRegexBindings;
+
+		private CompiledRoutes(List<PatternBinding> bindings) {
+			final Map<String, List<PatternBinding>> indexed = new HashMap<>();
+			final List<PatternBinding> unindexed = new ArrayList<>();
+			for (PatternBinding binding : bindings) {
+				if (binding.segments != null) {
+					root.add(binding, 0);
+					continue;
+				}
+				final String key = firstSegment(binding.prefix);
+				if (key != null) {
+					indexed.computeIfAbsent(key, k -> new ArrayList<>()).add(binding);
+				} else {
+					unindexed.add(binding);
+				}
+			}
+			unindexedRegexBindings = unindexed.toArray(EMPTY);
+			for (Map.Entry<String, List<PatternBinding>> e : indexed.entrySet()) {
+				final List<PatternBinding> candidates = new ArrayList<>(e.getValue());
+				candidates.addAll(unindexed);
+				candidates.sort(Comparator.comparingInt(b -> b.order));
+				regexBindingsByFirstSegment.put(e.getKey(), candidates.toArray(EMPTY));
+			}
+		}
+
+		private RouteMatch match(String path) {
+			final PatternBinding best = root.find(path, 0, null);
+			for (PatternBinding binding : regexBindings(path)) {
+				if (best != null && binding.order > best.order) {
+					break;
+				}
+				if (!path.startsWith(binding.prefix)) {
+					continue;
+				}
+				final Matcher m = binding.pattern.matcher(path);
+				if (m.matches()) {
+					return RouteMatch.of(binding, m, path);
+				}
+			}
+			return best != null ? RouteMatch.of(best, path) : null;
+		}
+
+		private PatternBinding[] regexBindings(String path) {
+			if (!regexBindingsByFirstSegment.isEmpty()) {
+				final String key = firstSegment(path);
+				if (key != null) {
+					final PatternBinding[] candidates = regexBindingsByFirstSegment.get(key);
+					if (candidates != null) {
+						return candidates;
+					}
+				}
+			}
+			return unindexedRegexBindings;
+		}
+	}
+
+	private static final class TrieNode {
+		private final Map<String, TrieNode> literals = new HashMap<>();
+		private TrieNode param;
+		private PatternBinding binding;
+		private int minOrder = Integer.MAX_VALUE;
+
+		private void add(PatternBinding b, int depth) {
+			minOrder = Math.min(minOrder, b.order);
+			if (depth == b.segments.length) {
+				if (binding == null) {
+					binding = b;
+				}
+				return;
+			}
+			final String segment = b.segments[depth];
+			final TrieNode child;
+			if (isParam(segment)) {
+				if (param == null) {
+					param = new TrieNode();
+				}
+				child = param;
+			} else {
+				child = literals.computeIfAbsent(segment, k -> new TrieNode());
+			}
+			child.add(b, depth + 1);
+		}
+
+		private PatternBinding find(String path, int start, PatternBinding best) {
+			if (best != null && minOrder >= best.order) {
+				return best;
+			}
+			int end = path.indexOf('/', start);
+			final boolean last = end < 0;
+			if (last) {
+				end = path.length();
+			}
+			if (!literals.isEmpty()) {
+				final TrieNode child = literals.get(path.substring(start, end));
+				if (child != null) {
+					best = child.next(path, end, last, best);
+				}
+			}
+			if (param != null && end > start) {
+				best = param.next(path, end, last, best);
+			}
+			return best;
+		}
+
+		private PatternBinding next(String path, int end, boolean last, PatternBinding best) {
+			if (last) {
+				return (binding != null && (best == null || binding.order < best.order)) ? binding : best;
+			}
+			return find(path, end + 1, best);
+		}
+	}
+
+	/**
+	 * Matched binding with the offsets of its captured params in the request path. Values are only
+	 * extracted from the path when read.
+	 */
+	static final class RouteMatch {
+		final PatternBinding binding;
+		private final String path;
+		private final int[] offsets;
+
+		private RouteMatch(PatternBinding binding, String path, int[] offsets) {
+			this.binding = binding;
+			this.path = path;
+			this.offsets = offsets;
+		}
+
+		private static RouteMatch of(PatternBinding binding, Matcher m, String path) {
+			final String[] names = binding.captureNames;
+			final int[] offsets = new int[names.length * 2];
+			for (int i = 0; i < names.length; i++) {
+				if (binding.paramNames != null) {
+					offsets[2 * i] = m.start(names[i]);
+					offsets[2 * i + 1] = m.end(names[i]);
+				} else {
+					offsets[2 * i] = m.start(i + 1);
+					offsets[2 * i + 1] = m.end(i + 1);
+				}
+			}
+			return new RouteMatch(binding, path, offsets);
+		}
+
+		private static RouteMatch of(PatternBinding binding, String path) {
+			final int[] offsets = new int[binding.captureNames.length * 2];
+			int start = 0;
+			int captured = 0;
+			for (String segment : binding.segments) {
+				int end = path.indexOf('/', start);
+				if (end < 0) {
+					end = path.length();
+				}
+				if (isParam(segment)) {
+					offsets[captured++] = start;
+					offsets[captured++] = end;
+				}
+				start = end + 1;
+			}
+			return new RouteMatch(binding, path, offsets);
+		}
+
+		int size() {
+			return binding.captureNames.length;
+		}
+
+		String name(int index) {
+			return binding.captureNames[index];
+		}
+
+		int indexOf(String name) {
+			final String[] names = binding.captureNames;
+			for (int i = 0; i < names.length; i++) {
+				if (names[i].equals(name)) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		String value(int index) {
+			final int start = offsets[2 * index];
+			return start < 0 ? null : path.substring(start, offsets[2 * index + 1]);
+		}
+
+		Map<String, String> params() {
+			final Map<String, String> params = new HashMap<>(size());
+			for (int i = 0; i < size(); i++) {
+				params.put(name(i), value(i));
+			}
+			return params;
 		}
 	}
 
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2011-2013 The original author or authors
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *     The Eclipse Public License is available at
+ *     http://www.eclipse.org/legal/epl-v10.html
+ *
+ *     The Apache License v2.0 is available at
+ *     http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+package org.vertx.java.core.http;
+
+import fr.wseduc.webutils.security.WrappedHttpServerRequest;
+import io.vertx.core.MultiMap;
+import io.vertx.core.http.HttpServerRequest;
+
+/**
+ * Request exposing the params captured by the route as a lazy view. Captured values are only extracted from
+ * the path when read through getParam, and are only merged into the request params MultiMap when params()
+ * is called. As with the previous eager merge, query string params take precedence on captured ones.
+ */
+final class RoutedHttpServerRequest extends WrappedHttpServerRequest {
+
+	private final RouteMatcher.RouteMatch match;
+	private boolean paramsMerged;
+
+	RoutedHttpServerRequest(HttpServerRequest request, RouteMatcher.RouteMatch match) {
+		super(request);
+		this.match = match;
+	}
+
+	@Override
+	public MultiMap params() {
+		final MultiMap params = super.params();
+		if (!paramsMerged) {
+			paramsMerged = true;
+			for (int i = 0; i < match.size(); i++) {
+				final String value = match.value(i);
+				if (value != null) {
+					params.add(match.name(i), value);
+				}
+			}
+		}
+		return params;
+	}
+
+	@Override
+	public String getParam(String paramName) {
+		final int index;
+		if (paramsMerged || (index = match.indexOf(paramName)) < 0) {
+			return super.getParam(paramName);
+		}
+		if (query() != null) {
+			final String value = super.getParam(paramName);
+			if (value != null) {
+				return value;
+			}
+		}
+		return match.value(index);
+	}
+
+}
@@ -0,0 +1,74 @@
+package fr.wseduc.webutils;
+
+import io.vertx.core.json.JsonObject;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Translation of a key with and without arguments.
+ * The replaceAll benchmark reproduces the previous substitution of the arguments, compiling a regular expression by argument.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class I18nBenchmark {
+
+	private static final String TEXT = "Le document {0} a été partagé par {1} avec {2}.";
+
+	private I18n i18n;
+	private final String[] args = {"rapport.pdf", "Jean Dupont", "la classe 6B"};
+
+	@Setup
+	public void setup() {
+		final JsonObject fr = new JsonObject();
+		for (int i = 0; i < 2000; i++) {
+			fr.put("key." + i, "Libellé " + i);
+		}
+		fr.put("shared", TEXT);
+		final Map<Locale, JsonObject> messages = new HashMap<>();
+		messages.put(Locale.FRENCH, fr);
+		messages.put(Locale.ENGLISH, fr.copy());
+		i18n = new I18n().initializeMessages(messages);
+		i18n.add("host", Locale.FRENCH, new JsonObject().put("key.1", "Domaine"));
+		i18n.add("theme", Locale.FRENCH, new JsonObject().put("key.2", "Thème"), true);
+	}
+
+	@Benchmark
+	public String translate() {
+		return i18n.translate("key.1000", "host", "fr-FR,fr;q=0.9,en;q=0.8");
+	}
+
+	@Benchmark
+	public String translateTheme() {
+		return i18n.translate("key.1000", "host", "theme", Locale.FRENCH);
+	}
+
+	@Benchmark
+	public String translateArgs() {
+		return i18n.translate("shared", "host", Locale.FRENCH, args);
+	}
+
+	@Benchmark
+	public String replaceAll() {
+		String text = TEXT;
+		for (int i = 0; i < args.length; i++) {
+			text = text.replaceAll("\\{" + i + "\\}", args[i]);
+		}
+		return text;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(I18nBenchmark.class.getSimpleName()).build()).run();
+	}
+
+}
@@ -0,0 +1,45 @@
+package fr.wseduc.webutils;
+
+import io.vertx.core.json.JsonObject;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class I18nTest {
+
+	private static I18n i18n() {
+		final Map<Locale, JsonObject> messages = new HashMap<>();
+		messages.put(Locale.ENGLISH, new JsonObject().put("hello", "Hello {0}, {1} {0}$ {2} {01}").put("only.en", "en"));
+		messages.put(Locale.FRENCH, new JsonObject().put("hello", "Bonjour {0}").put("plain", "{texte}"));
+		final I18n i18n = new I18n().initializeMessages(messages);
+		i18n.add("host", Locale.FRENCH, new JsonObject().put("plain", "domaine").put("host.only", "hôte"));
+		i18n.add("theme", Locale.FRENCH, new JsonObject().put("hello", "Salut {0}"), true);
+		return i18n;
+	}
+
+	@Test
+	public void testTranslate() {
+		final I18n i18n = i18n();
+		assertEquals("Bonjour {0}", i18n.translate("hello", I18n.DEFAULT_DOMAIN, Locale.FRENCH));
+		assertEquals("Bonjour $1\\", i18n.translate("hello", I18n.DEFAULT_DOMAIN, Locale.FRENCH, "$1\\"));
+		assertEquals("Hello a, b a$ {2} {01}", i18n.translate("hello", "unknown", "de-DE,de;q=0.8", "a", "b"));
+		assertEquals("only.en", i18n.translate("only.en", I18n.DEFAULT_DOMAIN, Locale.FRENCH));
+		assertEquals("{texte}", i18n.translate("plain", I18n.DEFAULT_DOMAIN, Locale.FRENCH, "x"));
+		assertEquals("domaine", i18n.translate("plain", "host", Locale.FRENCH));
+	}
+
+	@Test
+	public void testThemeFallback() {
+		final I18n i18n = i18n();
+		assertEquals("Salut x", i18n.translate("hello", "host", "theme", Locale.FRENCH, "x"));
+		assertEquals("{texte}", i18n.translate("plain", "host", "theme", Locale.FRENCH));
+		assertEquals("hôte", i18n.translate("host.only", "host", "theme", Locale.FRENCH));
+		assertEquals("Bonjour x", i18n.translate("hello", "host", "unknown", Locale.FRENCH, "x"));
+		assertEquals("missing", i18n.translate("missing", "host", "theme", Locale.FRENCH));
+	}
+
+}
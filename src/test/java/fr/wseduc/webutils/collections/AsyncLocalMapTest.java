@@ -0,0 +1,88 @@
+package fr.wseduc.webutils.collections;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.shareddata.LocalMap;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class AsyncLocalMapTest {
+
+	private Vertx vertx;
+
+	@Before
+	public void setUp() {
+		vertx = Vertx.vertx();
+	}
+
+	@After
+	public void tearDown() {
+		vertx.close();
+	}
+
+	@Test
+	public void testSweep() throws InterruptedException {
+		final LocalMap<String, String> localMap = vertx.sharedData().getLocalMap("sweep");
+		final AsyncLocalMap<String, String> map = new AsyncLocalMap<>(localMap, vertx, -1, 10L);
+		for (int i = 0; i < 100; i++) {
+			map.put("k" + i, "v", 50L);
+		}
+		map.put("permanent", "v");
+		map.put("replaced", "v", 50L);
+		localMap.put("replaced", "other");
+		assertEquals(102, localMap.size());
+		Thread.sleep(300L);
+		assertEquals(2, localMap.size());
+		assertEquals("v", localMap.get("permanent"));
+		assertEquals("other", localMap.get("replaced"));
+		assertEquals(100L, (long) map.stats().getLong("expirations"));
+	}
+
+	@Test
+	public void testSweeperRestarts() throws InterruptedException {
+		final LocalMap<String, String> localMap = vertx.sharedData().getLocalMap("restart");
+		final AsyncLocalMap<String, String> map = new AsyncLocalMap<>(localMap, vertx, -1, 5L);
+		for (int i = 0; i < 20; i++) {
+			map.put("k" + i, "v", 5L);
+			Thread.sleep(i % 4 * 5L);
+		}
+		Thread.sleep(200L);
+		assertEquals(0, localMap.size());
+		assertEquals(20L, (long) map.stats().getLong("expirations"));
+	}
+
+	@Test
+	public void testLazyExpiry() throws InterruptedException {
+		final LocalMap<String, String> localMap = vertx.sharedData().getLocalMap("lazy");
+		final AsyncLocalMap<String, String> map = new AsyncLocalMap<>(localMap);
+		map.put("a", "1", 20L);
+		assertEquals("1", map.get("a").result());
+		Thread.sleep(50L);
+		assertTrue(localMap.containsKey("a"));
+		assertNull(map.get("a").result());
+		assertFalse(localMap.containsKey("a"));
+		assertNull(map.putIfAbsent("a", "2", 1000L).result());
+		assertEquals("2", map.get("a").result());
+	}
+
+	@Test
+	public void testLruEviction() {
+		final LocalMap<String, String> localMap = vertx.sharedData().getLocalMap("lru");
+		final AsyncLocalMap<String, String> map = new AsyncLocalMap<>(localMap, vertx, 2);
+		map.put("a", "1");
+		map.put("b", "2");
+		map.get("a");
+		map.put("c", "3");
+		assertEquals("1", localMap.get("a"));
+		assertFalse(localMap.containsKey("b"));
+		assertEquals("3", localMap.get("c"));
+		assertEquals(1L, (long) map.stats().getLong("evictions"));
+		assertEquals(2, (int) map.stats().getInteger("entries"));
+	}
+
+}
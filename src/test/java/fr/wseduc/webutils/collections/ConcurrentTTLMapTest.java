@@ -0,0 +1,78 @@
+package fr.wseduc.webutils.collections;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ConcurrentTTLMapTest {
+
+	@Test
+	public void testExpiry() throws InterruptedException {
+		final ConcurrentTTLMap<String, String> map = new ConcurrentTTLMap<>(50L, -1);
+		map.put("a", "1");
+		map.put("b", "2", 60000L);
+		assertEquals("1", map.get("a"));
+		Thread.sleep(100L);
+		assertNull(map.get("a"));
+		assertEquals("2", map.get("b"));
+		assertEquals(1, map.size());
+		map.put("a", "3");
+		assertEquals("3", map.get("a"));
+	}
+
+	@Test
+	public void testEvictsOldest() {
+		final ConcurrentTTLMap<Integer, Integer> map = new ConcurrentTTLMap<>(60000L, 3);
+		for (int i = 0; i < 10; i++) {
+			map.put(i, i);
+		}
+		assertEquals(3, map.size());
+		for (int i = 0; i < 7; i++) {
+			assertNull(map.get(i));
+		}
+		for (int i = 7; i < 10; i++) {
+			assertEquals(i, (int) map.get(i));
+		}
+	}
+
+	@Test
+	public void testReplaceAndRemove() {
+		final ConcurrentTTLMap<Integer, Integer> map = new ConcurrentTTLMap<>(60000L, 2);
+		map.put(1, 1);
+		map.put(2, 2);
+		map.put(1, 10);
+		map.put(3, 3);
+		assertNull(map.get(2));
+		assertEquals(10, (int) map.get(1));
+		assertEquals(3, (int) map.get(3));
+		map.removeIf(v -> v > 5);
+		assertNull(map.get(1));
+		assertEquals(3, (int) map.remove(3));
+		assertEquals(0, map.size());
+	}
+
+	@Test
+	public void testConcurrentPuts() throws InterruptedException {
+		final ConcurrentTTLMap<Integer, Integer> map = new ConcurrentTTLMap<>(60000L, 100);
+		final List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < 4; t++) {
+			final int offset = t * 100000;
+			final Thread thread = new Thread(() -> {
+				for (int i = 0; i < 10000; i++) {
+					map.put(offset + i, i);
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(100, map.size());
+	}
+
+}
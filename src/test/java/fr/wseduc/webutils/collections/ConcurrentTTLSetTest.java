@@ -0,0 +1,51 @@
+package fr.wseduc.webutils.collections;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ConcurrentTTLSetTest {
+
+	@Test
+	public void testExpiry() throws InterruptedException {
+		final ConcurrentTTLSet<String> set = new ConcurrentTTLSet<>(50L);
+		assertTrue(set.add("a"));
+		assertFalse(set.add("a"));
+		assertTrue(set.contains("a"));
+		Thread.sleep(100L);
+		assertFalse(set.contains("a"));
+		assertEquals(0, set.size());
+		assertTrue(set.add("a"));
+		assertTrue(set.contains("a"));
+	}
+
+	@Test
+	public void testMaxSize() {
+		final ConcurrentTTLSet<Integer> set = new ConcurrentTTLSet<>(60000L, 3);
+		for (int i = 0; i < 10; i++) {
+			set.add(i);
+		}
+		assertEquals(new HashSet<>(Arrays.asList(7, 8, 9)), new HashSet<>(set));
+	}
+
+	@Test
+	public void testRetainAllAndIterator() {
+		final ConcurrentTTLSet<Integer> set = new ConcurrentTTLSet<>(60000L);
+		set.addAll(Arrays.asList(1, 2, 3, 4));
+		assertTrue(set.retainAll(Arrays.asList(2, 3, 4, 5)));
+		assertEquals(new HashSet<>(Arrays.asList(2, 3, 4)), new HashSet<>(set));
+		for (Iterator<Integer> it = set.iterator(); it.hasNext(); ) {
+			if (it.next() == 3) {
+				it.remove();
+			}
+		}
+		assertEquals(new HashSet<>(Arrays.asList(2, 4)), new HashSet<>(set));
+	}
+
+}
@@ -0,0 +1,102 @@
+package fr.wseduc.webutils.collections;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.AsyncMap;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SharedDataHelperTest {
+
+	private Vertx vertx;
+	private SharedDataHelper helper;
+
+	@Before
+	public void setUp() {
+		vertx = Vertx.vertx();
+		helper = SharedDataHelper.getInstance();
+		helper.init(vertx);
+		helper.configureNearCache(new JsonObject().put("near", 60000L).put("far", 0L));
+	}
+
+	@After
+	public void tearDown() {
+		helper.configureNearCache(new JsonObject().put("near", 0L));
+		vertx.close();
+	}
+
+	@Test
+	public void testNearCache() throws Exception {
+		final AsyncMap<String, String> map = await(helper.getLocalAsyncMap("near"));
+		await(map.put("a", "1"));
+		assertEquals("1", await(helper.getLocal("near", "a")));
+		await(map.put("a", "2"));
+		assertEquals("1", await(helper.getLocal("near", "a")));
+		await(helper.putLocal("near", "a", "3"));
+		assertEquals("3", await(helper.getLocal("near", "a")));
+		await(map.put("a", "4"));
+		helper.invalidate("near");
+		assertEquals("4", await(helper.getLocal("near", "a")));
+	}
+
+	@Test
+	public void testGetMulti() throws Exception {
+		final AsyncMap<String, String> map = await(helper.getLocalAsyncMap("near"));
+		await(map.put("a", "1"));
+		await(map.put("b", "2"));
+		assertEquals("1", await(helper.getLocal("near", "a")));
+		await(map.put("a", "other"));
+		final Map<String, String> values = await(helper.<String, String>getLocalMulti("near", "a", "b", "b", "c"));
+		assertEquals(3, values.size());
+		assertEquals("1", values.get("a"));
+		assertEquals("2", values.get("b"));
+		assertTrue(values.containsKey("c"));
+		assertNull(values.get("c"));
+	}
+
+	@Test
+	public void testLocalAndClusterMapsCachedApart() throws Exception {
+		final AsyncMap<String, String> map = await(helper.getLocalAsyncMap("near"));
+		await(map.put("k", "1"));
+		assertEquals("1", await(helper.getLocal("near", "k")));
+		final AsyncMap<String, String> clusterMap = await(helper.getAsyncMap("near"));
+		await(clusterMap.put("k", "2"));
+		assertEquals("2", await(helper.get("near", "k")));
+		assertEquals("1", await(helper.getLocal("near", "k")));
+	}
+
+	@Test
+	public void testCachedJsonIsCopied() throws Exception {
+		final AsyncMap<String, JsonObject> map = await(helper.getLocalAsyncMap("near"));
+		await(map.put("json", new JsonObject().put("a", 1)));
+		final JsonObject first = await(helper.getLocal("near", "json"));
+		first.put("a", 2);
+		final JsonObject second = await(helper.getLocal("near", "json"));
+		assertEquals(1, (int) second.getInteger("a"));
+		second.put("a", 3);
+		assertEquals(1, (int) this.<JsonObject>await(helper.getLocal("near", "json")).getInteger("a"));
+	}
+
+	@Test
+	public void testUncachedMap() throws Exception {
+		final AsyncMap<String, String> map = await(helper.getLocalAsyncMap("far"));
+		await(map.put("a", "1"));
+		assertEquals("1", await(helper.getLocal("far", "a")));
+		await(map.put("a", "2"));
+		assertEquals("2", await(helper.getLocal("far", "a")));
+	}
+
+	private static <T> T await(Future<T> future) throws Exception {
+		return future.toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS);
+	}
+
+}
@@ -0,0 +1,96 @@
+package fr.wseduc.webutils.collections;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keys added continuously to a set expiring them, like rate limit or dedup keys, with the expired keys removed
+ * once per ttl : by the periodic clean of the TTLSet, and by the adds of the ConcurrentTTLSet.
+ * The size of the set depends on the ttl. Run with -prof gc to compare the allocations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TTLSetBenchmark {
+
+	@Param({"10", "100"})
+	private long ttl;
+
+	private TTLSet<Long> ttlSet;
+	private TTLSet<Long> sharedTTLSet;
+	private Set<Long> synchronizedTTLSet;
+	private ConcurrentTTLSet<Long> concurrentTTLSet;
+	private long counter;
+	private long lastPurge;
+	private final AtomicLong sharedCounter = new AtomicLong();
+	private volatile long sharedLastPurge;
+
+	@Setup(Level.Iteration)
+	public void setup() {
+		ttlSet = new TTLSet<>(ttl);
+		sharedTTLSet = new TTLSet<>(ttl);
+		synchronizedTTLSet = Collections.synchronizedSet(sharedTTLSet);
+		concurrentTTLSet = new ConcurrentTTLSet<>(ttl);
+		counter = 0;
+		lastPurge = System.currentTimeMillis();
+		sharedCounter.set(0);
+		sharedLastPurge = lastPurge;
+	}
+
+	@Benchmark
+	public boolean ttlSet() {
+		final long now = System.currentTimeMillis();
+		if (now - lastPurge >= ttl) {
+			lastPurge = now;
+			ttlSet.purge();
+		}
+		final long key = counter++;
+		ttlSet.add(key);
+		return ttlSet.contains(key - 512);
+	}
+
+	@Benchmark
+	public boolean concurrentTTLSet() {
+		final long key = counter++;
+		concurrentTTLSet.add(key);
+		return concurrentTTLSet.contains(key - 512);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public boolean synchronizedTTLSetShared() {
+		final long now = System.currentTimeMillis();
+		if (now - sharedLastPurge >= ttl) {
+			sharedLastPurge = now;
+			synchronized (synchronizedTTLSet) {
+				sharedTTLSet.purge();
+			}
+		}
+		final long key = sharedCounter.getAndIncrement();
+		synchronizedTTLSet.add(key);
+		return synchronizedTTLSet.contains(key - 512);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public boolean concurrentTTLSetShared() {
+		final long key = sharedCounter.getAndIncrement();
+		concurrentTTLSet.add(key);
+		return concurrentTTLSet.contains(key - 512);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(TTLSetBenchmark.class.getSimpleName()).build()).run();
+	}
+
+}
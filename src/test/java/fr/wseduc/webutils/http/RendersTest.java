@@ -0,0 +1,82 @@
+package fr.wseduc.webutils.http;
+
+import io.vertx.core.Handler;
+import io.vertx.core.MultiMap;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonObject;
+import org.junit.Test;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+
+public class RendersTest {
+
+	@Test
+	public void testRenderViewUsesOverriddenProcessTemplate() {
+		final Renders renders = new Renders(null, new JsonObject()) {
+			@Override
+			public void processTemplate(HttpServerRequest request, JsonObject p, String resourceName, Reader r,
+					Handler<Writer> handler) {
+				final StringWriter writer = new StringWriter();
+				writer.write("overridden " + p.getString("name"));
+				handler.handle(writer);
+			}
+		};
+		final AtomicReference<String> body = new AtomicReference<>();
+		final HttpServerResponse response = (HttpServerResponse) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[]{HttpServerResponse.class}, (proxy, method, args) -> {
+					if ("end".equals(method.getName()) && args != null && args.length == 1) {
+						body.set(String.valueOf(args[0]));
+					}
+					final Class<?> type = method.getReturnType();
+					if (type == HttpServerResponse.class) return proxy;
+					if (type == MultiMap.class) return MultiMap.caseInsensitiveMultiMap();
+					if (type == boolean.class) return false;
+					return null;
+				});
+		renders.renderView(request(response), new JsonObject().put("name", "view"));
+		assertEquals("overridden view", body.get());
+	}
+
+	@Test
+	@SuppressWarnings("deprecation")
+	public void testOverriddenSetLambdaTemplateRequestIsApplied() throws Exception {
+		final Vertx vertx = Vertx.vertx();
+		try {
+			final Renders renders = new Renders(vertx, new JsonObject()) {
+				@Override
+				protected void setLambdaTemplateRequest(HttpServerRequest request) {
+					templateProcessor.setLambda("custom", (frag, out) -> out.write("legacy"));
+				}
+			};
+			final CompletableFuture<String> result = new CompletableFuture<>();
+			renders.processTemplate(request(null), new JsonObject(), "legacy", new StringReader("{{#custom}}x{{/custom}}"),
+					writer -> result.complete(writer != null ? writer.toString() : null));
+			assertEquals("legacy", result.get(5, TimeUnit.SECONDS));
+		} finally {
+			vertx.close();
+		}
+	}
+
+	private HttpServerRequest request(HttpServerResponse response) {
+		return (HttpServerRequest) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[]{HttpServerRequest.class}, (proxy, method, args) -> {
+					final Class<?> type = method.getReturnType();
+					if (type == HttpServerResponse.class) return response;
+					if (type == MultiMap.class) return MultiMap.caseInsensitiveMultiMap();
+					if (type == boolean.class) return false;
+					return null;
+				});
+	}
+
+}
@@ -0,0 +1,159 @@
+package fr.wseduc.webutils.http;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientResponse;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.json.JsonObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.zip.GZIPInputStream;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class StaticResourceCacheTest {
+
+	private Vertx vertx;
+	private HttpServer server;
+	private HttpClient client;
+	private File dir;
+	private byte[] script;
+
+	@Before
+	public void setUp() throws Exception {
+		vertx = Vertx.vertx();
+		dir = Files.createTempDirectory("static").toFile();
+		final StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 200; i++) {
+			sb.append("console.log('line ").append(i).append("');\n");
+		}
+		script = sb.toString().getBytes("UTF-8");
+		Files.write(new File(dir, "app.js").toPath(), script);
+		Files.write(new File(dir, "app.js.br").toPath(), "brotli".getBytes("UTF-8"));
+		Files.write(new File(dir, "large.bin").toPath(), new byte[16384]);
+		StaticResourceCache.getInstance().clear();
+		StaticResourceCache.getInstance().configure(new JsonObject().put("enabled", true).put("max-entry-size", 8192), false);
+		server = vertx.createHttpServer().requestHandler(request -> StaticResourceCache.getInstance()
+				.serve(vertx, request, new File(dir, request.path().substring(1)).getAbsolutePath(), false));
+		server.listen(0).toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS);
+		client = vertx.createHttpClient();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		StaticResourceCache.getInstance().clear();
+		StaticResourceCache.getInstance().configure(null, false);
+		vertx.close().toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS);
+		for (File f : dir.listFiles()) {
+			f.delete();
+		}
+		dir.delete();
+	}
+
+	private Response get(String uri, String... headers) throws Exception {
+		return client.request(HttpMethod.GET, server.actualPort(), "localhost", uri).compose(req -> {
+			for (int i = 0; i < headers.length; i += 2) {
+				req.putHeader(headers[i], headers[i + 1]);
+			}
+			return req.send().compose(resp -> resp.body().map(body -> new Response(resp, body)));
+		}).toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void testVariants() throws Exception {
+		final Response identity = get("/app.js");
+		assertEquals(200, identity.status);
+		assertArrayEquals(script, identity.body.getBytes());
+		assertNull(identity.response.getHeader("Content-Encoding"));
+		final String etag = identity.response.getHeader("ETag");
+		assertNotNull(etag);
+
+		final Response gzip = get("/app.js", "Accept-Encoding", "gzip, br;q=0");
+		assertEquals("gzip", gzip.response.getHeader("Content-Encoding"));
+		assertEquals("Accept-Encoding", gzip.response.getHeader("Vary"));
+		final GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzip.body.getBytes()));
+		final java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+		final byte[] b = new byte[1024];
+		for (int n; (n = in.read(b)) > 0; ) {
+			out.write(b, 0, n);
+		}
+		assertArrayEquals(script, out.toByteArray());
+
+		final Response br = get("/app.js", "Accept-Encoding", "gzip, deflate, br");
+		assertEquals("br", br.response.getHeader("Content-Encoding"));
+		assertEquals("brotli", br.body.toString());
+
+		assertEquals(304, get("/app.js", "If-None-Match", etag).status);
+		assertEquals(200, get("/app.js", "If-None-Match", etag, "Accept-Encoding", "gzip").status);
+		assertEquals(304, get("/app.js", "If-None-Match", gzip.response.getHeader("ETag"), "Accept-Encoding", "gzip").status);
+		for (int i = 0; i < 10; i++) {
+			assertArrayEquals(script, get("/app.js").body.getBytes());
+		}
+	}
+
+	@Test
+	public void testRanges() throws Exception {
+		final Response range = get("/app.js", "Range", "bytes=0-9", "Accept-Encoding", "gzip");
+		assertEquals(206, range.status);
+		assertEquals("bytes 0-9/" + script.length, range.response.getHeader("Content-Range"));
+		assertNull(range.response.getHeader("Content-Encoding"));
+		assertEquals(new String(script, 0, 10, "UTF-8"), range.body.toString());
+		assertEquals(new String(script, script.length - 5, 5, "UTF-8"), get("/app.js", "Range", "bytes=-5").body.toString());
+		assertEquals(416, get("/app.js", "Range", "bytes=100000-").status);
+		assertEquals(200, get("/app.js", "Range", "bytes=0-1,4-5").status);
+		assertEquals(200, get("/app.js", "Range", "bytes=0-9", "If-Range", "\"other\"").status);
+
+		final Response large = get("/large.bin");
+		assertEquals(200, large.status);
+		assertEquals(16384, large.body.length());
+		assertNull(large.response.getHeader("ETag"));
+		final Response largeRange = get("/large.bin", "Range", "bytes=16288-");
+		assertEquals(206, largeRange.status);
+		assertEquals(96, largeRange.body.length());
+		assertEquals(404, get("/missing.js").status);
+	}
+
+	@Test
+	public void testDisabledByDefault() {
+		StaticResourceCache.getInstance().configure(null, false);
+		assertFalse(StaticResourceCache.getInstance().isEnabled());
+		StaticResourceCache.getInstance().configure(new JsonObject().put("enabled", true), false);
+		assertTrue(StaticResourceCache.getInstance().isEnabled());
+	}
+
+	@Test
+	public void testRangeParsing() {
+		assertArrayEquals(new long[]{0, 99}, StaticResourceCache.range("bytes=0-", 100));
+		assertArrayEquals(new long[]{10, 99}, StaticResourceCache.range("bytes=10-500", 100));
+		assertArrayEquals(new long[]{0, 99}, StaticResourceCache.range("bytes=-500", 100));
+		assertNull(StaticResourceCache.range("bytes=10-5", 100));
+		assertNull(StaticResourceCache.range("items=0-5", 100));
+		assertNull(StaticResourceCache.range("bytes=a-5", 100));
+	}
+
+	private static final class Response {
+		private final HttpClientResponse response;
+		private final int status;
+		private final Buffer body;
+
+		private Response(HttpClientResponse response, Buffer body) {
+			this.response = response;
+			this.status = response.statusCode();
+			this.body = body;
+		}
+	}
+
+}
@@ -0,0 +1,49 @@
+package fr.wseduc.webutils.http;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+
+public class StaticResourceTest {
+
+	@Test
+	public void testDates() {
+		assertEquals("Thu, 01 Jan 1970 00:00:00 GMT", StaticResource.formatDate(999L));
+		assertEquals("Tue, 15 Sep 2026 08:05:09 GMT", StaticResource.formatDate(1789459509123L));
+		assertEquals(1789459509000L, StaticResource.parseDate("Tue, 15 Sep 2026 08:05:09 GMT"));
+		assertEquals(1789459509000L, StaticResource.parseDate("Tue, 15 Sep 2026 10:05:09 +0200"));
+		assertEquals(-1L, StaticResource.parseDate("15/09/2026"));
+	}
+
+	@Test
+	public void testConcurrentFormat() throws Exception {
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			final List<Future<Boolean>> results = new ArrayList<>();
+			for (int t = 0; t < 4; t++) {
+				final long offset = t * 86_400_000L;
+				results.add(executor.submit(() -> {
+					for (int i = 0; i < 10000; i++) {
+						final long date = 1_700_000_000_000L + offset + i * 1000L;
+						if (StaticResource.parseDate(StaticResource.formatDate(date)) != date) {
+							return false;
+						}
+					}
+					return true;
+				}));
+			}
+			for (Future<Boolean> result : results) {
+				assertEquals(true, result.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+}
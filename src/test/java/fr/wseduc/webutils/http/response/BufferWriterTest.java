@@ -0,0 +1,29 @@
+package fr.wseduc.webutils.http.response;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+public class BufferWriterTest {
+
+	@Test
+	public void testUtf8EncodingAcrossChunks() {
+		final String text = "<p>Élève & 学校 😀 ok</p>";
+		final BufferWriter writer = new BufferWriter(4);
+		writer.write(text, 0, 10);
+		writer.write(text.toCharArray(), 10, text.length() - 10);
+		assertEquals(text, writer.toString());
+		assertEquals(text.getBytes(StandardCharsets.UTF_8).length, writer.length());
+	}
+
+	@Test
+	public void testUnpairedSurrogate() {
+		final String text = "a\uD83Db\uDE00c";
+		final BufferWriter writer = new BufferWriter();
+		writer.write(text);
+		assertEquals(new String(text.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8), writer.toString());
+	}
+
+}
@@ -0,0 +1,34 @@
+package fr.wseduc.webutils.http.response;
+
+import io.vertx.core.json.JsonObject;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class EncodedJsonTest {
+
+	@Test
+	public void testEncoding() throws IOException {
+		final JsonObject json = new JsonObject().put("hello", "Bonjour {0}").put("élève", "Élève");
+		final EncodedJson encoded = new EncodedJson(json);
+		assertEquals(json, new JsonObject(encoded.buffer()));
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(encoded.gzipped().getBytes()))) {
+			final byte[] bytes = new byte[1024];
+			for (int n = in.read(bytes); n >= 0; n = in.read(bytes)) {
+				out.write(bytes, 0, n);
+			}
+		}
+		assertEquals(json, new JsonObject(out.toString("UTF-8")));
+		assertEquals(encoded.etag(), new EncodedJson(json.copy()).etag());
+		assertNotEquals(encoded.etag(), new EncodedJson(json.copy().put("a", "b")).etag());
+		assertNotEquals(encoded.etag(), encoded.gzippedEtag());
+	}
+
+}
@@ -0,0 +1,46 @@
+package fr.wseduc.webutils.metrics;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.vertx.core.json.JsonObject;
+import io.vertx.micrometer.MicrometerMetricsOptions;
+import io.vertx.micrometer.backends.BackendRegistries;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class RouteMetricsRecorderTest {
+
+    private MeterRegistry registry;
+
+    @Before
+    public void setUp() {
+        registry = new SimpleMeterRegistry();
+        BackendRegistries.setupBackend(new MicrometerMetricsOptions().setEnabled(true).setMicrometerRegistry(registry));
+    }
+
+    @After
+    public void tearDown() {
+        BackendRegistries.stop(MicrometerMetricsOptions.DEFAULT_REGISTRY_NAME);
+    }
+
+    @Test
+    public void testInFlightSharedByInstances() {
+        final RouteMetricsRecorder.Configuration configuration =
+                RouteMetricsRecorder.Configuration.fromJson("test", new JsonObject());
+        final RouteMetricsRecorder first = new RouteMetricsRecorder(configuration, "Controller|inflight");
+        final RouteMetricsRecorder second = new RouteMetricsRecorder(configuration, "Controller|inflight");
+        first.onHandlerStart();
+        second.onHandlerStart();
+        second.onHandlerStart();
+        final Gauge gauge = registry.get("http.route.inflight").tag("route", "Controller|inflight").gauge();
+        assertEquals(1, registry.find("http.route.inflight").tag("route", "Controller|inflight").gauges().size());
+        assertEquals(3.0, gauge.value(), 0.0);
+        first.onHandlerEnd(1000L, 200);
+        assertEquals(2.0, gauge.value(), 0.0);
+    }
+
+}
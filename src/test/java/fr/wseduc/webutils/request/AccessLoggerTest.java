@@ -0,0 +1,61 @@
+package fr.wseduc.webutils.request;
+
+import fr.wseduc.webutils.security.SecureHttpServerRequest;
+import io.vertx.core.MultiMap;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.json.JsonObject;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.time.Instant;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+public class AccessLoggerTest {
+
+	private static HttpServerRequest request(String query) {
+		final MultiMap headers = MultiMap.caseInsensitiveMultiMap()
+				.add("X-Forwarded-For", "10.0.0.1").add("User-Agent", "Mozilla \"5.0\"");
+		return (HttpServerRequest) Proxy.newProxyInstance(AccessLoggerTest.class.getClassLoader(),
+				new Class<?>[]{HttpServerRequest.class}, (proxy, method, args) -> {
+					switch (method.getName()) {
+						case "headers": return headers;
+						case "method": return HttpMethod.GET;
+						case "path": return "/auth/login";
+						case "query": return query;
+						default: return null;
+					}
+				});
+	}
+
+	private static String format(AccessLogger logger, HttpServerRequest request) {
+		final StringBuilder sb = new StringBuilder();
+		logger.format(new AccessLogRecord(logger, request), sb);
+		return sb.toString();
+	}
+
+	@Test
+	public void testTextFormat() {
+		final AccessLogger logger = new AccessLogger();
+		for (HttpServerRequest request : new HttpServerRequest[]{request("a=b"), request(null),
+				new SecureHttpServerRequest(request("c=d"))}) {
+			assertEquals(logger.formatLog(request, null), format(logger, request));
+		}
+	}
+
+	@Test
+	public void testJsonFormat() {
+		final AccessLoggerJson logger = new AccessLoggerJson();
+		for (HttpServerRequest request : new HttpServerRequest[]{request("a=b"), request(null),
+				new SecureHttpServerRequest(request("c=d"))}) {
+			final JsonObject expected = new JsonObject(logger.formatLog(request, null));
+			final JsonObject actual = new JsonObject(format(logger, request));
+			assertNotNull(Instant.parse((String) actual.remove("timestamp")));
+			expected.remove("timestamp");
+			assertEquals(expected.encode(), actual.encode());
+		}
+	}
+
+}
@@ -0,0 +1,61 @@
+package fr.wseduc.webutils.request;
+
+import fr.wseduc.webutils.security.HmacSha1;
+import fr.wseduc.webutils.security.SecureHttpServerRequest;
+import io.vertx.core.MultiMap;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.logging.LoggerFactory;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class CookieHelperTest {
+
+	private static final String KEY = "secret";
+
+	private static SecureHttpServerRequest request(String cookie) {
+		final MultiMap headers = MultiMap.caseInsensitiveMultiMap().add("Cookie", cookie);
+		return new SecureHttpServerRequest((HttpServerRequest) Proxy.newProxyInstance(
+				CookieHelperTest.class.getClassLoader(), new Class<?>[]{HttpServerRequest.class},
+				(proxy, method, args) -> "headers".equals(method.getName()) ? headers : null));
+	}
+
+	private static String signed(String name, String value) throws Exception {
+		return name + "=" + value + ":" + HmacSha1.sign(null + name + "/" + value, KEY);
+	}
+
+	@Before
+	public void setUp() {
+		CookieHelper.getInstance().init(KEY, LoggerFactory.getLogger(CookieHelperTest.class));
+	}
+
+	@Test
+	public void testGetSigned() throws Exception {
+		final SecureHttpServerRequest request = request(signed("oneSessionId", "abc") + "; other=1");
+		for (int i = 0; i < 3; i++) {
+			assertEquals("abc", CookieHelper.getInstance().getSigned("oneSessionId", request));
+		}
+		assertEquals("1", CookieHelper.get("other", request));
+		final CookieJar jar = request.getCookieJar();
+		CookieHelper.getInstance().getSigned("oneSessionId", request);
+		assertSame(jar, request.getCookieJar());
+
+		request.headers().set("Cookie", signed("oneSessionId", "def"));
+		assertEquals("def", CookieHelper.getInstance().getSigned("oneSessionId", request));
+	}
+
+	@Test
+	public void testInvalidSignature() throws Exception {
+		final String cookie = signed("oneSessionId", "abc");
+		assertEquals("abc", CookieHelper.getInstance().getSigned("oneSessionId", request(cookie)));
+		assertNull(CookieHelper.getInstance().getSigned("oneSessionId", request(cookie.replace("abc", "abd"))));
+		CookieHelper.getInstance().init("other", LoggerFactory.getLogger(CookieHelperTest.class));
+		assertNull(CookieHelper.getInstance().getSigned("oneSessionId", request(cookie)));
+	}
+
+}
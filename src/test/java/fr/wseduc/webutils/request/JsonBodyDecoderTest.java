@@ -0,0 +1,82 @@
+package fr.wseduc.webutils.request;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.json.jackson.DatabindCodec;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class JsonBodyDecoderTest {
+
+	private static final String SCRIPT = "<script>alert(1)</script>";
+
+	private static <T> T decode(JsonBodyDecoder<T> decoder, String body, int chunkSize) {
+		final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		for (int i = 0; i < bytes.length; i += chunkSize) {
+			decoder.feed(Buffer.buffer().appendBytes(bytes, i, Math.min(chunkSize, bytes.length - i)));
+		}
+		return decoder.end();
+	}
+
+	@Test
+	public void testJsonObject() {
+		final String body = new JsonObject()
+				.put("name", "élève" + SCRIPT)
+				.put("count", 3).put("big", 12345678901L).put("ratio", 0.5).put("ok", true).putNull("none")
+				.put("nested", new JsonObject().put("list", new JsonArray().add(SCRIPT + "a").add(1).add(new JsonObject())))
+				.encode();
+		for (int chunkSize : new int[]{1, 3, 7, body.length()}) {
+			final JsonObject json = decode(JsonBodyDecoder.jsonObject(), body, chunkSize);
+			assertEquals(new JsonObject(body.replace(SCRIPT, "")), new JsonObject(json.getMap()));
+			assertEquals("a", json.getJsonObject("nested").getJsonArray("list").getString(0));
+		}
+	}
+
+	@Test
+	public void testJsonArray() {
+		final JsonArray json = decode(JsonBodyDecoder.jsonArray(), "[\"a\", {\"b\" : [\"" + SCRIPT + "c\"]}]", 2);
+		assertEquals(new JsonArray().add("a").add(new JsonObject().put("b", new JsonArray().add("c"))),
+				new JsonArray(json.getList()));
+	}
+
+	@Test
+	public void testValue() {
+		final Map<String, List<String>> value = decode(JsonBodyDecoder.value(DatabindCodec.mapper().getTypeFactory()
+				.constructType(new TypeReference<Map<String, List<String>>>() {}), null),
+				"{\"a\" : [\"" + SCRIPT + "b\", \"c\"]}", 4);
+		assertEquals(Arrays.asList("b", "c"), value.get("a"));
+		assertNull(decode(JsonBodyDecoder.value(DatabindCodec.mapper().getTypeFactory().constructType(String.class),
+				() -> null), "", 1));
+	}
+
+	@Test(expected = DecodeException.class)
+	public void testTrailingToken() {
+		decode(JsonBodyDecoder.jsonObject(), "{} {}", 1);
+	}
+
+	@Test(expected = DecodeException.class)
+	public void testTruncatedBody() {
+		decode(JsonBodyDecoder.jsonObject(), "{\"a\" : [1, 2", 3);
+	}
+
+	@Test(expected = DecodeException.class)
+	public void testEmptyBody() {
+		decode(JsonBodyDecoder.jsonObject(), "", 1);
+	}
+
+	@Test(expected = DecodeException.class)
+	public void testUnexpectedType() {
+		decode(JsonBodyDecoder.jsonObject(), "[1]", 1);
+	}
+
+}
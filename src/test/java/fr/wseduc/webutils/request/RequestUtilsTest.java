@@ -0,0 +1,44 @@
+package fr.wseduc.webutils.request;
+
+import fr.wseduc.webutils.security.SecureHttpServerRequest;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.json.JsonObject;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+
+public class RequestUtilsTest {
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testBodyReadAgainAfterDecode() {
+		final String body = new JsonObject().put("name", "value").encode();
+		final AtomicInteger reads = new AtomicInteger();
+		final HttpServerRequest request = (HttpServerRequest) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[]{HttpServerRequest.class}, (proxy, method, args) -> {
+					if ("bodyHandler".equals(method.getName())) {
+						reads.incrementAndGet();
+						((Handler<Buffer>) args[0]).handle(Buffer.buffer(body));
+					}
+					final Class<?> type = method.getReturnType();
+					if (type == HttpServerRequest.class) return proxy;
+					if (type == boolean.class) return false;
+					return null;
+				});
+		final SecureHttpServerRequest secured = new SecureHttpServerRequest(request);
+		final AtomicReference<JsonObject> json = new AtomicReference<>();
+		RequestUtils.bodyToJson(secured, json::set);
+		assertEquals("value", json.get().getString("name"));
+		final AtomicReference<Buffer> buffer = new AtomicReference<>();
+		secured.bodyHandler(buffer::set);
+		assertEquals(body, buffer.get().toString());
+		assertEquals(1, reads.get());
+	}
+
+}
@@ -0,0 +1,154 @@
+package fr.wseduc.webutils.request.filter;
+
+import fr.wseduc.webutils.metrics.IBasicAuthMetricsRecorder;
+import fr.wseduc.webutils.security.SecureHttpServerRequest;
+import io.vertx.core.Handler;
+import io.vertx.core.MultiMap;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServerRequest;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AbstractBasicFilterTest {
+
+	private static final class TestFilter extends AbstractBasicFilter {
+		private final List<Handler<String>> pending = new ArrayList<>();
+		private final AtomicInteger calls = new AtomicInteger();
+		private volatile String mode = "sync";
+
+		@Override
+		protected void validateClientScope(String clientId, String secret, Handler<String> handler) {
+			calls.incrementAndGet();
+			switch (mode) {
+				case "throw":
+					throw new IllegalStateException("backend");
+				case "async":
+					pending.add(handler);
+					break;
+				case "never":
+					break;
+				default:
+					handler.handle("secret".equals(secret) ? "scope" : null);
+			}
+		}
+	}
+
+	private static final class CountingRecorder implements IBasicAuthMetricsRecorder {
+		private final AtomicInteger hits = new AtomicInteger();
+		private final AtomicInteger misses = new AtomicInteger();
+		private final AtomicInteger validations = new AtomicInteger();
+
+		@Override
+		public void onCacheHit() {
+			hits.incrementAndGet();
+		}
+
+		@Override
+		public void onCacheMiss() {
+			misses.incrementAndGet();
+		}
+
+		@Override
+		public void onValidation(long durationInNanos, boolean granted) {
+			validations.incrementAndGet();
+		}
+	}
+
+	private static SecureHttpServerRequest request(String clientId, String secret) {
+		final MultiMap headers = MultiMap.caseInsensitiveMultiMap().add("Authorization", "Basic " +
+				Base64.getEncoder().encodeToString((clientId + ":" + secret).getBytes(StandardCharsets.UTF_8)));
+		return new SecureHttpServerRequest((HttpServerRequest) Proxy.newProxyInstance(
+				AbstractBasicFilterTest.class.getClassLoader(), new Class<?>[]{HttpServerRequest.class},
+				(proxy, method, args) -> {
+					if (method.getReturnType() == MultiMap.class) return headers;
+					if (method.getReturnType() == HttpServerRequest.class) return proxy;
+					return null;
+				}));
+	}
+
+	private static List<Boolean> validate(AbstractBasicFilter filter, SecureHttpServerRequest request) {
+		final List<Boolean> results = new ArrayList<>();
+		filter.validate(request, results::add);
+		return results;
+	}
+
+	@Test
+	public void testCacheAndMetrics() {
+		final TestFilter filter = new TestFilter();
+		final CountingRecorder recorder = new CountingRecorder();
+		filter.enableCredentialsCache(60000L, 10).setMetricsRecorder(recorder);
+		final SecureHttpServerRequest request = request("app", "secret");
+		assertEquals(Boolean.TRUE, validate(filter, request).get(0));
+		assertEquals("scope", request.getAttribute("scope"));
+		assertEquals(Boolean.TRUE, validate(filter, request("app", "secret")).get(0));
+		assertEquals(Boolean.FALSE, validate(filter, request("app", "wrong")).get(0));
+		assertEquals(Boolean.FALSE, validate(filter, request("app", "wrong")).get(0));
+		assertEquals(3, filter.calls.get());
+		assertEquals(1, recorder.hits.get());
+		assertEquals(3, recorder.misses.get());
+		assertEquals(3, recorder.validations.get());
+	}
+
+	@Test
+	public void testConcurrentValidationsAreCoalesced() {
+		final TestFilter filter = new TestFilter();
+		filter.enableCredentialsCache(60000L, 10);
+		filter.mode = "async";
+		final List<Boolean> first = validate(filter, request("app", "secret"));
+		final List<Boolean> second = validate(filter, request("app", "secret"));
+		assertTrue(first.isEmpty() && second.isEmpty());
+		assertEquals(1, filter.calls.get());
+		filter.pending.get(0).handle("scope");
+		assertEquals(Boolean.TRUE, first.get(0));
+		assertEquals(Boolean.TRUE, second.get(0));
+	}
+
+	@Test
+	public void testFailedValidationIsNotShared() {
+		final TestFilter filter = new TestFilter();
+		filter.enableCredentialsCache(60000L, 10);
+		filter.mode = "throw";
+		assertEquals(Boolean.FALSE, validate(filter, request("app", "secret")).get(0));
+		filter.mode = "sync";
+		assertEquals(Boolean.TRUE, validate(filter, request("app", "secret")).get(0));
+		assertEquals(2, filter.calls.get());
+	}
+
+	@Test
+	public void testValidationTimeout() throws Exception {
+		final Vertx vertx = Vertx.vertx();
+		try {
+			final TestFilter filter = new TestFilter();
+			filter.enableCredentialsCache(60000L, 10, 50L);
+			filter.mode = "never";
+			final CompletableFuture<Boolean> first = new CompletableFuture<>();
+			final CompletableFuture<Boolean> second = new CompletableFuture<>();
+			vertx.runOnContext(v -> {
+				filter.validate(request("app", "secret"), first::complete);
+				filter.validate(request("app", "secret"), second::complete);
+			});
+			assertFalse(first.get(5, TimeUnit.SECONDS));
+			assertFalse(second.get(5, TimeUnit.SECONDS));
+			filter.mode = "sync";
+			final CompletableFuture<Boolean> third = new CompletableFuture<>();
+			vertx.runOnContext(v -> filter.validate(request("app", "secret"), third::complete));
+			assertTrue(third.get(5, TimeUnit.SECONDS));
+			assertEquals(2, filter.calls.get());
+		} finally {
+			vertx.close();
+		}
+	}
+
+}
@@ -0,0 +1,106 @@
+package fr.wseduc.webutils.request.filter;
+
+import io.vertx.core.Handler;
+import io.vertx.core.MultiMap;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.impl.ContextInternal;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead of the security filters chain per request against the number of filters granting the access,
+ * with filters answering through their callback or inline.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SecurityHandlerBenchmark {
+
+	@Param({"1", "2", "4", "8", "16"})
+	private int filters;
+
+	@Param({"async", "sync"})
+	private String kind;
+
+	private HttpServerRequest request;
+	private SecurityHandler handler;
+	private Blackhole blackhole;
+	private Vertx vertx;
+	private ContextInternal context;
+	private ContextInternal previous;
+
+	private static final class GrantFilter implements Filter {
+		@Override
+		public void canAccess(HttpServerRequest request, Handler<Boolean> handler) {
+			handler.handle(true);
+		}
+
+		@Override
+		public void deny(HttpServerRequest request) {
+		}
+	}
+
+	private static final class SyncGrantFilter implements SyncFilter {
+		@Override
+		public boolean canAccess(HttpServerRequest request) {
+			return true;
+		}
+
+		@Override
+		public void deny(HttpServerRequest request) {
+		}
+	}
+
+	@Setup
+	public void setup(Blackhole blackhole) {
+		this.blackhole = blackhole;
+		vertx = Vertx.vertx();
+		// the handler stores the trace time in the context of the request
+		context = (ContextInternal) vertx.getOrCreateContext();
+		previous = context.beginDispatch();
+		request = (HttpServerRequest) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[]{HttpServerRequest.class}, (proxy, method, args) -> {
+					final Class<?> type = method.getReturnType();
+					if (type == HttpServerRequest.class) return proxy;
+					if (type == MultiMap.class) return MultiMap.caseInsensitiveMultiMap();
+					if (type == boolean.class) return false;
+					return null;
+				});
+		SecurityHandler.chain.clear();
+		for (int i = 0; i < filters; i++) {
+			SecurityHandler.chain.add("sync".equals(kind) ? new SyncGrantFilter() : new GrantFilter());
+		}
+		handler = new SecurityHandler() {
+			@Override
+			public void filter(HttpServerRequest request) {
+				SecurityHandlerBenchmark.this.blackhole.consume(request);
+			}
+		};
+	}
+
+	@TearDown
+	public void tearDown() {
+		context.endDispatch(previous);
+		vertx.close();
+	}
+
+	@Benchmark
+	public void chain() {
+		handler.handle(request);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(SecurityHandlerBenchmark.class.getSimpleName()).build()).run();
+	}
+
+}
@@ -0,0 +1,105 @@
+package fr.wseduc.webutils.request.filter;
+
+import io.vertx.core.MultiMap;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServerRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class SecurityHandlerTest {
+
+	private Vertx vertx;
+	private List<Filter> saved;
+	private HttpServerRequest request;
+
+	private static final class AccessFilter implements SyncFilter {
+		private final boolean access;
+
+		private AccessFilter(boolean access) {
+			this.access = access;
+		}
+
+		@Override
+		public boolean canAccess(HttpServerRequest request) {
+			return access;
+		}
+
+		@Override
+		public void deny(HttpServerRequest request) {
+		}
+	}
+
+	private static final class Handler extends SecurityHandler {
+		private final CompletableFuture<Boolean> granted = new CompletableFuture<>();
+
+		@Override
+		protected void filterChainEnd(HttpServerRequest request, long durationInNanos, boolean granted) {
+			this.granted.complete(granted);
+		}
+
+		@Override
+		public void filter(HttpServerRequest request) {
+		}
+
+		private void addToChain(Filter filter) {
+			chain.add(filter);
+		}
+	}
+
+	@Before
+	public void setUp() {
+		vertx = Vertx.vertx();
+		saved = new ArrayList<>(SecurityHandler.chain);
+		SecurityHandler.clearFilters();
+		request = (HttpServerRequest) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[]{HttpServerRequest.class}, (proxy, method, args) -> {
+					final Class<?> type = method.getReturnType();
+					if (type == HttpServerRequest.class) return proxy;
+					if (type == MultiMap.class) return MultiMap.caseInsensitiveMultiMap();
+					if (type == boolean.class) return false;
+					return null;
+				});
+	}
+
+	@After
+	public void tearDown() {
+		SecurityHandler.clearFilters();
+		SecurityHandler.chain.addAll(saved);
+		vertx.close();
+	}
+
+	@Test
+	public void testChainModifiedBySubclassIsApplied() throws Exception {
+		final Handler denying = new Handler();
+		denying.addToChain(new AccessFilter(false));
+		assertEquals(false, handle(denying));
+		SecurityHandler.clearFilters();
+		final Handler granting = new Handler();
+		granting.addToChain(new AccessFilter(true));
+		assertEquals(true, handle(granting));
+	}
+
+	@Test
+	public void testAccessLoggerFilterIsInline() throws Exception {
+		final Handler handler = new Handler();
+		// the access logger never calls back, the chain goes on anyway
+		handler.addToChain(new AccessLoggerFilter((request, h) -> {}));
+		handler.addToChain(new AccessFilter(true));
+		assertEquals(true, handle(handler));
+	}
+
+	private boolean handle(Handler handler) throws Exception {
+		vertx.runOnContext(v -> handler.handle(request));
+		return handler.granted.get(5, TimeUnit.SECONDS);
+	}
+
+}
@@ -0,0 +1,99 @@
+package fr.wseduc.webutils.security;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Verification of RS256, ES256 and HS256 tokens, and of a HS256 token already verified by a JWT instance.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JWTBenchmark {
+
+	private static final String SECRET = "benchmark-secret";
+
+	private Vertx vertx;
+	private JWT jwt;
+	private PublicKey rsaKey;
+	private PublicKey ecKey;
+	private String rs256;
+	private String es256;
+	private String hs256;
+
+	private static String sign(String alg, String algorithm, PrivateKey privateKey, JsonObject payload) throws Exception {
+		final String input = JWT.base64Encode(new JsonObject().put("typ", "JWT").put("alg", alg).put("kid", "key").encode()) +
+				"." + JWT.base64Encode(payload.encode());
+		final Signature signature = Signature.getInstance(algorithm);
+		signature.initSign(privateKey);
+		signature.update(input.getBytes("UTF-8"));
+		return input + "." + JWT.base64Encode(signature.sign());
+	}
+
+	@Setup
+	public void setup() throws Exception {
+		final JsonObject payload = new JsonObject().put("sub", "1234567890").put("aud", "client")
+				.put("exp", System.currentTimeMillis() / 1000 + 3600);
+		final KeyPairGenerator rsa = KeyPairGenerator.getInstance("RSA");
+		rsa.initialize(2048);
+		final KeyPair rsaPair = rsa.generateKeyPair();
+		rsaKey = rsaPair.getPublic();
+		rs256 = sign("RS256", "SHA256withRSA", rsaPair.getPrivate(), payload);
+		final KeyPairGenerator ec = KeyPairGenerator.getInstance("EC");
+		ec.initialize(new ECGenParameterSpec("secp256r1"));
+		final KeyPair ecPair = ec.generateKeyPair();
+		ecKey = ecPair.getPublic();
+		es256 = sign("ES256", "SHA256withECDSAinP1363Format", ecPair.getPrivate(), payload);
+		vertx = Vertx.vertx();
+		jwt = new JWT(vertx, SECRET, null);
+		hs256 = jwt.encodeAndSignHmac(payload);
+	}
+
+	@TearDown
+	public void tearDown() {
+		vertx.close();
+	}
+
+	@Benchmark
+	public JsonObject verifyRS256() {
+		return JWT.verifyAndGet(rs256, rsaKey);
+	}
+
+	@Benchmark
+	public JsonObject verifyES256() {
+		return JWT.verifyAndGet(es256, ecKey);
+	}
+
+	@Benchmark
+	public JsonObject verifyHS256() {
+		return JWT.verifyAndGet(hs256, SECRET);
+	}
+
+	@Benchmark
+	public JsonObject verifyHS256Cached() {
+		final AtomicReference<JsonObject> result = new AtomicReference<>();
+		jwt.verifyAndGet(hs256, result::set);
+		return result.get();
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(JWTBenchmark.class.getSimpleName()).build()).run();
+	}
+
+}
@@ -0,0 +1,66 @@
+package fr.wseduc.webutils.security;
+
+import io.vertx.core.MultiMap;
+import io.vertx.core.http.HttpServerRequest;
+import org.junit.After;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class XssHttpServerRequestTest {
+
+	private static final String SCRIPT = "<script>alert(1)</script>";
+
+	private static HttpServerRequest request(MultiMap params, MultiMap headers) {
+		return (HttpServerRequest) Proxy.newProxyInstance(XssHttpServerRequestTest.class.getClassLoader(),
+				new Class<?>[]{HttpServerRequest.class}, (proxy, method, args) -> {
+					switch (method.getName()) {
+						case "params": return params;
+						case "headers": return headers;
+						case "formAttributes": return MultiMap.caseInsensitiveMultiMap();
+						default: return null;
+					}
+				});
+	}
+
+	@After
+	public void tearDown() {
+		XSSUtils.setUnfilteredHeaders(Collections.emptyList());
+	}
+
+	@Test
+	public void testLazySanitization() {
+		final MultiMap params = MultiMap.caseInsensitiveMultiMap()
+				.add("name", "a" + SCRIPT).add("name", "b").add("other", SCRIPT + "c");
+		final HttpServerRequest request = new XssHttpServerRequest(request(params, MultiMap.caseInsensitiveMultiMap()));
+		assertEquals("a", request.getParam("name"));
+		assertEquals(Arrays.asList("a", "b"), request.params().getAll("name"));
+		assertSame(request.params().getAll("name"), request.params().getAll("name"));
+		assertEquals(Arrays.asList("a", "b"), request.params().getAll("NAME"));
+		assertSame(request.params(), request.params());
+		// the request values are left untouched
+		assertEquals("a" + SCRIPT, params.get("name"));
+		assertEquals(SCRIPT + "c", params.get("other"));
+		assertEquals("c", request.params().entries().get(2).getValue());
+
+		request.params().set("name", SCRIPT + "d");
+		assertEquals("d", request.getParam("name"));
+	}
+
+	@Test
+	public void testUnfilteredHeaders() {
+		XSSUtils.setUnfilteredHeaders(Arrays.asList("Authorization"));
+		final MultiMap headers = MultiMap.caseInsensitiveMultiMap()
+				.add("Authorization", "Bearer " + SCRIPT).add("X-Test", "x" + SCRIPT);
+		final HttpServerRequest request = new XssSecuredHttpServerRequest(request(MultiMap.caseInsensitiveMultiMap(), headers));
+		assertEquals("Bearer " + SCRIPT, request.getHeader("authorization"));
+		assertEquals("x", request.getHeader("X-Test"));
+		assertEquals("x", request.headers().get("x-test"));
+	}
+
+}
@@ -5,12 +5,15 @@ import io.vertx.codegen.annotations.Nullable;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.MultiMap;
+import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.*;
+import io.vertx.core.json.JsonObject;
 import io.vertx.core.net.HostAndPort;
 import io.vertx.core.net.NetSocket;
 import io.vertx.core.net.SocketAddress;
 
+import fr.wseduc.webutils.security.SecureHttpServerRequest;
 import org.junit.Test;
 
 import javax.net.ssl.SSLPeerUnverifiedException;
@@ -19,7 +22,11 @@ import javax.security.cert.X509Certificate;
 import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -46,6 +53,47 @@ public class DefaultOAuthResourceProviderTest {
 
 
 
+  @Test
+  public void testIntrospectionCache() throws Exception {
+    final Vertx vertx = Vertx.vertx();
+    try {
+      final AtomicInteger lookups = new AtomicInteger();
+      vertx.eventBus().<JsonObject>consumer("wse.oauth", message -> {
+        lookups.incrementAndGet();
+        final String authorization = message.body().getJsonObject("headers").getString("Authorization");
+        message.reply("Bearer good".equals(authorization) ?
+          new JsonObject().put("status", "ok").put("client_id", "c").put("remote_user", "u").put("scope", "s") :
+          new JsonObject().put("status", "error"));
+      });
+      final DefaultOAuthResourceProvider cached =
+        new DefaultOAuthResourceProvider(vertx.eventBus(), new JsonObject().put("enabled", true));
+
+      final CompletableFuture<Boolean> first = validToken(cached, "Bearer good");
+      final CompletableFuture<Boolean> second = validToken(cached, "Bearer good");
+      assertTrue(first.get(5, TimeUnit.SECONDS));
+      assertTrue(second.get(5, TimeUnit.SECONDS));
+      assertTrue(validToken(cached, "Basic tata, Bearer good").get(5, TimeUnit.SECONDS));
+      assertFalse(validToken(cached, "Bearer bad").get(5, TimeUnit.SECONDS));
+      assertFalse(validToken(cached, "Bearer bad").get(5, TimeUnit.SECONDS));
+      assertEquals("Concurrent and repeated lookups of a token should reach the event bus once", 2, lookups.get());
+
+      vertx.eventBus().publish(DefaultOAuthResourceProvider.OAUTH_INVALIDATION_ADDRESS, new JsonObject().put("remote_user", "u"));
+      for (int i = 0; i < 50 && lookups.get() < 3; i++) {
+        assertTrue(validToken(cached, "Bearer good").get(5, TimeUnit.SECONDS));
+        Thread.sleep(10);
+      }
+      assertEquals("An invalidated token should be looked up again", 3, lookups.get());
+    } finally {
+      vertx.close();
+    }
+  }
+
+  private static CompletableFuture<Boolean> validToken(DefaultOAuthResourceProvider provider, String authorization) {
+    final CompletableFuture<Boolean> result = new CompletableFuture<>();
+    provider.validToken(new SecureHttpServerRequest(new DummyRequest(authorization)), result::complete);
+    return result;
+  }
+
   private static class DummyRequest implements HttpServerRequest {
     private final MultiMap headers;
 
@@ -200,7 +248,7 @@ public class DefaultOAuthResourceProviderTest {
     }
     @Override
     public MultiMap params() {
-            throw new UnsupportedOperationException("Unimplemented method 'params'");
+            return MultiMap.caseInsensitiveMultiMap();
     }
     @Override
     public String path() {
@@ -208,7 +256,7 @@ public class DefaultOAuthResourceProviderTest {
     }
     @Override
     public HttpServerRequest pause() {
-            throw new UnsupportedOperationException("Unimplemented method 'pause'");
+            return this;
     }
     @Override
     public X509Certificate[] peerCertificateChain() throws SSLPeerUnverifiedException {
@@ -234,7 +282,7 @@ public class DefaultOAuthResourceProviderTest {
     }
     @Override
     public HttpServerRequest resume() {
-            throw new UnsupportedOperationException("Unimplemented method 'resume'");
+            return this;
     }
     @Override
     public String scheme() {
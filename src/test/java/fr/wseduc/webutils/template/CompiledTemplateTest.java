@@ -0,0 +1,60 @@
+package fr.wseduc.webutils.template;
+
+import com.samskivert.mustache.Mustache;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CompiledTemplateTest {
+
+	private static CompiledTemplate compile(TemplateProcessor processor, String template, boolean escapeHTML) {
+		final AtomicReference<CompiledTemplate> compiled = new AtomicReference<>();
+		processor.compileTemplate(template, escapeHTML,
+				Collections.singletonMap("upper", (Mustache.Lambda) (frag, out) -> out.write(frag.execute().toUpperCase())),
+				compiled::set);
+		return compiled.get();
+	}
+
+	@Test
+	public void testLambdasAreFixed() {
+		final TemplateProcessor processor = new TemplateProcessor()
+				.setLambda("wrap", (frag, out) -> out.write("[" + frag.execute() + "]"));
+		final CompiledTemplate template = compile(processor, "{{#wrap}}{{#upper}}a{{/upper}}{{name}}{{/wrap}}", true);
+		processor.setLambda("wrap", (frag, out) -> out.write("(" + frag.execute() + ")"));
+		assertEquals("[A&lt;b&gt;]", template.render(new JsonObject().put("name", "<b>")));
+		assertEquals("<B>", compile(processor, "{{#upper}}{{name}}{{/upper}}", false).render(new JsonObject().put("name", "<b>")));
+		assertEquals("&lt;b&gt;", processor.compiler.compile("{{name}}").execute(Collections.singletonMap("name", "<b>")));
+	}
+
+	@Test
+	public void testRenderAll() throws Exception {
+		final Vertx vertx = Vertx.vertx();
+		try {
+			final CompiledTemplate template = compile(new TemplateProcessor(), "{{#upper}}{{name}}{{/upper}}-{{#items}}{{.}}{{/items}}", true);
+			final List<JsonObject> params = new ArrayList<>();
+			for (int i = 0; i < 200; i++) {
+				params.add(new JsonObject().put("name", "user" + i).put("items", i % 2 == 0 ? "x" : null));
+			}
+			final List<Future<String>> bodies = template.renderAll(vertx, params);
+			assertEquals(200, bodies.size());
+			Future.all(bodies).toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS);
+			for (int i = 0; i < 200; i++) {
+				assertEquals("USER" + i + "-" + (i % 2 == 0 ? "x" : ""), bodies.get(i).result());
+			}
+			assertTrue(template.renderAll(vertx, Collections.emptyList()).isEmpty());
+		} finally {
+			vertx.close();
+		}
+	}
+
+}
@@ -0,0 +1,60 @@
+package fr.wseduc.webutils.template;
+
+import com.samskivert.mustache.Mustache;
+import com.samskivert.mustache.Template;
+import io.vertx.core.Vertx;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class TemplateCacheTest {
+
+	private Vertx vertx;
+	private File root;
+
+	@Before
+	public void setUp() throws Exception {
+		vertx = Vertx.vertx();
+		root = Files.createTempDirectory("templates").toFile();
+		for (String folder : new String[]{"a", "b"}) {
+			final File dir = new File(root, folder);
+			dir.mkdirs();
+			Files.write(new File(dir, "t.html").toPath(), "{{name}}".getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	@After
+	public void tearDown() {
+		TemplateCache.getInstance().clear();
+		vertx.close();
+	}
+
+	@Test
+	public void testClearFolder() throws Exception {
+		final Mustache.Compiler compiler = Mustache.compiler().withCollector(JsonCollector.INSTANCE);
+		final String a = root.getAbsolutePath() + "/a/";
+		final String b = root.getAbsolutePath() + "/b/";
+		final Template templateA = get(a + "t.html", compiler);
+		final Template templateB = get(b + "t.html", compiler);
+		assertSame(templateA, get(a + "t.html", compiler));
+		TemplateCache.getInstance().clear(a);
+		assertSame(templateB, get(b + "t.html", compiler));
+		assertNotSame(templateA, get(a + "t.html", compiler));
+	}
+
+	private Template get(String path, Mustache.Compiler compiler) throws Exception {
+		final CompletableFuture<Template> future = new CompletableFuture<>();
+		TemplateCache.getInstance().getTemplate(vertx, path, compiler, future::complete);
+		return future.get(5, TimeUnit.SECONDS);
+	}
+
+}
@@ -0,0 +1,85 @@
+package fr.wseduc.webutils.template;
+
+import com.samskivert.mustache.Mustache;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class TemplateProcessorTest {
+
+	private static Mustache.Lambda constant(final String value) {
+		return (frag, out) -> out.write(value + ":" + frag.execute());
+	}
+
+	private static String render(TemplateProcessor processor, String template, JsonObject params) {
+		final AtomicReference<String> result = new AtomicReference<>();
+		processor.processTemplate(template, params, result::set);
+		return result.get();
+	}
+
+	@Test
+	public void testJsonContext() {
+		final JsonObject params = new JsonObject()
+				.put("name", "Élève")
+				.put("user", new JsonObject().put("login", "jdoe").put("groups", new JsonArray().add("a").add("b")))
+				.put("items", new JsonArray().add(new JsonObject().put("v", 1)).add(new JsonObject().put("v", 2)))
+				.put("empty", new JsonArray());
+		final String result = render(new TemplateProcessor(),
+				"{{name}} {{user.login}} {{#user}}{{login}}{{#groups}}-{{.}}{{/groups}}{{/user}} " +
+				"{{#items}}{{v}}{{name}}{{/items}}{{^empty}}none{{/empty}}{{missing}}", params);
+		assertEquals("Élève jdoe jdoe-a-b 1Élève2Élèvenone", result);
+	}
+
+	@Test
+	public void testLambdaReadsContext() {
+		final TemplateProcessor processor = new TemplateProcessor().setLambda("login", (frag, out) -> {
+			final TemplateContext context = (TemplateContext) frag.context();
+			out.write(context.getParams().getString("login") + ":" + (context.get("login") instanceof Mustache.Lambda));
+		});
+		assertEquals("jdoe:true", render(processor, "{{#login}}x{{/login}}", new JsonObject().put("login", "jdoe")));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testContextIsReadOnlyMap() {
+		final TemplateProcessor processor = new TemplateProcessor().setLambda("check", (frag, out) -> {
+			final Map<String, Object> context = (Map<String, Object>) frag.context();
+			final Map<String, Object> user = (Map<String, Object>) context.get("user");
+			out.write(user.get("login") + ":" + context.containsKey("missing") + ":" + context.size());
+			try {
+				context.put("other", "value");
+				out.write(":modified");
+			} catch (UnsupportedOperationException e) {
+				out.write(":read-only");
+			}
+		});
+		assertEquals("jdoe:false:3:read-only", render(processor, "{{#check}}x{{/check}}",
+				new JsonObject().put("user", new JsonObject().put("login", "jdoe")).put("name", "n")));
+	}
+
+	@Test
+	public void testProcessorsShareCollector() {
+		assertSame(new TemplateProcessor().compiler.collector, new FileTemplateProcessor(null, "view").compiler.collector);
+	}
+
+	@Test
+	public void testRequestLambdasAreScoped() {
+		final TemplateProcessor processor = new TemplateProcessor()
+				.setLambda("i18n", constant("shared"))
+				.setLambda("static", constant("static"));
+		final JsonObject params = new JsonObject().put("i18n", "param").put("key", "k");
+		final AtomicReference<String> result = new AtomicReference<>();
+		processor.processTemplateToWriter("{{#i18n}}{{key}}{{/i18n}} {{#static}}s{{/static}}", params,
+				Collections.singletonMap("i18n", constant("request")), null, w -> result.set(w.toString()));
+		assertEquals("request:k static:s", result.get());
+		assertEquals("shared:k", render(processor, "{{#i18n}}{{key}}{{/i18n}}", params));
+	}
+
+}
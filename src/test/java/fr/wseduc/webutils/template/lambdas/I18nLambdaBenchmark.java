@@ -0,0 +1,82 @@
+package fr.wseduc.webutils.template.lambdas;
+
+import com.samskivert.mustache.Mustache;
+import com.samskivert.mustache.Template;
+import fr.wseduc.webutils.I18n;
+import fr.wseduc.webutils.template.JsonCollector;
+import io.vertx.core.json.JsonObject;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Render of a page with 500 i18n keys, one in ten translations embedding a mustache tag,
+ * compared with a compile of every translation on each render.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class I18nLambdaBenchmark {
+
+	private static final int KEYS = 500;
+	private static final String DOMAIN = "benchmark";
+
+	private Template page;
+	private Map<String, Object> cachedContext;
+	private Map<String, Object> compiledContext;
+
+	@Setup
+	public void setup() {
+		final JsonObject messages = new JsonObject();
+		final StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < KEYS; i++) {
+			messages.put("key." + i, i % 10 == 0 ? "Bonjour {{name}}, message " + i : "Libellé du message numéro " + i);
+			sb.append("<p>{{#i18n}}key.").append(i).append("{{/i18n}}</p>\n");
+		}
+		I18n.getInstance().initializeMessages(Collections.singletonMap(Locale.FRENCH, messages), DOMAIN);
+		final Mustache.Compiler compiler = Mustache.compiler().defaultValue("").withCollector(JsonCollector.INSTANCE);
+		page = compiler.compile(sb.toString());
+		cachedContext = context(new I18nLambda("fr", DOMAIN));
+		final Locale locale = I18n.getLocale("fr");
+		compiledContext = context((Mustache.Lambda) (frag, out) -> compiler
+				.compile(I18n.getInstance().translate(frag.execute(), DOMAIN, null, locale))
+				.execute(frag.context(), out));
+	}
+
+	private static Map<String, Object> context(Mustache.Lambda lambda) {
+		final Map<String, Object> context = new HashMap<>();
+		context.put("name", "Élève");
+		context.put("i18n", lambda);
+		return context;
+	}
+
+	@Benchmark
+	public String cached() {
+		final StringWriter out = new StringWriter(32 * KEYS);
+		page.execute(cachedContext, out);
+		return out.toString();
+	}
+
+	@Benchmark
+	public String compiled() {
+		final StringWriter out = new StringWriter(32 * KEYS);
+		page.execute(compiledContext, out);
+		return out.toString();
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(I18nLambdaBenchmark.class.getSimpleName()).build()).run();
+	}
+
+}
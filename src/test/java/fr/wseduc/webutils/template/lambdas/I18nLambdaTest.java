@@ -0,0 +1,43 @@
+package fr.wseduc.webutils.template.lambdas;
+
+import fr.wseduc.webutils.I18n;
+import fr.wseduc.webutils.template.TemplateProcessor;
+import io.vertx.core.json.JsonObject;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+
+public class I18nLambdaTest {
+
+	private static String render(String locale, String template, JsonObject params) {
+		final TemplateProcessor processor = new TemplateProcessor().setLambda("i18n", new I18nLambda(locale, "lambda-test"));
+		final AtomicReference<String> result = new AtomicReference<>();
+		processor.processTemplate(template, params, result::set);
+		return result.get();
+	}
+
+	@Test
+	public void testTranslations() {
+		final I18n i18n = I18n.getInstance();
+		final Map<Locale, JsonObject> messages = new HashMap<>();
+		messages.put(Locale.FRENCH, new JsonObject()
+				.put("plain", "Bonjour <b>{0}</b> {")
+				.put("tagged", "Bonjour {{name}}"));
+		messages.put(Locale.ENGLISH, new JsonObject().put("tagged", "Hello {{name}}"));
+		i18n.initializeMessages(messages, "lambda-test");
+		final JsonObject params = new JsonObject().put("name", "Élève");
+		final String template = "{{#i18n}}plain{{/i18n}}|{{#i18n}}tagged{{/i18n}}|{{#i18n}}missing{{/i18n}}";
+		for (int i = 0; i < 2; i++) {
+			assertEquals("Bonjour <b>{0}</b> {|Bonjour Élève|missing", render("fr", template, params));
+			assertEquals("Hello Élève", render("en", "{{#i18n}}tagged{{/i18n}}", params));
+		}
+		i18n.add("lambda-test", Locale.FRENCH, new JsonObject().put("tagged", "Salut {{name}}"));
+		assertEquals("Salut Élève", render("fr", "{{#i18n}}tagged{{/i18n}}", params));
+	}
+
+}
@@ -0,0 +1,38 @@
+package fr.wseduc.webutils.template.lambdas;
+
+import fr.wseduc.webutils.template.TemplateProcessor;
+import io.vertx.core.json.JsonObject;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.samskivert.mustache.Mustache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class TemplateLambdasTest {
+
+	@Test
+	public void testSharedLambdas() {
+		final TemplateLambdas registry = TemplateLambdas.getInstance();
+		final Map<String, Mustache.Lambda> lambdas = registry.get("fr", "localhost:8090", null, false,
+				"localhost:8090", "app/public", true);
+		assertSame(lambdas, registry.get("fr", "localhost:8090", null, false, "localhost:8090", "app/public", true));
+		assertNotSame(lambdas, registry.get("fr", "localhost:8090", null, true, "localhost:8090", "app/public", true));
+		assertSame(lambdas, registry.get("fr-FR,fr;q=0.9,en;q=0.8", "localhost:8090", null, false,
+				"localhost:8090", "app/public", true));
+		assertNotSame(lambdas, registry.get("en-US,en;q=0.9", "localhost:8090", null, false,
+				"localhost:8090", "app/public", true));
+
+		final TemplateProcessor processor = new TemplateProcessor();
+		final AtomicReference<String> result = new AtomicReference<>();
+		processor.processTemplateToWriter("{{#static}}js/app.js{{/static}} {{#infra}}img/a.png{{/infra}} {{#datetime}}x{{/datetime}}",
+				new JsonObject(), lambdas, null, w -> result.set(w.toString()));
+		assertEquals("http://localhost:8090/app/public/js/app.js http://localhost:8001/infra/public/img/a.png DATE INVALIDE",
+				result.get());
+	}
+
+}
@@ -34,16 +34,21 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
 import java.security.NoSuchAlgorithmException;
 import java.security.PublicKey;
+import java.security.Signature;
 import java.security.cert.Certificate;
 import java.security.cert.CertificateException;
 import java.security.cert.CertificateFactory;
+import java.security.spec.ECGenParameterSpec;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 public class AlgorithmTest {
 
@@ -92,6 +97,41 @@ public class AlgorithmTest {
 		assertEquals("{\"sub\":\"1234567890\",\"name\":\"John Doe\",\"admin\":true}", j.encode());
 	}
 
+	@Test
+	public void verifyJWTES256() throws Exception {
+		final KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+		generator.initialize(new ECGenParameterSpec("secp256r1"));
+		final KeyPair keyPair = generator.generateKeyPair();
+		final String input = JWT.base64Encode("{\"alg\":\"ES256\",\"kid\":\"k\"}") + "." + JWT.base64Encode("{\"sub\":\"1\"}");
+		final Signature signature = Signature.getInstance("SHA256withECDSA");
+		signature.initSign(keyPair.getPrivate());
+		signature.update(input.getBytes("UTF-8"));
+		final String token = input + "." + JWT.base64Encode(derToConcatenated(signature.sign(), 32));
+		assertEquals("{\"sub\":\"1\"}", JWT.verifyAndGet(token, keyPair.getPublic()).encode());
+		assertNull(JWT.verifyAndGet(input + ".AAAA", keyPair.getPublic()));
+		assertNull(JWT.verifyAndGet(token + ".", keyPair.getPublic()));
+		assertEquals("{\"sub\":\"1\"}", JWT.verifyAndGet(token, keyPair.getPublic()).encode());
+	}
+
+	/**
+	 * Convert a DER encoded ECDSA signature to the R||S format of JWS, each value on size bytes.
+	 */
+	private static byte[] derToConcatenated(byte[] der, int size) {
+		final byte[] concatenated = new byte[2 * size];
+		int offset = (der[1] & 0x80) != 0 ? 3 : 2;
+		for (int i = 0; i < 2; i++) {
+			int length = der[offset + 1];
+			int start = offset + 2;
+			offset = start + length;
+			while (length > size) {
+				start++;
+				length--;
+			}
+			System.arraycopy(der, start, concatenated, (i + 1) * size - length, length);
+		}
+		return concatenated;
+	}
+
 	@Test
 	public void deflateAndEncodeTest() throws IOException {
 		final String content = "<test>bla</test>";
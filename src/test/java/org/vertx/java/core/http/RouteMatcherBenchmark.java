@@ -0,0 +1,93 @@
+package org.vertx.java.core.http;
+
+import io.vertx.core.Handler;
+import io.vertx.core.http.HttpServerRequest;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Dispatch time against the number of registered routes. The sample time mode reports the p99 percentile.
+ * The linear scan benchmarks reproduce the previous dispatch, evaluating each regular expression in turn.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RouteMatcherBenchmark {
+
+	@Param({"10", "100", "500", "1000"})
+	private int routes;
+
+	private RouteMatcher routeMatcher;
+	private final List<Pattern> patterns = new ArrayList<>();
+	private String firstPath;
+	private String lastPath;
+	private String missPath;
+
+	@Setup
+	public void setup() {
+		final Handler<HttpServerRequest> handler = request -> {};
+		routeMatcher = new RouteMatcher();
+		for (int i = 0; i < routes; i++) {
+			final String pattern = "/app" + (i % 20) + "/resource" + i + "/:id";
+			routeMatcher.get(pattern, handler);
+			patterns.add(Pattern.compile(pattern.replace(":id", "(?<id>[^\\/]+)")));
+			if (i % 10 == 0) {
+				final String regex = "\\/app" + (i % 20) + "\\/regex" + i + "\\/(.*)";
+				routeMatcher.getWithRegEx(regex, handler);
+				patterns.add(Pattern.compile(regex));
+			}
+		}
+		firstPath = "/app0/resource0/42";
+		lastPath = "/app" + ((routes - 1) % 20) + "/resource" + (routes - 1) + "/42";
+		missPath = "/unknown/path/42";
+	}
+
+	@Benchmark
+	public Object firstRoute() {
+		return routeMatcher.match("GET", firstPath);
+	}
+
+	@Benchmark
+	public Object lastRoute() {
+		return routeMatcher.match("GET", lastPath);
+	}
+
+	@Benchmark
+	public Object noMatch() {
+		return routeMatcher.match("GET", missPath);
+	}
+
+	@Benchmark
+	public Object linearScanLastRoute() {
+		return linearScan(lastPath);
+	}
+
+	@Benchmark
+	public Object linearScanNoMatch() {
+		return linearScan(missPath);
+	}
+
+	private Pattern linearScan(String path) {
+		for (Pattern pattern : patterns) {
+			if (pattern.matcher(path).matches()) {
+				return pattern;
+			}
+		}
+		return null;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(RouteMatcherBenchmark.class.getSimpleName()).build()).run();
+	}
+
+}
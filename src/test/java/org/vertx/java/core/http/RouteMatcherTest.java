@@ -0,0 +1,94 @@
+package org.vertx.java.core.http;
+
+import io.vertx.core.Handler;
+import io.vertx.core.http.HttpServerRequest;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class RouteMatcherTest {
+
+	private final Handler<HttpServerRequest> h1 = request -> {};
+	private final Handler<HttpServerRequest> h2 = request -> {};
+	private final Handler<HttpServerRequest> h3 = request -> {};
+
+	@Test
+	public void testSimplePatternParams() {
+		final RouteMatcher rm = new RouteMatcher().get("/app/:id/items/:itemId", h1);
+		final RouteMatcher.RouteMatch match = rm.match("GET", "/app/42/items/abc");
+		assertSame(h1, match.binding.handler);
+		final Map<String, String> params = match.params();
+		assertEquals(2, params.size());
+		assertEquals("42", params.get("id"));
+		assertEquals("abc", params.get("itemId"));
+		assertEquals("abc", match.value(match.indexOf("itemId")));
+		assertEquals(-1, match.indexOf("unknown"));
+		assertNull("Params must not be empty", rm.match("GET", "/app//items/abc"));
+		assertNull("Params must not contain slash", rm.match("GET", "/app/4/2/items/abc"));
+		assertNull("Method must match", rm.match("POST", "/app/42/items/abc"));
+	}
+
+	@Test
+	public void testFirstMatchWins() {
+		final RouteMatcher rm = new RouteMatcher()
+				.get("/app/:id", h1)
+				.get("/app/list", h2);
+		assertSame(h1, rm.match("GET", "/app/list").binding.handler);
+
+		final RouteMatcher rm2 = new RouteMatcher()
+				.get("/app/list", h2)
+				.get("/app/:id", h1);
+		assertSame(h2, rm2.match("GET", "/app/list").binding.handler);
+		assertSame(h1, rm2.match("GET", "/app/other").binding.handler);
+	}
+
+	@Test
+	public void testFirstMatchWinsBetweenRegexAndPattern() {
+		final RouteMatcher rm = new RouteMatcher()
+				.getWithRegEx("/app/.*", h1)
+				.get("/app/:id", h2)
+				.getWithRegEx("\\/other\\/(.*)", h3);
+		assertSame(h1, rm.match("GET", "/app/42").binding.handler);
+		assertSame(h3, rm.match("GET", "/other/42").binding.handler);
+
+		final RouteMatcher rm2 = new RouteMatcher()
+				.get("/app/:id", h2)
+				.getWithRegEx("/app/.*", h1);
+		assertSame(h2, rm2.match("GET", "/app/42").binding.handler);
+		assertSame(h1, rm2.match("GET", "/app/42/43").binding.handler);
+	}
+
+	@Test
+	public void testRegexUnnamedParams() {
+		final RouteMatcher rm = new RouteMatcher().getWithRegEx("/public/([a-z]+)/(.+)", h1);
+		final Map<String, String> params = rm.match("GET", "/public/js/app.js").params();
+		assertEquals("js", params.get("param0"));
+		assertEquals("app.js", params.get("param1"));
+	}
+
+	@Test
+	public void testPatternWithRegexConstructs() {
+		final RouteMatcher rm = new RouteMatcher()
+				.get("/files/:id.json", h1)
+				.get("/conf/public", h2);
+		final RouteMatcher.RouteMatch match = rm.match("GET", "/files/12.json");
+		assertSame(h1, match.binding.handler);
+		assertEquals("12", match.params().get("id"));
+		assertSame(h2, rm.match("GET", "/conf/public").binding.handler);
+		assertNull(rm.match("GET", "/conf/public/"));
+	}
+
+	@Test
+	public void testLiteralPrefix() {
+		assertEquals("/app/", RouteMatcher.literalPrefix("\\/app\\/(.*)"));
+		assertEquals("/app", RouteMatcher.literalPrefix("/app/?"));
+		assertEquals("/app/", RouteMatcher.literalPrefix("^/app/\\w+"));
+		assertEquals("", RouteMatcher.literalPrefix("/app/a|/app/b"));
+		assertEquals("", RouteMatcher.literalPrefix("(?i)/app"));
+	}
+
+}